@@ -0,0 +1,126 @@
+//FileUtils 解压方式对比基准（合成 zip）
+package com.example.geoserver.bench;
+
+import com.example.geoserver.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 生成 layers 组 .shp/.shx/.dbf/.prj（.shp 大小为 shpKb），分别用 DEFLATED / STORED 压缩，
+ * 对比串行 extractZipTo、并行 extractZipToParallel 与增量 extractZipIncremental（第二次运行，无变化）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractZipBenchmark {
+
+    @Param({"50"})
+    public int layers;
+
+    @Param({"1024"})
+    public int shpKb;
+
+    @Param({"DEFLATED", "STORED"})
+    public String method;
+
+    private Path workDir;
+    private Path zip;
+    private Path incrementalTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("extract-bench");
+        zip = workDir.resolve("synthetic.zip");
+        writeSyntheticZip(zip, layers, shpKb * 1024, "STORED".equals(method));
+        incrementalTarget = workDir.resolve("incremental");
+        try {
+            FileUtils.extractZipIncremental(zip, incrementalTarget);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> s = Files.walk(workDir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Path serial() throws Exception {
+        return FileUtils.extractZipTo(zip, workDir.resolve("serial"));
+    }
+
+    @Benchmark
+    public Path parallel() throws Exception {
+        return FileUtils.extractZipToParallel(zip, workDir.resolve("parallel"));
+    }
+
+    @Benchmark
+    public FileUtils.ExtractResult incrementalUnchanged() throws Exception {
+        return FileUtils.extractZipIncremental(zip, incrementalTarget);
+    }
+
+    static void writeSyntheticZip(Path zip, int layers, int shpBytes, boolean stored) throws IOException {
+        Random random = new Random(42);
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < layers; i++) {
+                String base = "synthetic/layer_" + i;
+                put(zos, base + ".shp", randomBytes(random, shpBytes), stored);
+                put(zos, base + ".shx", randomBytes(random, shpBytes / 16), stored);
+                put(zos, base + ".dbf", randomBytes(random, shpBytes / 4), stored);
+                put(zos, base + ".prj", "GEOGCS[\"GCS_WGS_1984\"]".getBytes(), stored);
+            }
+        }
+    }
+
+    // 半随机内容：一半可压缩，一半随机
+    private static byte[] randomBytes(Random random, int n) {
+        byte[] b = new byte[n];
+        random.nextBytes(b);
+        for (int i = 0; i < n / 2; i++) b[i] = (byte) (i % 32);
+        return b;
+    }
+
+    private static void put(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry e = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            e.setMethod(ZipEntry.STORED);
+            e.setSize(data.length);
+            e.setCompressedSize(data.length);
+            e.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(e);
+        zos.write(data);
+        zos.closeEntry();
+    }
+}
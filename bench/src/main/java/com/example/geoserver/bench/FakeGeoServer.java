@@ -0,0 +1,371 @@
+//本地 GeoServer REST 替身：内存目录 + 可配置的每端点延迟 / 错误率，供基准测试使用
+package com.example.geoserver.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 基于 JDK com.sun.net.httpserver 的 GeoServer REST 替身。
+ * 只实现发布流程用到的端点，目录保存在内存中；每类端点可单独设置延迟与 503 错误率。
+ * 其它请求返回 404 并记入 {@link #unhandledRequests()}，客户端新增的端点不会被悄悄“接受”。
+ * <pre>
+ * try (FakeGeoServer fake = FakeGeoServer.start()) {
+ *     fake.setLatency(FakeGeoServer.Endpoint.FEATURE_TYPE, Duration.ofMillis(20));
+ *     GeoServerClient gs = new GeoServerClient(fake.baseUrl(), "admin", "geoserver");
+ * }
+ * </pre>
+ */
+public class FakeGeoServer implements AutoCloseable {
+
+    /** 按资源划分的端点类别（延迟 / 错误率按类别配置）。 */
+    public enum Endpoint { WORKSPACE, DATASTORE, FEATURE_TYPE, LAYER, UPLOAD, STYLE, LAYER_GROUP, SEED, OTHER }
+
+    private static final Pattern WORKSPACE = Pattern.compile("^/rest/workspaces(?:/([^/]+?)(?:\\.json)?)?$");
+    private static final Pattern DATASTORE = Pattern.compile("^/rest/workspaces/([^/]+)/datastores(?:/([^/]+?)(?:\\.json)?)?$");
+    private static final Pattern UPLOAD = Pattern.compile("^/rest/workspaces/([^/]+)/datastores/([^/]+)/file\\.shp$");
+    private static final Pattern FEATURE_TYPE = Pattern.compile(
+            "^/rest/workspaces/([^/]+)/datastores/([^/]+)/featuretypes(?:/([^/]+?))?(?:\\.json)?$");
+    private static final Pattern LAYER_GROUP = Pattern.compile("^/rest/workspaces/([^/]+)/layergroups(?:/([^/.]+))?(?:\\.json)?$");
+    private static final Pattern SEED = Pattern.compile("^/gwc/rest/seed/([^/]+)\\.json$");
+    private static final Pattern STYLE = Pattern.compile("^/rest/workspaces/([^/]+)/styles(?:\\.json)?$");
+    private static final Pattern LAYER = Pattern.compile("^/rest/layers(?:/([^/:]+):([^/]+?))?(?:\\.json)?$");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<Endpoint, Duration> latency = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Double> errorRate = new EnumMap<>(Endpoint.class);
+    private final AtomicLong requests = new AtomicLong();
+
+    // 内存目录
+    private final Set<String> workspaces = ConcurrentHashMap.newKeySet();
+    private final Set<String> datastores = ConcurrentHashMap.newKeySet();        // ws/store
+    private final Map<String, Set<String>> featureTypes = new ConcurrentHashMap<>(); // ws/store -> names
+    private final Set<String> layers = ConcurrentHashMap.newKeySet();            // ws:name
+    private final Map<String, Set<String>> styles = new ConcurrentHashMap<>();   // ws -> style names
+    private final Map<String, JsonNode> layerGroups = new ConcurrentHashMap<>(); // ws/group -> layerGroup
+    private final AtomicLong seedRequests = new AtomicLong();
+    private final List<String> unhandled = new CopyOnWriteArrayList<>(); // "METHOD path"
+
+    private FakeGeoServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-geoserver");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/geoserver/", this::handle);
+    }
+
+    /** 在随机端口启动。 */
+    public static FakeGeoServer start() throws IOException {
+        return start(0);
+    }
+
+    public static FakeGeoServer start(int port) throws IOException {
+        FakeGeoServer fake = new FakeGeoServer(port);
+        fake.server.start();
+        return fake;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/geoserver";
+    }
+
+    public FakeGeoServer setLatency(Endpoint endpoint, Duration d) {
+        synchronized (latency) { latency.put(endpoint, d); }
+        return this;
+    }
+
+    /** 所有端点统一延迟。 */
+    public FakeGeoServer setLatency(Duration d) {
+        for (Endpoint e : Endpoint.values()) setLatency(e, d);
+        return this;
+    }
+
+    /** 0.0 ~ 1.0，命中时返回 503。 */
+    public FakeGeoServer setErrorRate(Endpoint endpoint, double rate) {
+        synchronized (errorRate) { errorRate.put(endpoint, rate); }
+        return this;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /** 收到的 GWC seed 请求数。 */
+    public long seedRequestCount() {
+        return seedRequests.get();
+    }
+
+    /** 没有对应端点、按 404 回应的请求（"METHOD path"），按到达顺序。 */
+    public List<String> unhandledRequests() {
+        return List.copyOf(unhandled);
+    }
+
+    /** 清空目录（基准每轮迭代之间调用）。 */
+    public void reset() {
+        workspaces.clear();
+        datastores.clear();
+        featureTypes.clear();
+        layers.clear();
+        styles.clear();
+        layerGroups.clear();
+    }
+
+    /** 预先放入一个已存在的 featureType / layer。 */
+    public void addLayer(String ws, String store, String name) {
+        workspaces.add(ws);
+        datastores.add(ws + "/" + store);
+        featureTypes.computeIfAbsent(ws + "/" + store, k -> ConcurrentHashMap.newKeySet()).add(name);
+        layers.add(ws + ":" + name);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        requests.incrementAndGet();
+        try (ex) {
+            String path = ex.getRequestURI().getPath().substring("/geoserver".length()).replace('+', ' ');
+            String method = ex.getRequestMethod();
+            Endpoint endpoint = classify(path);
+
+            Duration d;
+            synchronized (latency) { d = latency.get(endpoint); }
+            if (d != null && !d.isZero()) Thread.sleep(d.toMillis());
+            Double rate;
+            synchronized (errorRate) { rate = errorRate.get(endpoint); }
+            if (rate != null && ThreadLocalRandom.current().nextDouble() < rate) {
+                drain(ex);
+                ex.sendResponseHeaders(503, -1);
+                return;
+            }
+            route(ex, endpoint, method, path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            ex.sendResponseHeaders(500, -1);
+        }
+    }
+
+    private static Endpoint classify(String path) {
+        if (UPLOAD.matcher(path).matches()) return Endpoint.UPLOAD;
+        if (FEATURE_TYPE.matcher(path).matches()) return Endpoint.FEATURE_TYPE;
+        if (DATASTORE.matcher(path).matches()) return Endpoint.DATASTORE;
+        if (WORKSPACE.matcher(path).matches()) return Endpoint.WORKSPACE;
+        if (LAYER.matcher(path).matches()) return Endpoint.LAYER;
+        if (path.contains("/styles")) return Endpoint.STYLE;
+        if (LAYER_GROUP.matcher(path).matches()) return Endpoint.LAYER_GROUP;
+        if (SEED.matcher(path).matches()) return Endpoint.SEED;
+        return Endpoint.OTHER;
+    }
+
+    private void route(HttpExchange ex, Endpoint endpoint, String method, String path) throws IOException {
+        Matcher m;
+        switch (endpoint) {
+            case WORKSPACE:
+                m = WORKSPACE.matcher(path);
+                m.matches();
+                if ("POST".equals(method)) {
+                    workspaces.add(readBody(ex).path("workspace").path("name").asText());
+                    status(ex, 201);
+                } else {
+                    status(ex, m.group(1) != null && workspaces.contains(m.group(1)) ? 200 : 404);
+                }
+                return;
+            case DATASTORE:
+                m = DATASTORE.matcher(path);
+                m.matches();
+                if ("POST".equals(method)) {
+                    datastores.add(m.group(1) + "/" + readBody(ex).path("dataStore").path("name").asText());
+                    status(ex, 201);
+                } else {
+                    status(ex, datastores.contains(m.group(1) + "/" + m.group(2)) ? 200 : 404);
+                }
+                return;
+            case UPLOAD:
+                m = UPLOAD.matcher(path);
+                m.matches();
+                drain(ex);
+                datastores.add(m.group(1) + "/" + m.group(2));
+                status(ex, 201);
+                return;
+            case FEATURE_TYPE:
+                m = FEATURE_TYPE.matcher(path);
+                m.matches();
+                featureType(ex, method, m.group(1), m.group(2), m.group(3));
+                return;
+            case LAYER:
+                m = LAYER.matcher(path);
+                m.matches();
+                if (m.group(1) == null) {
+                    json(ex, listJson("layers", "layer", layers));
+                } else if ("PUT".equals(method)) {
+                    drain(ex);
+                    status(ex, layers.contains(m.group(1) + ":" + m.group(2)) ? 200 : 404);
+                } else {
+                    status(ex, layers.contains(m.group(1) + ":" + m.group(2)) ? 200 : 404);
+                }
+                return;
+            case STYLE:
+                m = STYLE.matcher(path);
+                if (!m.matches()) break;
+                Set<String> wsStyles = styles.computeIfAbsent(m.group(1), k -> ConcurrentHashMap.newKeySet());
+                if ("POST".equals(method)) {
+                    drain(ex);
+                    String query = ex.getRequestURI().getQuery();
+                    String name = query != null && query.startsWith("name=") ? query.substring(5) : null;
+                    status(ex, name == null ? 400 : wsStyles.add(name) ? 201 : 403);
+                } else {
+                    json(ex, listJson("styles", "style", wsStyles));
+                }
+                return;
+            case LAYER_GROUP:
+                m = LAYER_GROUP.matcher(path);
+                m.matches();
+                if ("POST".equals(method)) {
+                    JsonNode group = readBody(ex).path("layerGroup");
+                    layerGroups.put(m.group(1) + "/" + group.path("name").asText(), group);
+                    status(ex, 201);
+                } else if ("PUT".equals(method)) {
+                    layerGroups.put(m.group(1) + "/" + m.group(2), readBody(ex).path("layerGroup"));
+                    status(ex, 200);
+                } else {
+                    JsonNode group = layerGroups.get(m.group(1) + "/" + m.group(2));
+                    if (group == null) {
+                        status(ex, 404);
+                    } else {
+                        ObjectNode root = mapper.createObjectNode();
+                        root.set("layerGroup", group);
+                        json(ex, root);
+                    }
+                }
+                return;
+            case SEED:
+                drain(ex);
+                if ("POST".equals(method)) {
+                    seedRequests.incrementAndGet();
+                    status(ex, 200);
+                } else {
+                    // 任务立即完成：没有等待 / 运行中的任务
+                    json(ex, mapper.createObjectNode().set("long-array-array", mapper.createArrayNode()));
+                }
+                return;
+            default:
+        }
+        unhandled.add(method + " " + path);
+        drain(ex);
+        status(ex, 404);
+    }
+
+    private void featureType(HttpExchange ex, String method, String ws, String store, String name) throws IOException {
+        String key = ws + "/" + store;
+        Set<String> names = featureTypes.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        if (name == null) {
+            if ("POST".equals(method)) {
+                String created = readBody(ex).path("featureType").path("name").asText();
+                names.add(created);
+                layers.add(ws + ":" + created);
+                status(ex, 201);
+            } else {
+                json(ex, listJson("featureTypes", "featureType", names));
+            }
+            return;
+        }
+        if (!names.contains(name)) {
+            drain(ex);
+            status(ex, 404);
+            return;
+        }
+        if ("PUT".equals(method)) {
+            drain(ex);
+            status(ex, 200);
+            return;
+        }
+        ObjectNode ft = mapper.createObjectNode();
+        ObjectNode body = ft.putObject("featureType");
+        body.put("name", name);
+        body.put("srs", "EPSG:3857");
+        ObjectNode bbox = body.putObject("nativeBoundingBox");
+        bbox.put("minx", 0.0).put("miny", 0.0).put("maxx", 1000.0).put("maxy", 1000.0).put("crs", "EPSG:3857");
+        body.putObject("latLonBoundingBox").put("minx", 116.0).put("miny", 39.0).put("maxx", 117.0).put("maxy", 40.0)
+                .put("crs", "EPSG:4326");
+        body.putObject("attributes").putArray("attribute").addObject()
+                .put("name", "the_geom").put("binding", "org.locationtech.jts.geom.MultiPolygon");
+        ex.getResponseHeaders().add("ETag", "\"" + name.hashCode() + "\"");
+        json(ex, ft);
+    }
+
+    private ObjectNode listJson(String outer, String inner, Set<String> names) {
+        ObjectNode root = mapper.createObjectNode();
+        if (names.isEmpty()) {
+            root.put(outer, "");  // 与 GeoServer 一致：空列表为 ""
+            return root;
+        }
+        ArrayNode arr = root.putObject(outer).putArray(inner);
+        for (String n : names) arr.addObject().put("name", n);
+        return root;
+    }
+
+    private JsonNode readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            return mapper.readTree(in);
+        }
+    }
+
+    private static void drain(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void status(HttpExchange ex, int code) throws IOException {
+        ex.sendResponseHeaders(code, -1);
+    }
+
+    private void json(HttpExchange ex, JsonNode node) throws IOException {
+        byte[] bytes = mapper.writeValueAsString(node).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** 独立运行，便于手工调试并发参数：java -cp benchmarks.jar com.example.geoserver.bench.FakeGeoServer 8085 20 */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8085;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        FakeGeoServer fake = start(port).setLatency(Duration.ofMillis(latencyMs));
+        System.out.println("Fake GeoServer listening at " + fake.baseUrl());
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,89 @@
+//GeoServerClient 单个 REST 调用的吞吐 / 延迟基准
+package com.example.geoserver.bench;
+
+import com.example.geoserver.FeatureTypeCache;
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.model.BoundingBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对 FakeGeoServer 发起的单次调用。latencyMs 模拟服务端处理时间，
+ * 用于比较 exists 探测、featureType 读取（有无缓存）与发布请求的客户端开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+public class GeoServerClientBenchmark {
+
+    @Param({"0", "5"})
+    public int latencyMs;
+
+    private FakeGeoServer fake;
+    private GeoServerClient client;
+    private GeoServerClient uncachedClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fake = FakeGeoServer.start().setLatency(Duration.ofMillis(latencyMs));
+        fake.addLayer("bench", "store", "roads");
+        client = new GeoServerClient(fake.baseUrl(), "admin", "geoserver");
+        // TTL 为 0：每次都要向服务器复验
+        uncachedClient = new GeoServerClient(fake.baseUrl(), "admin", "geoserver", new FeatureTypeCache(Duration.ZERO, 1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fake.close();
+    }
+
+    @Benchmark
+    public boolean workspaceExists() throws Exception {
+        return client.workspaceExists("bench");
+    }
+
+    @Benchmark
+    public boolean featureTypeExists() throws Exception {
+        return client.featureTypeExists("bench", "store", "roads");
+    }
+
+    @Benchmark
+    public Optional<BoundingBox> featureTypeBBoxCached() throws Exception {
+        return client.getFeatureTypeBBox("bench", "store", "roads");
+    }
+
+    @Benchmark
+    public Optional<BoundingBox> featureTypeBBoxUncached() throws Exception {
+        return uncachedClient.getFeatureTypeBBox("bench", "store", "roads");
+    }
+
+    @Benchmark
+    public boolean recalcBBox() throws Exception {
+        return client.recalcFeatureTypeBBox("bench", "store", "roads", "nativebbox,latlonbbox");
+    }
+
+    @Benchmark
+    public Boolean workspaceExistsAsync() {
+        return client.workspaceExistsAsync("bench").join();
+    }
+}
@@ -0,0 +1,95 @@
+//整批发布流水线在不同并发度下的耗时基准
+package com.example.geoserver.bench;
+
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.server.PublishResult;
+import com.example.geoserver.server.PublishService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次发布 layerCount 个新图层（exists -> publish -> recalc -> bbox），
+ * 对比不同 maxInFlight 下的 {@link PublishService#publishAll}。每次调用前清空 FakeGeoServer 目录。
+ * 结果用于确定在给定服务端延迟下合适的并发设置。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PublishPipelineBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int maxInFlight;
+
+    @Param({"200"})
+    public int layerCount;
+
+    @Param({"5"})
+    public int latencyMs;
+
+    @Param({"0.0", "0.02"})
+    public double errorRate;
+
+    private FakeGeoServer fake;
+    private GeoServerClient client;
+    private PublishService service;
+    private List<String> layers;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fake = FakeGeoServer.start().setLatency(Duration.ofMillis(latencyMs));
+        for (FakeGeoServer.Endpoint e : FakeGeoServer.Endpoint.values()) fake.setErrorRate(e, errorRate);
+        client = new GeoServerClient(fake.baseUrl(), "admin", "geoserver");
+        service = new PublishService(client, maxInFlight);
+        layers = new ArrayList<>(layerCount);
+        for (int i = 0; i < layerCount; i++) layers.add("layer_" + i);
+        // 发布流程的逐行输出会干扰测量
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Invocation)
+    public void resetCatalog() {
+        fake.reset();
+        fake.addLayer("bench", "store", "seed");
+        client.invalidateCatalog("bench", "store");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        service.close();
+        fake.close();
+    }
+
+    @Benchmark
+    public List<PublishResult> publishAll() {
+        return service.publishAll("bench", "store", layers, "auto");
+    }
+
+    // 冒烟测试检查替身收到的请求
+    FakeGeoServer fake() {
+        return fake;
+    }
+}
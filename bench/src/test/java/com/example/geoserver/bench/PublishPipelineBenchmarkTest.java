@@ -0,0 +1,39 @@
+//PublishPipelineBenchmark 冒烟测试：对 FakeGeoServer 跑一次 publishAll，客户端调用的每个 REST 端点都有替身应答
+package com.example.geoserver.bench;
+
+import com.example.geoserver.server.PublishResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishPipelineBenchmarkTest {
+
+    @Test
+    void oneIterationPublishesEveryLayer() throws Exception {
+        PublishPipelineBenchmark bench = new PublishPipelineBenchmark();
+        bench.maxInFlight = 4;
+        bench.layerCount = 8;
+        bench.latencyMs = 0;
+        bench.errorRate = 0.0;
+        bench.setUp();
+        List<PublishResult> results;
+        List<String> unhandled;
+        try {
+            bench.resetCatalog();
+            results = bench.publishAll();
+            unhandled = bench.fake().unhandledRequests();
+        } finally {
+            bench.tearDown();
+        }
+
+        assertEquals(List.of(), unhandled);
+        assertEquals(8, results.size());
+        for (PublishResult r : results) {
+            assertEquals(PublishResult.Status.PUBLISHED, r.getStatus(), r.getLayer() + ": " + r.getMessage());
+            assertTrue(r.isChanged(), r.getLayer());
+        }
+    }
+}
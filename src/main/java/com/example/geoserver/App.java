@@ -3,23 +3,64 @@
 package com.example.geoserver;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files; //处理文件路径
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Locale;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
-import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.model.PublishManifest;
+import com.example.geoserver.server.HotFolderDaemon;
+import com.example.geoserver.server.JobPlanner;
+import com.example.geoserver.server.LayerJob;
+import com.example.geoserver.server.PostPublishStage;
+import com.example.geoserver.server.PublishJournal;
+import com.example.geoserver.server.PublishResult;
+import com.example.geoserver.server.PublishService;
+import com.example.geoserver.util.Metrics;
 
+/**
+ * 三种运行方式：
+ * <ul>
+ *   <li>交互模式（默认）：逐项从 stdin 读取参数，默认值来自 application.properties；</li>
+ *   <li>无交互模式：{@code --headless} 或 {@code --manifest=jobs.yml}，参数来自命令行 / 环境变量 / 配置文件，
+ *       清单中的所有任务在同一个进程内、共用一个 GeoServerClient 与连接池发布；</li>
+ *   <li>目录监听：{@code --watch=dir1,dir2}，常驻运行，新到达的数据按小批自动发布（见 {@link HotFolderDaemon}）。</li>
+ * </ul>
+ */
 public class App {
     public static void main(String[] args) throws Exception {
+        AppConfig.init(args);
+        if (Boolean.parseBoolean(AppConfig.get(AppConfig.METRICS_JMX, "true"))) Metrics.registerJmx();
+        if (AppConfig.isWatch()) {
+            runWatch();
+        } else if (AppConfig.isHeadless()) {
+            runHeadless();
+        } else {
+            runInteractive();
+        }
+    }
+
+    private static void runInteractive() throws Exception {
         Scanner sc = new Scanner(System.in);    // 初始化命令行输入扫描器
 
-        System.out.print("GeoServer URL (default http://localhost:8080/geoserver) : ");
+        String defaultUrl = AppConfig.get(AppConfig.GEOSERVER_URL, "http://localhost:8080/geoserver");
+        System.out.print("GeoServer URL (default " + defaultUrl + ") : ");
         String geoserverUrl = sc.nextLine().trim();
-        if (geoserverUrl.isEmpty()) geoserverUrl = "http://localhost:8080/geoserver";
+        if (geoserverUrl.isEmpty()) geoserverUrl = defaultUrl;
 
         System.out.print("Workspace name (e.g., test): ");
         String workspace = sc.nextLine().trim();
@@ -30,114 +71,280 @@ public class App {
         System.out.print("Folder or .shp path (e.g., F:/数据/156-3857.zip): ");
         String path = sc.nextLine().trim();
 
-        System.out.print("Style name (e.g., auto/point/line/polygon) default auto: ");
+        String defaultStyle = AppConfig.get(AppConfig.STYLE, "auto");
+        System.out.print("Style name (e.g., auto/point/line/polygon) default " + defaultStyle + ": ");
         String styleName = sc.nextLine().trim();
-        if (styleName.isEmpty()) styleName = "auto";
+        if (styleName.isEmpty()) styleName = defaultStyle;
 
         // Credentials (simple prompt; or read from env)
-        System.out.print("GeoServer username (default admin): ");
+        String defaultUser = AppConfig.get(AppConfig.GEOSERVER_USER, "admin");
+        System.out.print("GeoServer username (default " + defaultUser + "): ");
         String user = sc.nextLine().trim();
-        if (user.isEmpty()) user = "admin";
+        if (user.isEmpty()) user = defaultUser;
 
-        System.out.print("GeoServer password (default geoserver): ");
+        System.out.print("GeoServer password (default from config): ");
         String pass = sc.nextLine().trim();
-        if (pass.isEmpty()) pass = "geoserver";
+        if (pass.isEmpty()) pass = AppConfig.get(AppConfig.GEOSERVER_PASSWORD, "geoserver");
 
-        // 创建 GeoServerClient 实例，传入连接信息（后续所有操作都通过该实例执行）
-        GeoServerClient gs = new GeoServerClient(geoserverUrl, user, pass);
+        int defaultMax = AppConfig.getInt(AppConfig.MAX_IN_FLIGHT, PublishService.DEFAULT_MAX_IN_FLIGHT);
+        System.out.print("Max concurrent publishes (default " + defaultMax + "): ");
+        String concurrency = sc.nextLine().trim();
+        int maxInFlight = concurrency.isEmpty() ? defaultMax : Integer.parseInt(concurrency);
 
-        // Ensure workspace
-        if (!gs.workspaceExists(workspace)) {
-            boolean ok = gs.createWorkspace(workspace);
-            System.out.println(ok ? "Workspace created." : "Failed to create workspace.");
+        // 每个节点一个 GeoServerClient（逗号分隔多个 URL 时同时发布到所有节点）
+        GeoServerCluster cluster = GeoServerCluster.of(GeoServerCluster.parseUrls(geoserverUrl), user, pass, AppConfig.httpSettings());
+        List<PublishJournal> journals = openJournals(cluster);
+        try {
+            publish(cluster, List.of(new PublishManifest.Job(workspace, datastore, path, styleName)), styleName, maxInFlight, journals);
+        } finally {
+            closeAll(journals);
+        }
+    }
+
+    /**
+     * 无交互：单个任务来自 publish.workspace/datastore/path，或者由 publish.manifest 列出多个任务。
+     */
+    private static void runHeadless() throws Exception {
+        PublishManifest manifest;
+        String manifestPath = AppConfig.get(AppConfig.MANIFEST, null);
+        if (manifestPath != null) {
+            manifest = PublishManifest.read(Paths.get(manifestPath));
         } else {
-            System.out.println("Workspace exists. Skipping.");
+            manifest = new PublishManifest();
+            manifest.jobs.add(new PublishManifest.Job(
+                    require(AppConfig.WORKSPACE), require(AppConfig.DATASTORE), require(AppConfig.PATH), null));
         }
 
-        // Resolve folder for datastore
-        Path input = Paths.get(path);   //将字符串形式的路径（path参数）转换为Path对象（Java NIO 中的路径表示方式）
-        //isRegularFiles()是否是一个regular file(shp)
-        if (Files.isRegularFile(input) && input.toString().toLowerCase(Locale.ROOT).endsWith(".shp")) {
-            input = input.getParent();  //getParent() acquire parent directory
+        String url = manifest.url != null ? manifest.url : AppConfig.get(AppConfig.GEOSERVER_URL, "http://localhost:8080/geoserver");
+        String user = manifest.user != null ? manifest.user : AppConfig.get(AppConfig.GEOSERVER_USER, "admin");
+        String pass = manifest.password != null ? manifest.password : AppConfig.get(AppConfig.GEOSERVER_PASSWORD, "geoserver");
+        String defaultStyle = manifest.style != null ? manifest.style : AppConfig.get(AppConfig.STYLE, "auto");
+        int maxInFlight = manifest.maxInFlight != null ? manifest.maxInFlight
+                : AppConfig.getInt(AppConfig.MAX_IN_FLIGHT, PublishService.DEFAULT_MAX_IN_FLIGHT);
+
+        // 所有任务共用每个节点的客户端（同一个 HttpClient 连接池）
+        GeoServerCluster cluster = GeoServerCluster.of(GeoServerCluster.parseUrls(url), user, pass, AppConfig.httpSettings());
+        List<PublishJournal> journals = openJournals(cluster);
+        List<PublishResult> results;
+        try {
+            results = publish(cluster, manifest.jobs, defaultStyle, maxInFlight, journals);
+        } finally {
+            closeAll(journals);
         }
-        if (Files.isRegularFile(input) && input.toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
-            String zipFileName = input.getFileName().toString();
-            int dot = zipFileName.lastIndexOf('.');
-            if (dot > 0) zipFileName = zipFileName.substring(0, dot);
-
-            ZipShapefilePublisher zp = new ZipShapefilePublisher();
-            // 现在传入 Path，并只返回解压目录 Path
-            Path extracted = zp.extractZipToDataDir(input, workspace, datastore, zipFileName);
-            input = extracted;
+        // 有失败时以非 0 退出码结束，便于 cron / CI 判断
+        if (results.stream().anyMatch(r -> !r.isSuccess())) System.exit(1);
+    }
+
+    /**
+     * 目录监听：常驻进程，直到 Ctrl+C / SIGTERM；退出前发布完已就绪的数据并导出指标。
+     */
+    private static void runWatch() throws Exception {
+        String url = AppConfig.get(AppConfig.GEOSERVER_URL, "http://localhost:8080/geoserver");
+        String user = AppConfig.get(AppConfig.GEOSERVER_USER, "admin");
+        String pass = AppConfig.get(AppConfig.GEOSERVER_PASSWORD, "geoserver");
+        int maxInFlight = AppConfig.getInt(AppConfig.MAX_IN_FLIGHT, PublishService.DEFAULT_MAX_IN_FLIGHT);
+        if (GeoServerCluster.parseUrls(url).size() > 1) {
+            throw new IllegalArgumentException("Watch mode publishes to a single GeoServer; got several URLs: " + url);
+        }
+
+        GeoServerClient gs = new GeoServerClient(url, user, pass, new FeatureTypeCache(), AppConfig.httpSettings());
+        try (PublishJournal journal = openJournal();
+             PublishService service = new PublishService(gs, maxInFlight, journal);
+             HotFolderDaemon daemon = new HotFolderDaemon(new JobPlanner(gs, journal), service, AppConfig.watchDirs(),
+                     require(AppConfig.WORKSPACE), require(AppConfig.DATASTORE), AppConfig.get(AppConfig.STYLE, "auto"),
+                     Duration.ofMillis(AppConfig.getInt(AppConfig.WATCH_SETTLE_MS, 2000)),
+                     Duration.ofMillis(AppConfig.getInt(AppConfig.WATCH_BATCH_MS, 1000)),
+                     AppConfig.getInt(AppConfig.WATCH_BATCH_MAX, 50))) {
+            daemon.setPostPublish(new PostPublishStage(gs, AppConfig.postPublishSettings()));
+            Thread main = Thread.currentThread();
+            // 收到停止信号后让已就绪的批次发布完；最多等 60 s，避免卡住的请求让进程无法退出
+            Thread hook = new Thread(() -> {
+                try {
+                    daemon.stop();
+                    main.join(TimeUnit.SECONDS.toMillis(60));
+                } catch (Exception ignored) {
+                }
+            }, "watch-shutdown");
+            Runtime.getRuntime().addShutdownHook(hook);
+            daemon.run();
         }
-        String folder = input.toAbsolutePath().toString();  //将路径转换为绝对路径,字符串形式的路径，无论输入是shapefile or folder
+        exportMetrics();
+    }
 
-        // Ensure datastore
-        if (!gs.datastoreExists(workspace, datastore)) {
-            boolean ok = gs.createDirectoryDatastore(workspace, datastore, folder, "GBK");
-            System.out.println(ok ? "Datastore created." : "Failed to create datastore.");
+    /**
+     * 准备只做一次（解压、遍历），每个节点一个 PublishService 并行发布同一批图层；
+     * 多节点时最后并行比对各节点目录。返回所有节点的结果。
+     */
+    private static List<PublishResult> publish(GeoServerCluster cluster, List<PublishManifest.Job> tasks, String defaultStyle,
+                                               int maxInFlight, List<PublishJournal> journals) {
+        // 多图层并发发布，每个节点最多 maxInFlight 个同时在途
+        long start = System.currentTimeMillis();
+        boolean recursive = Boolean.parseBoolean(AppConfig.get(AppConfig.RECURSIVE, "false"));
+        List<GeoServerClient> nodes = cluster.getNodes();
+        JobPlanner planner = new JobPlanner(cluster, AppConfig.get(AppConfig.CHARSET, "GBK"), journals);
+        List<PublishService> services = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) services.add(new PublishService(nodes.get(i), maxInFlight, journals.get(i)));
+        List<List<PublishResult>> results;
+        long[] elapsed = new long[nodes.size()];
+        try {
+            // 目录树：边遍历边提交；zip / 单层目录：先准备好再整批发布
+            List<List<CompletableFuture<PublishResult>>> streamed = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++) streamed.add(new ArrayList<>());
+            List<LayerJob> jobs = new ArrayList<>();
+            for (PublishManifest.Job task : tasks) {
+                System.out.println("Preparing " + task);
+                String style = task.style != null ? task.style : defaultStyle;
+                try {
+                    if (recursive && Files.isDirectory(Paths.get(task.path))) {
+                        List<List<CompletableFuture<PublishResult>>> submitted =
+                                planner.submitTree(task.workspace, task.datastore, Paths.get(task.path), style, services);
+                        for (int i = 0; i < nodes.size(); i++) streamed.get(i).addAll(submitted.get(i));
+                    } else {
+                        jobs.addAll(planner.prepare(task.workspace, task.datastore, task.path, style));
+                    }
+                } catch (Exception e) {
+                    System.err.println("Failed to prepare " + task + ": " + e.getMessage());
+                }
+            }
+            // 各节点同时发布同一批任务，总耗时约等于最慢的节点
+            results = onEachNode(nodes.size(), i -> {
+                List<PublishResult> nodeResults = new ArrayList<>(services.get(i).publishAll(jobs));
+                for (CompletableFuture<PublishResult> f : streamed.get(i)) nodeResults.add(f.join());
+                elapsed[i] = System.currentTimeMillis() - start;
+                return nodeResults;
+            });
+            for (int i = 0; i < nodes.size(); i++) services.get(i).endRun(results.get(i));
+        } finally {
+            services.forEach(PublishService::close);
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.size() > 1) System.out.println("Node " + nodes.get(i).getBaseUrl() + ":");
+            PublishService.printReport(results.get(i), elapsed[i]);
+        }
+        PostPublishStage.Settings post = AppConfig.postPublishSettings();
+        onEachNode(nodes.size(), i -> {
+            new PostPublishStage(nodes.get(i), post).run(results.get(i));
+            return null;
+        });
+        List<PublishResult> all = new ArrayList<>();
+        results.forEach(all::addAll);
+        if (nodes.size() > 1) checkCluster(cluster, all);
+        System.out.println("Done. Processed " + results.get(0).size() + " shapefile(s)"
+                + (nodes.size() > 1 ? " on each of " + nodes.size() + " nodes." : "."));
+        exportMetrics();
+        return all;
+    }
+
+    // 单节点直接在当前线程执行；多节点每个节点一个线程，按节点顺序返回
+    private static <T> List<T> onEachNode(int nodes, IntFunction<T> task) {
+        if (nodes == 1) return Collections.singletonList(task.apply(0));
+        ExecutorService pool = Executors.newFixedThreadPool(nodes);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                int node = i;
+                futures.add(pool.submit(() -> task.apply(node)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) results.add(f.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing to the cluster", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Publishing to a cluster node failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 本次涉及的 datastore 在各节点上的 featureType / 图层 / 样式是否一致
+    private static void checkCluster(GeoServerCluster cluster, List<PublishResult> results) {
+        Set<String> stores = new TreeSet<>();
+        for (PublishResult r : results) {
+            if (r.getWorkspace() != null && r.getDatastore() != null) stores.add(r.getWorkspace() + "/" + r.getDatastore());
+        }
+        if (stores.isEmpty()) return;
+        long t0 = System.currentTimeMillis();
+        GeoServerCluster.CatalogDiff diff = cluster.diff(stores);
+        if (diff.isConsistent()) {
+            System.out.printf("Cluster catalog consistent: %d datastore(s) identical on %d node(s) (%d ms).%n",
+                    diff.getChecked(), cluster.size(), System.currentTimeMillis() - t0);
         } else {
-            System.out.println("Datastore exists. Skipping creation.");
+            System.out.printf("Cluster catalog differs on %d point(s):%n", diff.getDifferences().size());
+            diff.getDifferences().forEach(d -> System.out.println("  " + d));
         }
+    }
 
-        // Walk *.shp and publish
-        int count = 0;
-        //Files.newDirectoryStream() create a directorystream，traverse the directory specified by input path
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input, "*.shp")) {
-            for (Path shp : stream) {
-                String layer = stripExt(shp.getFileName().toString());  //stripExt():delete the extension name of file
-                count++; //record the file number
-                publishOne(gs, workspace, datastore, layer, styleName);
+    // 发布日志：默认 publish-journal.log，--journal=off 关闭，--journal-reset 清空后重新开始。
+    // 多节点时每个节点一个文件：publish-journal.log -> publish-journal-{host}_{port}.log
+    private static List<PublishJournal> openJournals(GeoServerCluster cluster) throws IOException {
+        List<PublishJournal> journals = new ArrayList<>();
+        try {
+            for (GeoServerClient node : cluster.getNodes()) {
+                journals.add(openJournal(cluster.size() > 1 ? nodeSuffix(node.getBaseUrl()) : null));
             }
         } catch (IOException e) {
-            System.err.println("Failed to list shapefiles: " + e.getMessage());
+            closeAll(journals);
+            throw e;
         }
-        System.out.println("Done. Processed " + count + " shapefile(s).");
+        return journals;
     }
 
-    private static void publishOne(GeoServerClient gs, String ws, String store, String layer, String styleName) throws Exception {
-        // Skip if layer already published (workspace:layer)
-        if (gs.layerExists(ws, layer)) {
-            System.out.printf("Resource named '%s' already exists in namespace: '%s'%n", layer, ws);
-            // Recalc BBOX and print preview
-            gs.recalcFeatureTypeBBox(ws, store, layer, "nativebbox,latlonbbox");
-            Optional<BoundingBox> bbox = gs.getFeatureTypeBBox(ws, store, layer);
-            bbox.ifPresent(b -> System.out.println("OpenLayers preview: " + gs.buildOpenLayersPreview(ws, layer, b)));
-            return;
-        }
+    private static PublishJournal openJournal() throws IOException {
+        return openJournal(null);
+    }
 
-        // If resource exists in store, skip publish, just recalc + preview
-        if (gs.featureTypeExists(ws, store, layer)) {
-            System.out.printf("Layer '%s' already exists in datastore '%s'. Skipping publish.%n", layer, store);
-            gs.recalcFeatureTypeBBox(ws, store, layer, "nativebbox,latlonbbox");
-            Optional<BoundingBox> bbox = gs.getFeatureTypeBBox(ws, store, layer);
-            bbox.ifPresent(b -> System.out.println("OpenLayers preview: " + gs.buildOpenLayersPreview(ws, layer, b)));
-            return;
+    private static PublishJournal openJournal(String suffixOrNull) throws IOException {
+        Path file = AppConfig.journalFile();
+        if (file == null) return PublishJournal.disabled();
+        if (suffixOrNull != null) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            name = dot > 0 ? name.substring(0, dot) + "-" + suffixOrNull + name.substring(dot) : name + "-" + suffixOrNull;
+            file = file.resolveSibling(name);
         }
+        if (AppConfig.getBoolean(AppConfig.JOURNAL_RESET)) PublishJournal.reset(file);
+        PublishJournal journal = PublishJournal.open(file);
+        int completed = journal.completedCount();
+        if (completed > 0) System.out.printf("Journal %s: %d layer(s) completed in earlier runs.%n", file, completed);
+        return journal;
+    }
+
+    private static String nodeSuffix(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        String host = uri.getHost() != null ? uri.getHost() : baseUrl;
+        return (host + (uri.getPort() > 0 ? "_" + uri.getPort() : "")).replaceAll("[^A-Za-z0-9._-]", "_");
+    }
 
-        boolean created = gs.publishFeatureType(ws, store, layer, layer, null); // let .prj define CRS
-        if (!created) {
-            System.out.printf("Failed to publish layer '%s'.%n", layer);
-            return;
+    private static void closeAll(List<PublishJournal> journals) throws IOException {
+        IOException failure = null;
+        for (PublishJournal journal : journals) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
         }
-        System.out.printf("Layer '%s' published successfully.%n", layer);
-
-        // Recalc and preview
-        gs.recalcFeatureTypeBBox(ws, store, layer, "nativebbox,latlonbbox");
-        Optional<BoundingBox> bbox = gs.getFeatureTypeBBox(ws, store, layer);
-        bbox.ifPresent(b -> System.out.println("OpenLayers preview: " + gs.buildOpenLayersPreview(ws, layer, b)));
-
-        // Optional: apply style if provided
-        if (!styleName.isBlank() && !"auto".equalsIgnoreCase(styleName)) {
-            boolean styled = gs.setDefaultStyle(ws, layer, styleName);
-            System.out.println(styled
-                    ? String.format("Style '%s' applied to '%s'.", styleName, layer)
-                    : String.format("Failed to apply style '%s' to '%s'.", styleName, layer));
+        if (failure != null) throw failure;
+    }
+
+    // 控制台摘要 + 可选的 JSON / Prometheus 文本导出
+    private static void exportMetrics() {
+        Metrics.global().printSummary();
+        String output = AppConfig.get(AppConfig.METRICS_OUTPUT, null);
+        if (output == null) return;
+        try {
+            Metrics.global().writeTo(Paths.get(output));
+            System.out.println("Metrics written to " + output);
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics: " + e.getMessage());
         }
     }
 
-    private static String stripExt(String name) {
-        int i = name.lastIndexOf('.');
-        return i > 0 ? name.substring(0, i) : name;
+    private static String require(String key) {
+        String v = AppConfig.get(key, null);
+        if (v == null) throw new IllegalArgumentException("Missing required setting: " + key + " (use --manifest or set " + key + ")");
+        return v;
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,247 @@
 //配置（从 env / properties 读取 GEOSERVER_DATA_DIR 等）
 package com.example.geoserver;
 
+import com.example.geoserver.server.PostPublishStage;
+import com.example.geoserver.server.ShapefilePreflight;
+import com.example.geoserver.util.HttpUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
 
 /**
- * 应用配置（简单、可集中修改）。后续可扩展为从环境变量或命令行读取。
+ * 应用配置（简单、可集中修改）。
+ * 查找顺序（后者覆盖前者）：classpath application.properties -> 外部配置文件 -> 环境变量 -> 系统属性 -> 命令行参数。
+ * 环境变量名为 key 大写并把 '.' 换成 '_'，例如 geoserver.url -> GEOSERVER_URL。
  */
 public final class AppConfig {
     private AppConfig() {}
 
-    // Tomcat 下 GeoServer data/data 根目录（推荐改为可配置）
-    public static final Path GEOSERVER_DATA_DIR = Paths.get(
-            "D:", "apache-tomcat-9.0.85", "webapps", "geoserver", "data", "data"
+    public static final String GEOSERVER_URL = "geoserver.url";
+    public static final String GEOSERVER_USER = "geoserver.user";
+    public static final String GEOSERVER_PASSWORD = "geoserver.password";
+    public static final String GEOSERVER_DATA_DIR_KEY = "geoserver.data.dir";
+    public static final String PUBLISH_MODE = "geoserver.publish.mode";
+    public static final String WORKSPACE = "publish.workspace";
+    public static final String DATASTORE = "publish.datastore";
+    public static final String PATH = "publish.path";
+    public static final String STYLE = "publish.style";
+    public static final String CHARSET = "publish.charset";
+    public static final String MAX_IN_FLIGHT = "publish.maxInFlight";
+    public static final String MANIFEST = "publish.manifest";
+    public static final String RECURSIVE = "publish.recursive";
+    public static final String HEADLESS = "publish.headless";
+    public static final String WATCH = "publish.watch";
+    public static final String WATCH_SETTLE_MS = "watch.settleMillis";
+    public static final String WATCH_BATCH_MS = "watch.batchMillis";
+    public static final String WATCH_BATCH_MAX = "watch.batchMax";
+    public static final String CONFIG_FILE = "config";
+    public static final String HTTP_CONNECT_TIMEOUT = "http.connectTimeoutSeconds";
+    public static final String HTTP_REQUEST_TIMEOUT = "http.requestTimeoutSeconds";
+    public static final String HTTP_MAX_RETRIES = "http.maxRetries";
+    public static final String HTTP_MAX_CONCURRENCY = "http.maxConcurrency";
+    public static final String JOURNAL = "publish.journal";
+    public static final String JOURNAL_RESET = "publish.journal.reset";
+    public static final String PREFLIGHT = "preflight.enabled";
+    public static final String PREFLIGHT_INDEX = "preflight.buildIndex";
+    public static final String PREFLIGHT_THREADS = "preflight.threads";
+    public static final String LAYER_GROUPS = "publish.layerGroups";
+    public static final String LAYER_GROUP_SUFFIX = "publish.layerGroupSuffix";
+    public static final String SEED = "seed.enabled";
+    public static final String SEED_ZOOM_START = "seed.zoomStart";
+    public static final String SEED_ZOOM_STOP = "seed.zoomStop";
+    public static final String SEED_GRIDSET = "seed.gridSet";
+    public static final String SEED_FORMAT = "seed.format";
+    public static final String SEED_THREADS = "seed.threadCount";
+    public static final String SEED_MAX_CONCURRENT = "seed.maxConcurrent";
+    public static final String SEED_MAX_TILES = "seed.maxTilesPerLayer";
+    public static final String METRICS_OUTPUT = "metrics.output";
+    public static final String METRICS_JMX = "metrics.jmx";
+
+    // 命令行短参数 -> 配置 key
+    private static final Map<String, String> CLI_ALIASES = Map.ofEntries(
+            Map.entry("url", GEOSERVER_URL),
+            Map.entry("user", GEOSERVER_USER),
+            Map.entry("password", GEOSERVER_PASSWORD),
+            Map.entry("data-dir", GEOSERVER_DATA_DIR_KEY),
+            Map.entry("mode", PUBLISH_MODE),
+            Map.entry("workspace", WORKSPACE),
+            Map.entry("datastore", DATASTORE),
+            Map.entry("path", PATH),
+            Map.entry("style", STYLE),
+            Map.entry("charset", CHARSET),
+            Map.entry("max-in-flight", MAX_IN_FLIGHT),
+            Map.entry("manifest", MANIFEST),
+            Map.entry("recursive", RECURSIVE),
+            Map.entry("headless", HEADLESS),
+            Map.entry("watch", WATCH),
+            Map.entry("preflight", PREFLIGHT),
+            Map.entry("build-index", PREFLIGHT_INDEX),
+            Map.entry("layer-groups", LAYER_GROUPS),
+            Map.entry("seed", SEED),
+            Map.entry("journal", JOURNAL),
+            Map.entry("journal-reset", JOURNAL_RESET),
+            Map.entry("metrics-out", METRICS_OUTPUT)
     );
-}
\ No newline at end of file
+
+    private static final Properties fileProps = loadDefaults();
+    private static final Properties cliProps = new Properties();
+
+    /**
+     * 解析命令行参数：--key=value、--alias=value 或布尔开关 --headless。
+     * 若指定了 --config=file 则额外加载该配置文件。
+     */
+    public static synchronized void init(String[] args) throws IOException {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            String kv = arg.substring(2);
+            int eq = kv.indexOf('=');
+            String name = eq < 0 ? kv : kv.substring(0, eq);
+            String value = eq < 0 ? "true" : kv.substring(eq + 1);
+            cliProps.setProperty(CLI_ALIASES.getOrDefault(name, name), value);
+        }
+        String external = get(CONFIG_FILE, null);
+        if (external != null) loadFile(Paths.get(external), fileProps);
+    }
+
+    public static String get(String key, String def) {
+        String v = cliProps.getProperty(key);
+        if (blank(v)) v = System.getProperty(key);
+        if (blank(v)) v = System.getenv(key.toUpperCase(Locale.ROOT).replace('.', '_'));
+        if (blank(v)) v = fileProps.getProperty(key);
+        return blank(v) ? def : v.trim();
+    }
+
+    public static int getInt(String key, int def) {
+        String v = get(key, null);
+        return v == null ? def : Integer.parseInt(v);
+    }
+
+    public static boolean getBoolean(String key) {
+        return Boolean.parseBoolean(get(key, "false"));
+    }
+
+    /** 是否无交互运行（--headless、指定了 manifest 或监听目录）。 */
+    public static boolean isHeadless() {
+        return getBoolean(HEADLESS) || get(MANIFEST, null) != null || isWatch();
+    }
+
+    /** 是否以目录监听（hot folder）常驻运行：--watch=dir1,dir2。 */
+    public static boolean isWatch() {
+        return get(WATCH, null) != null;
+    }
+
+    public static List<Path> watchDirs() {
+        List<Path> dirs = new ArrayList<>();
+        for (String d : get(WATCH, "").split(",")) {
+            if (!d.isBlank()) dirs.add(Paths.get(d.trim()));
+        }
+        return dirs;
+    }
+
+    /**
+     * Tomcat 下 GeoServer data/data 根目录；可用 geoserver.data.dir 配置覆盖。
+     */
+    public static Path geoserverDataDir() {
+        String configured = get(GEOSERVER_DATA_DIR_KEY, null);
+        if (configured != null) return Paths.get(configured);
+        return Paths.get("D:", "apache-tomcat-9.0.85", "webapps", "geoserver", "data", "data");
+    }
+
+    /**
+     * 发布模式：local（解压到本机 data dir）/ remote（zip 通过 REST 上传）/ auto（默认，本机 data dir 不存在时用 remote）。
+     */
+    public static boolean useRemoteUpload() {
+        String mode = get(PUBLISH_MODE, "auto").toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "remote": return true;
+            case "local": return false;
+            default: return !Files.isDirectory(geoserverDataDir());
+        }
+    }
+
+    /**
+     * 发布日志文件；配置为 off / none 时返回 null（不记录、不续跑）。
+     */
+    public static Path journalFile() {
+        String v = get(JOURNAL, "publish-journal.log");
+        if ("off".equalsIgnoreCase(v) || "none".equalsIgnoreCase(v)) return null;
+        return Paths.get(v);
+    }
+
+    /** HTTP 超时 / 重试 / 并发参数，未配置的项保持 HttpUtils 默认值。 */
+    public static HttpUtils.Settings httpSettings() {
+        HttpUtils.Settings s = HttpUtils.Settings.defaults();
+        s.connectTimeout = Duration.ofSeconds(getInt(HTTP_CONNECT_TIMEOUT, (int) s.connectTimeout.getSeconds()));
+        s.requestTimeout = Duration.ofSeconds(getInt(HTTP_REQUEST_TIMEOUT, (int) s.requestTimeout.getSeconds()));
+        s.maxRetries = getInt(HTTP_MAX_RETRIES, s.maxRetries);
+        s.maxConcurrency = getInt(HTTP_MAX_CONCURRENCY, s.maxConcurrency);
+        s.initialConcurrency = Math.min(s.initialConcurrency, s.maxConcurrency);
+        s.minConcurrency = Math.min(s.minConcurrency, s.maxConcurrency);
+        return s;
+    }
+
+    /** 发布前的本地校验与 .qix 生成，默认开启。 */
+    public static ShapefilePreflight.Settings preflightSettings() {
+        ShapefilePreflight.Settings s = ShapefilePreflight.Settings.defaults();
+        s.enabled = Boolean.parseBoolean(get(PREFLIGHT, "true"));
+        s.buildIndex = Boolean.parseBoolean(get(PREFLIGHT_INDEX, "true"));
+        s.threads = getInt(PREFLIGHT_THREADS, s.threads);
+        return s;
+    }
+
+    /** 发布后的图层组 / 预切参数，未配置的项保持 PostPublishStage 默认值。 */
+    public static PostPublishStage.Settings postPublishSettings() {
+        PostPublishStage.Settings s = PostPublishStage.Settings.defaults();
+        s.layerGroups = getBoolean(LAYER_GROUPS);
+        s.layerGroupSuffix = get(LAYER_GROUP_SUFFIX, s.layerGroupSuffix);
+        s.seed = getBoolean(SEED);
+        s.zoomStart = getInt(SEED_ZOOM_START, s.zoomStart);
+        s.zoomStop = getInt(SEED_ZOOM_STOP, s.zoomStop);
+        s.gridSet = get(SEED_GRIDSET, s.gridSet);
+        s.format = get(SEED_FORMAT, s.format);
+        s.threadCount = getInt(SEED_THREADS, s.threadCount);
+        s.maxConcurrent = getInt(SEED_MAX_CONCURRENT, s.maxConcurrent);
+        String maxTiles = get(SEED_MAX_TILES, null);
+        if (maxTiles != null) s.maxTilesPerLayer = Long.parseLong(maxTiles);
+        return s;
+    }
+
+    private static Properties loadDefaults() {
+        Properties p = new Properties();
+        try (InputStream in = AppConfig.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    p.load(r);
+                }
+            }
+            // 工作目录下的 application.properties 覆盖 jar 内默认值
+            Path local = Paths.get("application.properties");
+            if (Files.isRegularFile(local)) loadFile(local, p);
+        } catch (IOException e) {
+            System.err.println("Failed to load application.properties: " + e.getMessage());
+        }
+        return p;
+    }
+
+    private static void loadFile(Path file, Properties into) throws IOException {
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            into.load(r);
+        }
+    }
+
+    private static boolean blank(String v) {
+        return v == null || v.isBlank();
+    }
+}
@@ -0,0 +1,77 @@
+//GeoServer 目录快照：一次性拉取 featureType / layer 列表，存在性检查变为内存查找
+package com.example.geoserver;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 某个 workspace/datastore 的目录快照。
+ * 由 {@link GeoServerClient#loadCatalog(String, String)} 构建，
+ * 本进程发布成功的图层会通过 {@link #markPublished(String)} 追加进来。
+ * <p>
+ * 图层名属于整个 workspace（layers.json 不区分 datastore）：同一客户端里同一 workspace 的各个快照共用一个图层集合，
+ * 在任一 datastore 发布的图层对其它快照的 {@link #hasLayer(String)} 立即可见。
+ * <p>
+ * 快照只反映拉取时刻的状态，其他客户端随后的修改不会被看到。
+ */
+public class CatalogSnapshot {
+    private final String workspace;
+    private final String datastore;
+    private final Set<String> featureTypes = ConcurrentHashMap.newKeySet();
+    private final Set<String> layers; // 本 workspace 下的图层名（不带前缀），可能与同 workspace 的其它快照共用
+    private final long loadedAtMillis = System.currentTimeMillis();
+
+    public CatalogSnapshot(String workspace, String datastore,
+                           Collection<String> featureTypes, Collection<String> layers) {
+        this(workspace, datastore, featureTypes, ConcurrentHashMap.newKeySet());
+        this.layers.addAll(layers);
+    }
+
+    /** workspaceLayers 由调用方持有并共享（须为线程安全的集合），不做拷贝。 */
+    CatalogSnapshot(String workspace, String datastore, Collection<String> featureTypes, Set<String> workspaceLayers) {
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.featureTypes.addAll(featureTypes);
+        this.layers = workspaceLayers;
+    }
+
+    public String getWorkspace() { return workspace; }
+
+    public String getDatastore() { return datastore; }
+
+    public long getLoadedAtMillis() { return loadedAtMillis; }
+
+    public boolean hasFeatureType(String name) {
+        return featureTypes.contains(name);
+    }
+
+    public boolean hasLayer(String name) {
+        return layers.contains(name);
+    }
+
+    /** 本进程发布成功后更新索引，避免下次误判为不存在。 */
+    public void markPublished(String name) {
+        featureTypes.add(name);
+        layers.add(name);
+    }
+
+    /** 只读视图。 */
+    public Set<String> featureTypeNames() {
+        return Collections.unmodifiableSet(featureTypes);
+    }
+
+    /** 只读视图。 */
+    public Set<String> layerNames() {
+        return Collections.unmodifiableSet(layers);
+    }
+
+    public int featureTypeCount() {
+        return featureTypes.size();
+    }
+
+    public int layerCount() {
+        return layers.size();
+    }
+}
@@ -0,0 +1,86 @@
+//featureType 文档缓存（TTL + 容量上限 + ETag 复验）
+package com.example.geoserver;
+
+import com.example.geoserver.model.FeatureTypeInfo;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 缓存 GET featuretypes/{layer}.json 解析后的 {@link FeatureTypeInfo}（不保留原始文档），key 为 ws/store/layer。
+ * <ul>
+ *   <li>TTL 内直接返回缓存内容，不发请求；</li>
+ *   <li>过期后若有 ETag，则带 If-None-Match 复验，304 时续期；</li>
+ *   <li>超过 maxEntries 时按 LRU 淘汰。</li>
+ * </ul>
+ */
+public class FeatureTypeCache {
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /** 一条缓存记录；etag 可能为 null（服务器未返回时）。 */
+    public static final class Entry {
+        final FeatureTypeInfo info;
+        final String etag;
+        final long fetchedAtNanos;
+
+        Entry(FeatureTypeInfo info, String etag, long fetchedAtNanos) {
+            this.info = info;
+            this.etag = etag;
+            this.fetchedAtNanos = fetchedAtNanos;
+        }
+    }
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public FeatureTypeCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    public FeatureTypeCache(Duration ttl, int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        // accessOrder=true 即 LRU
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    static String key(String ws, String store, String layer) {
+        return ws + "/" + store + "/" + layer;
+    }
+
+    /** 返回记录（可能已过期），没有则返回 null。 */
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    boolean isFresh(Entry e) {
+        return System.nanoTime() - e.fetchedAtNanos < ttlNanos;
+    }
+
+    synchronized void put(String key, FeatureTypeInfo info, String etag) {
+        entries.put(key, new Entry(info, etag, System.nanoTime()));
+    }
+
+    /** 304 Not Modified：沿用旧内容，刷新时间戳。 */
+    synchronized void touch(String key, Entry e) {
+        entries.put(key, new Entry(e.info, e.etag, System.nanoTime()));
+    }
+
+    public synchronized void invalidate(String ws, String store, String layer) {
+        entries.remove(key(ws, store, layer));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -3,33 +3,86 @@
 package com.example.geoserver;
 
 import com.example.geoserver.model.BoundingBox;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.geoserver.model.FeatureTypeInfo;
+import com.example.geoserver.model.ShapefileInfo;
+import com.example.geoserver.util.HttpUtils;
+import com.example.geoserver.util.JsonBodyHandlers;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * GeoServer REST 客户端。每个操作都有同步版本（send，抛 Exception）
+ * 和 *Async 版本（sendAsync，返回 CompletableFuture，不占用调用线程），
+ * 两者共用同一个请求构造方法和状态码判断。
+ * 所有请求都经过 {@link HttpUtils}（超时、重试、熔断、自适应并发）。
+ * <p>
+ * 请求体由共享的 {@link ObjectWriter} 序列化；JSON 响应通过 {@link JsonBodyHandlers} 边接收边解析，
+ * 只把需要的字段读进 {@link FeatureTypeInfo} 等模型，不生成中间字符串和 JsonNode 树。
+ */
 public class GeoServerClient {
     private final String baseUrl; // e.g., http://localhost:8080/geoserver
-    private final String user;
-    private final String pass;
-    private final HttpClient http;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final String restUrl; // baseUrl + "/rest"
+    private final String authHeader; // 预先计算好的 Basic 认证头
+    private final HttpUtils httpUtils; // 所有请求经过它：超时、重试、熔断、自适应并发
+    private final FeatureTypeCache featureTypeCache;
+    // 线程安全、可复用；所有请求体都经由它序列化
+    private static final ObjectWriter JSON_WRITER = new ObjectMapper().writer();
+    // key: ws/store -> 目录快照（loadCatalog 之后 exists 检查不再发请求）
+    private final Map<String, CatalogSnapshot> catalogs = new ConcurrentHashMap<>();
+    // key: ws -> 该 workspace 的图层名，同 workspace 的所有快照共用
+    private final Map<String, Set<String>> workspaceLayers = new ConcurrentHashMap<>();
+    // key: ws -> 样式目录（resolveStyle 的缓存）
+    private final Map<String, StyleCatalog> styleCatalogs = new ConcurrentHashMap<>();
 
     public GeoServerClient(String baseUrl, String user, String pass) {
+        this(baseUrl, user, pass, new FeatureTypeCache());
+    }
+
+    public GeoServerClient(String baseUrl, String user, String pass, FeatureTypeCache featureTypeCache) {
+        this(baseUrl, user, pass, featureTypeCache, HttpUtils.Settings.defaults());
+    }
+
+    public GeoServerClient(String baseUrl, String user, String pass, FeatureTypeCache featureTypeCache,
+                           HttpUtils.Settings httpSettings) {
         this.baseUrl = baseUrl.replaceAll("/$", "");// 移除 URL 末尾的斜杠（统一格式）
-        this.user = user;
-        this.pass = pass;
-        this.http = HttpClient.newHttpClient();
+        this.restUrl = this.baseUrl + "/rest";
+        this.authHeader = basicAuth(user, pass);
+        this.featureTypeCache = featureTypeCache;
+        this.httpUtils = new HttpUtils(HttpUtils.newHttpClient(httpSettings), httpSettings);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public HttpUtils getHttpUtils() {
+        return httpUtils;
     }
 
-    private String basicAuth() {
+    private static String basicAuth(String user, String pass) {
         // 对 "用户名:密码" 进行 Base64 编码，生成 Basic 认证令牌
         String token = Base64.getEncoder().encodeToString((user + ":" + pass).getBytes(StandardCharsets.UTF_8));
         return "Basic " + token;
@@ -37,169 +90,626 @@ public class GeoServerClient {
 
     private HttpRequest.Builder reqBuilder(String url) {
         return HttpRequest.newBuilder(URI.create(url))
-                .header("Authorization", basicAuth())// 添加认证头
+                .header("Authorization", authHeader)// 添加认证头
                 .header("Accept", "application/json");// 声明接受 JSON 响应
     }
 
     public boolean workspaceExists(String ws) throws Exception {
-        // 构造查询 URL
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + ".json";
         // 发送 GET 请求，忽略响应体（只需状态码）
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.discarding());
-        return res.statusCode() == 200;
+        return isOk(httpUtils.send(workspaceExistsRequest(ws), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> workspaceExistsAsync(String ws) {
+        return httpUtils.sendAsync(workspaceExistsRequest(ws), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isOk);
+    }
+
+    private HttpRequest workspaceExistsRequest(String ws) {
+        // 构造查询 URL
+        String url = restUrl + "/workspaces/" + enc(ws) + ".json";
+        return reqBuilder(url).GET().build();
     }
 
     public boolean createWorkspace(String ws) throws Exception {
-        String url = baseUrl + "/rest/workspaces";
-        String body = "{\"workspace\":{\"name\":\"" + escape(ws) + "\"}}";
-        var req = reqBuilder(url).header("Content-Type","application/json").POST(HttpRequest.BodyPublishers.ofString(body)).build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
         // 201（创建成功）或 200（已存在）均返回 true
-        return res.statusCode() == 201 || res.statusCode() == 200;
+        return isCreated(httpUtils.send(createWorkspaceRequest(ws), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> createWorkspaceAsync(String ws) {
+        return httpUtils.sendAsync(createWorkspaceRequest(ws), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated);
+    }
+
+    private HttpRequest createWorkspaceRequest(String ws) {
+        String url = restUrl + "/workspaces";
+        Object body = Map.of("workspace", Map.of("name", ws));
+        return reqBuilder(url).header("Content-Type","application/json").POST(json(body)).build();
     }
 
     public boolean datastoreExists(String ws, String store) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store) + ".json";
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.discarding());
-        return res.statusCode() == 200;
+        return isOk(httpUtils.send(datastoreExistsRequest(ws, store), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> datastoreExistsAsync(String ws, String store) {
+        return httpUtils.sendAsync(datastoreExistsRequest(ws, store), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isOk);
+    }
+
+    private HttpRequest datastoreExistsRequest(String ws, String store) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store) + ".json";
+        return reqBuilder(url).GET().build();
     }
 
     public boolean createDirectoryDatastore(String ws, String store, String folder, String charset) throws Exception {
+        return isCreated(httpUtils.send(createDirectoryDatastoreRequest(ws, store, folder, charset), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> createDirectoryDatastoreAsync(String ws, String store, String folder, String charset) {
+        return httpUtils.sendAsync(createDirectoryDatastoreRequest(ws, store, folder, charset), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated);
+    }
+
+    private HttpRequest createDirectoryDatastoreRequest(String ws, String store, String folder, String charset) {
         // Normalize to forward slashes and ensure trailing slash; file: scheme (no double slashes)
         String normalized = folder.replace("\\", "/");
         if (!normalized.endsWith("/")) normalized += "/";
         String urlParam = "file:" + normalized;
 
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores";
-        //%s字符串占位符
-        String body = """   
-        {
-          "dataStore": {
-            "name": "%s",   
-            "connectionParameters": {
-              "url": "%s",
-              "charset": "%s",
-              "create spatial index": "true",
-              "cache and reuse memory maps": "true"
-            }
-          }
-        }
-        """.formatted(escape(store), escape(urlParam), escape(charset));
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores";
+        Object body = Map.of("dataStore", fields(
+                "name", store,
+                "connectionParameters", fields(
+                        "url", urlParam,
+                        "charset", charset,
+                        "create spatial index", "true",
+                        "cache and reuse memory maps", "true")));
 
-        var req = reqBuilder(url)
+        return reqBuilder(url)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .POST(json(body))
+                .build();
+    }
+
+    /**
+     * 远程发布：PUT /rest/workspaces/{ws}/datastores/{store}/file.shp?configure=all，
+     * 以 BodyPublishers.ofFile 流式上传 zip（不把文件读入堆内存）。
+     * datastore 不存在时由 GeoServer 创建。
+     */
+    public boolean uploadShapefileZip(String ws, String store, Path zip, String charset) throws Exception {
+        boolean ok = isAccepted(httpUtils.send(uploadShapefileZipRequest(ws, store, zip, charset), HttpResponse.BodyHandlers.discarding()));
+        if (ok) invalidateCatalog(ws, store);
+        return ok;
+    }
+
+    public CompletableFuture<Boolean> uploadShapefileZipAsync(String ws, String store, Path zip, String charset) {
+        final HttpRequest req;
+        try {
+            req = uploadShapefileZipRequest(ws, store, zip, charset);
+        } catch (FileNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpUtils.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isAccepted)
+                .thenApply(ok -> {
+                    if (ok) invalidateCatalog(ws, store);
+                    return ok;
+                });
+    }
+
+    private HttpRequest uploadShapefileZipRequest(String ws, String store, Path zip, String charset) throws FileNotFoundException {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store)
+                + "/file.shp?configure=all&charset=" + urlEnc(charset);
+        return reqBuilder(url)
+                .timeout(Duration.ofMinutes(30)) // 大文件上传不使用默认请求超时
+                .header("Content-Type", "application/zip")
+                .PUT(HttpRequest.BodyPublishers.ofFile(zip))
                 .build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
-        return res.statusCode() == 201 || res.statusCode() == 200;
     }
 
     public boolean featureTypeExists(String ws, String store, String layer) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store)
+        CatalogSnapshot snapshot = catalogs.get(catalogKey(ws, store));
+        if (snapshot != null) return snapshot.hasFeatureType(layer);
+        return isOk(httpUtils.send(featureTypeRequest(ws, store, layer), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> featureTypeExistsAsync(String ws, String store, String layer) {
+        CatalogSnapshot snapshot = catalogs.get(catalogKey(ws, store));
+        if (snapshot != null) return CompletableFuture.completedFuture(snapshot.hasFeatureType(layer));
+        return httpUtils.sendAsync(featureTypeRequest(ws, store, layer), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isOk);
+    }
+
+    /** GET featuretypes/{layer}.json，仅用于存在性检查（bbox / srs 走 fetchFeatureType 缓存）。 */
+    private HttpRequest featureTypeRequest(String ws, String store, String layer) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store)
                 + "/featuretypes/" + enc(layer) + ".json";
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.discarding());
-        return res.statusCode() == 200;
+        return reqBuilder(url).GET().build();
     }
 
     public boolean layerExists(String ws, String layer) throws Exception {
+        CatalogSnapshot snapshot = snapshotForWorkspace(ws);
+        if (snapshot != null) return snapshot.hasLayer(layer);
+        return isOk(httpUtils.send(layerExistsRequest(ws, layer), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> layerExistsAsync(String ws, String layer) {
+        CatalogSnapshot snapshot = snapshotForWorkspace(ws);
+        if (snapshot != null) return CompletableFuture.completedFuture(snapshot.hasLayer(layer));
+        return httpUtils.sendAsync(layerExistsRequest(ws, layer), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isOk);
+    }
+
+    private HttpRequest layerExistsRequest(String ws, String layer) {
         // Keep colon unescaped between ws:layer; encode parts otherwise
         String qualified = enc(ws) + ":" + enc(layer);
-        String url = baseUrl + "/rest/layers/" + qualified + ".json";
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.discarding());
-        return res.statusCode() == 200;
+        String url = restUrl + "/layers/" + qualified + ".json";
+        return reqBuilder(url).GET().build();
     }
 
     public boolean publishFeatureType(String ws, String store, String layer, String title, String srsOrNull) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store) + "/featuretypes";
-        // Let GeoServer infer CRS from .prj (safer). If you must force, add "srs": "EPSG:xxxx".
-        String srsPart = (srsOrNull == null || srsOrNull.isBlank()) ? "" : "\"srs\":\"" + escape(srsOrNull) + "\",";
-        String body = """
-        {
-          "featureType": {
-            "name": "%s",
-            %s
-            "title": "%s",
-            "enabled": true
-          }
+        // GeoServer may return 201 (created) or 200 (already exists / synchronous response).
+        boolean ok = isCreated(httpUtils.send(publishFeatureTypeRequest(ws, store, layer, title, srsOrNull), HttpResponse.BodyHandlers.discarding()));
+        if (ok) markPublished(ws, store, layer);
+        return ok;
+    }
+
+    public CompletableFuture<Boolean> publishFeatureTypeAsync(String ws, String store, String layer, String title, String srsOrNull) {
+        return httpUtils.sendAsync(publishFeatureTypeRequest(ws, store, layer, title, srsOrNull), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated)
+                .thenApply(ok -> {
+                    if (ok) markPublished(ws, store, layer);
+                    return ok;
+                });
+    }
+
+    /**
+     * 发布时直接带上本地读取的 nativeBoundingBox（见 {@link ShapefileReader}），
+     * GeoServer 不必再扫描数据文件计算范围，发布后也无需 recalc。
+     * bboxCrsOrNull 只写入 bbox 的 crs，不强制图层 srs。
+     * <p>
+     * latLonBoundingBox 能在本地得出时（经纬度坐标系原样使用，EPSG:3857 反算）一并提交；
+     * 否则创建成功后再发一次 PUT ?recalculate=latlonbbox，由服务端按 native bbox 投影得到（不扫描数据）。
+     * 返回 false 也可能是 featureType 已创建、但 latLonBoundingBox 没能设置。
+     */
+    public boolean publishFeatureType(String ws, String store, String layer, String title, String srsOrNull,
+                                      BoundingBox nativeBBox, String bboxCrsOrNull) throws Exception {
+        BoundingBox latLon = latLonOf(nativeBBox, bboxCrsOrNull);
+        boolean ok = isCreated(httpUtils.send(publishFeatureTypeRequest(ws, store, layer, title, srsOrNull, nativeBBox, bboxCrsOrNull, latLon),
+                HttpResponse.BodyHandlers.discarding()));
+        if (ok) markPublished(ws, store, layer);
+        if (!ok || latLon != null) return ok;
+        return isCreated(httpUtils.send(recalcFeatureTypeBBoxRequest(ws, store, layer, "latlonbbox"), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> publishFeatureTypeAsync(String ws, String store, String layer, String title, String srsOrNull,
+                                                              BoundingBox nativeBBox, String bboxCrsOrNull) {
+        BoundingBox latLon = latLonOf(nativeBBox, bboxCrsOrNull);
+        return httpUtils.sendAsync(publishFeatureTypeRequest(ws, store, layer, title, srsOrNull, nativeBBox, bboxCrsOrNull, latLon),
+                        HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated)
+                .thenCompose(ok -> {
+                    if (ok) markPublished(ws, store, layer);
+                    if (!ok || latLon != null) return CompletableFuture.completedFuture(ok);
+                    return httpUtils.sendAsync(recalcFeatureTypeBBoxRequest(ws, store, layer, "latlonbbox"), HttpResponse.BodyHandlers.discarding())
+                            .thenApply(GeoServerClient::isCreated);
+                });
+    }
+
+    // 本地可得的经纬度范围：经纬度坐标系直接使用，Web Mercator 按球面公式反算；其它坐标系返回 null
+    static BoundingBox latLonOf(BoundingBox b, String crsOrNull) {
+        if (b == null || crsOrNull == null) return null;
+        BoundingBox latLon;
+        switch (crsOrNull.toUpperCase(Locale.ROOT)) {
+            case "EPSG:4326":
+            case "EPSG:4490":
+            case "CRS:84":
+                latLon = new BoundingBox(b.minx, b.miny, b.maxx, b.maxy);
+                break;
+            case "EPSG:3857":
+            case "EPSG:900913":
+                latLon = new BoundingBox(mercatorLon(b.minx), mercatorLat(b.miny), mercatorLon(b.maxx), mercatorLat(b.maxy));
+                break;
+            default:
+                return null;
         }
-        """.formatted(escape(layer), srsPart, escape(title));
-        var req = reqBuilder(url)
+        latLon.crs = "EPSG:4326";
+        return latLon;
+    }
+
+    private static final double MERCATOR_RADIUS = 6378137.0;
+
+    private static double mercatorLon(double x) {
+        return Math.max(-180, Math.min(180, Math.toDegrees(x / MERCATOR_RADIUS)));
+    }
+
+    private static double mercatorLat(double y) {
+        return Math.toDegrees(2 * Math.atan(Math.exp(y / MERCATOR_RADIUS)) - Math.PI / 2);
+    }
+
+    private HttpRequest publishFeatureTypeRequest(String ws, String store, String layer, String title, String srsOrNull) {
+        return publishFeatureTypeRequest(ws, store, layer, title, srsOrNull, null, null, null);
+    }
+
+    private HttpRequest publishFeatureTypeRequest(String ws, String store, String layer, String title, String srsOrNull,
+                                                  BoundingBox nativeBBox, String bboxCrsOrNull, BoundingBox latLonOrNull) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store) + "/featuretypes";
+        // Let GeoServer infer CRS from .prj (safer). If you must force, add "srs": "EPSG:xxxx".
+        Object body = Map.of("featureType", fields(
+                "name", layer,
+                "srs", blankToNull(srsOrNull),
+                "nativeBoundingBox", nativeBBox == null ? null : withCrs(nativeBBox, bboxCrsOrNull),
+                "latLonBoundingBox", latLonOrNull,
+                "title", title,
+                "enabled", true));
+        return reqBuilder(url)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .POST(json(body))
                 .build();
-    var res = http.send(req, HttpResponse.BodyHandlers.ofString());
-    // GeoServer may return 201 (created) or 200 (already exists / synchronous response).
-    return res.statusCode() == 201 || res.statusCode() == 200;
+    }
+
+    /**
+     * 一次性拉取 featuretypes.json 与 layers.json，建立 ws/store 的目录快照。
+     * 之后 featureTypeExists / layerExists 直接查内存，不再逐个发 GET。
+     */
+    public CatalogSnapshot loadCatalog(String ws, String store) throws Exception {
+        CatalogSnapshot fetched = fetchCatalog(ws, store);
+        // 与同 workspace 已有快照共用图层集合；只做并集，不会丢掉本进程刚发布、但拉取时还不存在的图层
+        Set<String> shared = workspaceLayers.computeIfAbsent(ws, k -> ConcurrentHashMap.newKeySet());
+        shared.addAll(fetched.layerNames());
+        CatalogSnapshot snapshot = new CatalogSnapshot(ws, store, fetched.featureTypeNames(), shared);
+        catalogs.put(catalogKey(ws, store), snapshot);
+        return snapshot;
+    }
+
+    /**
+     * 与 {@link #loadCatalog} 相同的两次 GET，但只返回一个独立的快照，不安装到本客户端：
+     * 之后的 exists 检查不受影响。用于节点比对等只读场景。
+     */
+    public CatalogSnapshot fetchCatalog(String ws, String store) throws Exception {
+        String ftUrl = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store) + "/featuretypes.json";
+        var ftRes = httpUtils.send(reqBuilder(ftUrl).GET().build(), JsonBodyHandlers.ofJson(() -> namesAt("featureTypes.featureType")));
+        if (ftRes.statusCode() != 200) {
+            throw new IllegalStateException("Failed to list featureTypes of " + ws + "/" + store + ": HTTP " + ftRes.statusCode());
+        }
+        var layerRes = httpUtils.send(reqBuilder(restUrl + "/layers.json").GET().build(), JsonBodyHandlers.ofJson(() -> namesAt("layers.layer")));
+        if (layerRes.statusCode() != 200) {
+            throw new IllegalStateException("Failed to list layers: HTTP " + layerRes.statusCode());
+        }
+
+        // layers.json 返回 "ws:layer"，只保留本 workspace 的图层并去掉前缀
+        String prefix = ws + ":";
+        List<String> layers = new ArrayList<>();
+        for (String qualified : layerRes.body()) {
+            if (qualified.startsWith(prefix)) layers.add(qualified.substring(prefix.length()));
+        }
+        return new CatalogSnapshot(ws, store, ftRes.body(), layers);
+    }
+
+    /** 丢弃快照，之后的 exists 检查恢复为逐个请求。 */
+    public void invalidateCatalog(String ws, String store) {
+        catalogs.remove(catalogKey(ws, store));
+        if (snapshotForWorkspace(ws) == null) workspaceLayers.remove(ws);
+    }
+
+    // 该 datastore 没有快照时也要更新 workspace 的图层集合（其它 datastore 的快照会用它回答 layerExists）
+    private void markPublished(String ws, String store, String layer) {
+        CatalogSnapshot snapshot = catalogs.get(catalogKey(ws, store));
+        if (snapshot != null) snapshot.markPublished(layer);
+        Set<String> layers = workspaceLayers.get(ws);
+        if (layers != null) layers.add(layer);
+    }
+
+    private CatalogSnapshot snapshotForWorkspace(String ws) {
+        for (CatalogSnapshot s : catalogs.values()) {
+            if (s.getWorkspace().equals(ws)) return s;
+        }
+        return null;
+    }
+
+    private static String catalogKey(String ws, String store) {
+        return ws + "/" + store;
+    }
+
+    // 收集列表中每个元素的 name；GeoServer 空列表为 ""、单个元素时为对象，两种情况都能正确处理
+    private static JsonBodyHandlers.Collector<List<String>> namesAt(String path) {
+        return new JsonBodyHandlers.Collector<>() {
+            private final List<String> names = new ArrayList<>();
+
+            @Override
+            public void value(String parent, String field, JsonParser p) throws IOException {
+                if ("name".equals(field) && path.equals(parent)) names.add(p.getText());
+            }
+
+            @Override
+            public List<String> result() {
+                return names;
+            }
+        };
     }
 
     public boolean setDefaultStyle(String ws, String layer, String styleName) throws Exception {
+        return setDefaultStyle(ws, layer, styleName, ws);
+    }
+
+    /**
+     * styleWorkspaceOrNull 为 null 时引用全局样式（如内置的 point / line / polygon）。
+     */
+    public boolean setDefaultStyle(String ws, String layer, String styleName, String styleWorkspaceOrNull) throws Exception {
+        return isCreated(httpUtils.send(setDefaultStyleRequest(ws, layer, styleName, styleWorkspaceOrNull), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> setDefaultStyleAsync(String ws, String layer, String styleName) {
+        return setDefaultStyleAsync(ws, layer, styleName, ws);
+    }
+
+    public CompletableFuture<Boolean> setDefaultStyleAsync(String ws, String layer, String styleName, String styleWorkspaceOrNull) {
+        return httpUtils.sendAsync(setDefaultStyleRequest(ws, layer, styleName, styleWorkspaceOrNull), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated);
+    }
+
+    private HttpRequest setDefaultStyleRequest(String ws, String layer, String styleName, String styleWorkspaceOrNull) {
         String qualified = enc(ws) + ":" + enc(layer);
-        String url = baseUrl + "/rest/layers/" + qualified;
-        String body = """
-        {"layer":{"defaultStyle":{"name":"%s","workspace":"%s"}}}
-        """.formatted(escape(styleName), escape(ws));
-        var req = reqBuilder(url)
+        String url = restUrl + "/layers/" + qualified;
+        Object body = Map.of("layer", Map.of("defaultStyle", fields("name", styleName, "workspace", styleWorkspaceOrNull)));
+        return reqBuilder(url)
                 .header("Content-Type", "application/json")
-                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .PUT(json(body))
                 .build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
-        return res.statusCode() == 200 || res.statusCode() == 201;
+    }
+
+    /**
+     * 几何类型 -> 本 workspace 中应使用的默认样式名（见 {@link StyleCatalog}）：
+     * 每个 workspace 只列出一次样式，缺少的生成样式只上传一次，之后是内存查找。
+     */
+    public String resolveStyle(String ws, ShapefileInfo.GeometryKind kind) throws Exception {
+        try {
+            return resolveStyleAsync(ws, kind).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    public CompletableFuture<String> resolveStyleAsync(String ws, ShapefileInfo.GeometryKind kind) {
+        return styleCatalogs.computeIfAbsent(ws, StyleCatalog::new)
+                .resolve(kind, () -> listStylesAsync(ws), (name, sld) -> createStyleAsync(ws, name, sld));
+    }
+
+    /** workspace 下的样式名（一次 GET）。 */
+    public CompletableFuture<List<String>> listStylesAsync(String ws) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/styles.json";
+        return httpUtils.sendAsync(reqBuilder(url).GET().build(), JsonBodyHandlers.ofJson(() -> namesAt("styles.style")))
+                .thenApply(res -> {
+                    if (res.statusCode() != 200) {
+                        throw new IllegalStateException("Failed to list styles of " + ws + ": HTTP " + res.statusCode());
+                    }
+                    return res.body();
+                });
+    }
+
+    /** 以 SLD 1.0 原文创建 workspace 样式（POST styles?name=...）。 */
+    public CompletableFuture<Boolean> createStyleAsync(String ws, String name, String sld) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/styles?name=" + urlEnc(name);
+        HttpRequest req = reqBuilder(url)
+                .header("Content-Type", "application/vnd.ogc.sld+xml")
+                .POST(HttpRequest.BodyPublishers.ofString(sld, StandardCharsets.UTF_8))
+                .build();
+        return httpUtils.sendAsync(req, HttpResponse.BodyHandlers.discarding()).thenApply(GeoServerClient::isCreated);
     }
 
     public boolean recalcFeatureTypeBBox(String ws, String store, String layer, String which) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store)
+        // bbox 会变化，缓存的 featureType 文档作废
+        featureTypeCache.invalidate(ws, store, layer);
+        return isCreated(httpUtils.send(recalcFeatureTypeBBoxRequest(ws, store, layer, which), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public CompletableFuture<Boolean> recalcFeatureTypeBBoxAsync(String ws, String store, String layer, String which) {
+        featureTypeCache.invalidate(ws, store, layer);
+        return httpUtils.sendAsync(recalcFeatureTypeBBoxRequest(ws, store, layer, which), HttpResponse.BodyHandlers.discarding())
+                .thenApply(GeoServerClient::isCreated);
+    }
+
+    private HttpRequest recalcFeatureTypeBBoxRequest(String ws, String store, String layer, String which) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store)
                 + "/featuretypes/" + enc(layer) + ".json?recalculate=" + urlEnc(which);
-        String body = "{\"featureType\":{}}";
+        return reqBuilder(url)
+                .header("Content-Type", "application/json")
+                .PUT(json(Map.of("featureType", Map.of())))
+                .build();
+    }
+
+    /**
+     * 用本地计算的 bbox 更新已有 featureType，只让服务端由 native 推算 latlon（不扫描数据文件）。
+     */
+    public boolean updateFeatureTypeBBox(String ws, String store, String layer, BoundingBox nativeBBox, String crsOrNull) throws Exception {
+        featureTypeCache.invalidate(ws, store, layer);
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store)
+                + "/featuretypes/" + enc(layer) + ".json?recalculate=latlonbbox";
+        Object body = Map.of("featureType", Map.of("nativeBoundingBox", withCrs(nativeBBox, crsOrNull)));
         var req = reqBuilder(url)
                 .header("Content-Type", "application/json")
-                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .PUT(json(body))
                 .build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
-        return res.statusCode() == 200 || res.statusCode() == 201;
+        return isCreated(httpUtils.send(req, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    // 请求中的 bbox：复制一份并带上 crs（为空时不输出该字段）
+    private static BoundingBox withCrs(BoundingBox b, String crsOrNull) {
+        BoundingBox copy = new BoundingBox(b.minx, b.miny, b.maxx, b.maxy);
+        copy.crs = blankToNull(crsOrNull);
+        return copy;
     }
 
     public Optional<BoundingBox> getFeatureTypeBBox(String ws, String store, String layer) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store)
-                + "/featuretypes/" + enc(layer) + ".json";
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
-        if (res.statusCode() != 200) return Optional.empty();
-
-        JsonNode root = mapper.readTree(res.body()).path("featureType");
-        JsonNode bbox = root.path("nativeBoundingBox");
-        if (missing(bbox)) bbox = root.path("latLonBoundingBox");
-        if (missing(bbox)) return Optional.empty();
-
-        if (bbox.has("minx") && bbox.has("miny") && bbox.has("maxx") && bbox.has("maxy")) {
-            return Optional.of(new BoundingBox(
-                    bbox.path("minx").asDouble(),
-                    bbox.path("miny").asDouble(),
-                    bbox.path("maxx").asDouble(),
-                    bbox.path("maxy").asDouble()
-            ));
-        }
-        return Optional.empty();
+        return Optional.ofNullable(fetchFeatureType(ws, store, layer)).map(FeatureTypeInfo::bbox);
+    }
+
+    public CompletableFuture<Optional<BoundingBox>> getFeatureTypeBBoxAsync(String ws, String store, String layer) {
+        return fetchFeatureTypeAsync(ws, store, layer)
+                .thenApply(info -> Optional.ofNullable(info).map(FeatureTypeInfo::bbox));
     }
 
     /**
      * Return the declared SRS for a featureType (e.g. "EPSG:4326"), or null if not present.
      */
     public String getFeatureTypeSRS(String ws, String store, String layer) throws Exception {
-        String url = baseUrl + "/rest/workspaces/" + enc(ws) + "/datastores/" + enc(store)
+        FeatureTypeInfo info = fetchFeatureType(ws, store, layer);
+        return info == null ? null : info.declaredSrs();
+    }
+
+    public CompletableFuture<String> getFeatureTypeSRSAsync(String ws, String store, String layer) {
+        return fetchFeatureTypeAsync(ws, store, layer)
+                .thenApply(info -> info == null ? null : info.declaredSrs());
+    }
+
+    /** featureType 的 bbox / srs / 属性列表；不存在时为 empty。 */
+    public Optional<FeatureTypeInfo> getFeatureTypeInfo(String ws, String store, String layer) throws Exception {
+        return Optional.ofNullable(fetchFeatureType(ws, store, layer));
+    }
+
+    public CompletableFuture<Optional<FeatureTypeInfo>> getFeatureTypeInfoAsync(String ws, String store, String layer) {
+        return fetchFeatureTypeAsync(ws, store, layer).thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * 读取 featureType 文档（经过 {@link FeatureTypeCache}）：TTL 内直接命中，
+     * 过期则带 If-None-Match 复验。非 200 返回 null，且不缓存。
+     */
+    private FeatureTypeInfo fetchFeatureType(String ws, String store, String layer) throws Exception {
+        String key = FeatureTypeCache.key(ws, store, layer);
+        FeatureTypeCache.Entry cached = featureTypeCache.get(key);
+        if (cached != null && featureTypeCache.isFresh(cached)) return cached.info;
+        var res = httpUtils.send(conditionalFeatureTypeRequest(ws, store, layer, cached), JsonBodyHandlers.ofJson(FeatureTypeInfo::collector));
+        return storeFeatureType(key, cached, res);
+    }
+
+    private CompletableFuture<FeatureTypeInfo> fetchFeatureTypeAsync(String ws, String store, String layer) {
+        String key = FeatureTypeCache.key(ws, store, layer);
+        FeatureTypeCache.Entry cached = featureTypeCache.get(key);
+        if (cached != null && featureTypeCache.isFresh(cached)) return CompletableFuture.completedFuture(cached.info);
+        return httpUtils.sendAsync(conditionalFeatureTypeRequest(ws, store, layer, cached), JsonBodyHandlers.ofJson(FeatureTypeInfo::collector))
+                .thenApply(res -> storeFeatureType(key, cached, res));
+    }
+
+    private HttpRequest conditionalFeatureTypeRequest(String ws, String store, String layer, FeatureTypeCache.Entry cached) {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/datastores/" + enc(store)
                 + "/featuretypes/" + enc(layer) + ".json";
-        var req = reqBuilder(url).GET().build();
-        var res = http.send(req, HttpResponse.BodyHandlers.ofString());
+        HttpRequest.Builder b = reqBuilder(url).GET();
+        if (cached != null && cached.etag != null) b.header("If-None-Match", cached.etag);
+        return b.build();
+    }
+
+    private FeatureTypeInfo storeFeatureType(String key, FeatureTypeCache.Entry cached, HttpResponse<FeatureTypeInfo> res) {
+        if (res.statusCode() == 304 && cached != null) {
+            featureTypeCache.touch(key, cached);
+            return cached.info;
+        }
         if (res.statusCode() != 200) return null;
-        JsonNode root = mapper.readTree(res.body()).path("featureType");
-        // common property names: "srs", "nativeCRS", "nativeSRS"
-        if (root.has("srs") && !root.path("srs").isNull()) return root.path("srs").asText();
-        if (root.has("nativeCRS") && !root.path("nativeCRS").isNull()) return root.path("nativeCRS").asText();
-        if (root.has("nativeSRS") && !root.path("nativeSRS").isNull()) return root.path("nativeSRS").asText();
-        return null;
+        featureTypeCache.put(key, res.body(), res.headers().firstValue("ETag").orElse(null));
+        return res.body();
+    }
+
+    /**
+     * workspace 图层组当前包含的图层（"ws:layer" 形式）；不存在时为 empty。
+     */
+    public Optional<List<String>> getLayerGroupLayers(String ws, String group) throws Exception {
+        String url = restUrl + "/workspaces/" + enc(ws) + "/layergroups/" + enc(group) + ".json";
+        var res = httpUtils.send(reqBuilder(url).GET().build(),
+                JsonBodyHandlers.ofJson(() -> namesAt("layerGroup.publishables.published")));
+        if (res.statusCode() == 404) return Optional.empty();
+        if (res.statusCode() != 200) {
+            throw new IllegalStateException("Failed to read layer group " + ws + ":" + group + ": HTTP " + res.statusCode());
+        }
+        return Optional.of(res.body());
+    }
+
+    /**
+     * 创建（exists=false，POST）或整体替换（PUT）图层组；layers 为 "ws:layer"。
+     * 不指定 styles 与 bounds，由 GeoServer 使用各图层默认样式并计算范围。
+     */
+    public boolean saveLayerGroup(String ws, String group, List<String> layers, boolean exists) throws Exception {
+        List<Map<String, Object>> published = new ArrayList<>(layers.size());
+        for (String layer : layers) published.add(fields("@type", "layer", "name", layer));
+        Object body = Map.of("layerGroup", fields(
+                "name", group,
+                "mode", "SINGLE",
+                "publishables", Map.of("published", published)));
+        String url = restUrl + "/workspaces/" + enc(ws) + "/layergroups";
+        HttpRequest.Builder b = reqBuilder(exists ? url + "/" + enc(group) : url).header("Content-Type", "application/json");
+        HttpRequest req = exists ? b.PUT(json(body)).build() : b.POST(json(body)).build();
+        return isCreated(httpUtils.send(req, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    /**
+     * 提交 GeoWebCache 预切任务（POST /gwc/rest/seed/{ws}:{layer}.json），由服务端后台执行。
+     * boundsOrNull 须为 gridSet 坐标系下的范围，为 null 时切整个图层范围。
+     */
+    public boolean seed(String ws, String layer, String gridSetId, int srsNumber, BoundingBox boundsOrNull,
+                        int zoomStart, int zoomStop, String format, int threadCount) throws Exception {
+        return seed(ws, layer, "seed", gridSetId, srsNumber, boundsOrNull, zoomStart, zoomStop, format, threadCount);
+    }
+
+    /**
+     * @param type "seed" 只生成缺少的瓦片；"reseed" 重新生成范围内全部瓦片（数据变化后旧瓦片已过期）；"truncate" 删除
+     */
+    public boolean seed(String ws, String layer, String type, String gridSetId, int srsNumber, BoundingBox boundsOrNull,
+                        int zoomStart, int zoomStop, String format, int threadCount) throws Exception {
+        String name = ws + ":" + layer;
+        Map<String, Object> request = fields(
+                "name", name,
+                "gridSetId", gridSetId,
+                "srs", Map.of("number", srsNumber),
+                "zoomStart", zoomStart,
+                "zoomStop", zoomStop,
+                "format", format,
+                "type", type,
+                "threadCount", threadCount);
+        if (boundsOrNull != null) {
+            request.put("bounds", Map.of("coords", Map.of("double",
+                    List.of(boundsOrNull.minx, boundsOrNull.miny, boundsOrNull.maxx, boundsOrNull.maxy))));
+        }
+        HttpRequest req = reqBuilder(seedUrl(ws, layer))
+                .header("Content-Type", "application/json")
+                .POST(json(Map.of("seedRequest", request)))
+                .build();
+        return isOk(httpUtils.send(req, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    /**
+     * 图层当前的预切任务：每项为 [已完成瓦片数, 总瓦片数, 预计剩余秒数, 任务 id, 状态]，
+     * 状态 -1 中止 / 0 等待 / 1 运行 / 2 完成；没有任务时为空列表。
+     */
+    public List<long[]> seedStatus(String ws, String layer) throws Exception {
+        var res = httpUtils.send(reqBuilder(seedUrl(ws, layer)).GET().build(), JsonBodyHandlers.ofJson(() ->
+                new JsonBodyHandlers.Collector<List<long[]>>() {
+                    // {"long-array-array": [[done, total, remaining, id, status], ...]}，数组透明，按 5 个一组切分
+                    private final List<Long> values = new ArrayList<>();
+
+                    @Override
+                    public void value(String parent, String field, JsonParser p) throws IOException {
+                        if ("long-array-array".equals(parent) && field == null) values.add(p.getValueAsLong());
+                    }
+
+                    @Override
+                    public List<long[]> result() {
+                        List<long[]> tasks = new ArrayList<>();
+                        for (int i = 0; i + 5 <= values.size(); i += 5) {
+                            tasks.add(new long[] {values.get(i), values.get(i + 1), values.get(i + 2), values.get(i + 3), values.get(i + 4)});
+                        }
+                        return tasks;
+                    }
+                }));
+        if (res.statusCode() != 200) {
+            throw new IllegalStateException("Failed to read seed status of " + ws + ":" + layer + ": HTTP " + res.statusCode());
+        }
+        return res.body();
+    }
+
+    private String seedUrl(String ws, String layer) {
+        return baseUrl + "/gwc/rest/seed/" + enc(ws) + ":" + enc(layer) + ".json";
+    }
+
+    public FeatureTypeCache getFeatureTypeCache() {
+        return featureTypeCache;
     }
 
     public String buildOpenLayersPreview(String ws, String layer, BoundingBox bbox3857OrNative) {
@@ -226,6 +736,13 @@ public class GeoServerClient {
         } catch (Exception e) {
             // ignore and fall back to default
         }
+        return buildOpenLayersPreviewWithSrs(ws, layer, bbox, srs);
+    }
+
+    /**
+     * SRS 已知（例如从本地 .prj 读出）时直接拼预览 URL，不访问 GeoServer。
+     */
+    public String buildOpenLayersPreviewWithSrs(String ws, String layer, BoundingBox bbox, String srs) {
         String params = "service=WMS&version=1.1.0&request=GetMap"
                 + "&layers=" + urlEnc(ws + ":" + layer)
                 + "&bbox=" + urlEnc(bbox.toString())
@@ -234,8 +751,17 @@ public class GeoServerClient {
                 + "&styles=&format=" + urlEnc("application/openlayers");
         return baseUrl + "/" + enc(ws) + "/wms?" + params;
     }
-    private static boolean missing(JsonNode n) {
-        return n == null || n.isMissingNode() || n.isNull();
+
+    private static boolean isOk(HttpResponse<?> res) {
+        return res.statusCode() == 200;
+    }
+
+    private static boolean isCreated(HttpResponse<?> res) {
+        return res.statusCode() == 201 || res.statusCode() == 200;
+    }
+
+    private static boolean isAccepted(HttpResponse<?> res) {
+        return isCreated(res) || res.statusCode() == 202;
     }
 
     private static String enc(String s) {
@@ -246,8 +772,24 @@ public class GeoServerClient {
         return URLEncoder.encode(s, StandardCharsets.UTF_8);
     }
 
-    private static String escape(String s) {
-        // Minimal JSON string escape for quotes/backslashes
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    private static HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(JSON_WRITER.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize request body", e);
+        }
+    }
+
+    // 有序 Map，值为 null 的键不输出（对应 GeoServer 的可选字段）
+    private static Map<String, Object> fields(Object... keyValues) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            if (keyValues[i + 1] != null) m.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return m;
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
     }
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+//多节点 GeoServer：目录操作并行分发到每个节点，结束时并行比对各节点目录
+package com.example.geoserver;
+
+import com.example.geoserver.util.HttpUtils;
+import com.example.geoserver.util.Metrics;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 负载均衡后面的一组 GeoServer（各自独立的目录）。
+ * <p>
+ * 每个节点一个 {@link GeoServerClient}（各自的连接池、重试与自适应并发），一个节点变慢不会拖住其它节点的请求。
+ * workspace / datastore / zip 上传等目录操作通过 {@link #fanOut} 同时发给所有节点并收集每个节点的结果；
+ * 图层级的 featureType / bbox / 样式由每个节点各自的 PublishService 并行执行。
+ * 整个集群的发布耗时约等于最慢的节点，而不是各节点之和。最后用 {@link #diff} 并行拉取各节点目录，确认一致。
+ */
+public class GeoServerCluster {
+
+    /** 一个节点上一次操作的结果：value 或 error 之一。 */
+    public static final class NodeResult<T> {
+        private final GeoServerClient node;
+        private final T value;
+        private final Throwable error;
+
+        NodeResult(GeoServerClient node, T value, Throwable error) {
+            this.node = node;
+            this.value = value;
+            this.error = error;
+        }
+
+        public GeoServerClient getNode() { return node; }
+
+        public T getValue() { return value; }
+
+        /** 失败时的异常，成功时为 null。 */
+        public Throwable getError() { return error; }
+
+        public boolean isOk() { return error == null; }
+
+        @Override
+        public String toString() {
+            return node.getBaseUrl() + ": " + (error == null ? value : "error " + error.getMessage());
+        }
+    }
+
+    private final List<GeoServerClient> nodes;
+
+    public GeoServerCluster(List<GeoServerClient> nodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("A cluster needs at least one GeoServer node");
+        this.nodes = List.copyOf(nodes);
+    }
+
+    /** 每个 URL 一个客户端，共用认证信息与 HTTP 参数。 */
+    public static GeoServerCluster of(List<String> urls, String user, String pass, HttpUtils.Settings httpSettings) {
+        List<GeoServerClient> clients = new ArrayList<>();
+        for (String url : urls) clients.add(new GeoServerClient(url, user, pass, new FeatureTypeCache(), httpSettings));
+        return new GeoServerCluster(clients);
+    }
+
+    /** "http://a/geoserver, http://b/geoserver" -> 去重后的 URL 列表。 */
+    public static List<String> parseUrls(String urls) {
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String url : urls.split(",")) {
+            if (!url.isBlank()) parsed.add(url.trim().replaceAll("/$", ""));
+        }
+        return new ArrayList<>(parsed);
+    }
+
+    public List<GeoServerClient> getNodes() { return nodes; }
+
+    public int size() { return nodes.size(); }
+
+    /**
+     * 把同一个操作同时发给所有节点，等全部结束后按节点顺序返回；单个节点失败不影响其它节点。
+     */
+    public <T> List<NodeResult<T>> fanOut(String operation, Function<GeoServerClient, CompletableFuture<T>> call) {
+        return fanOutAsync(operation, call).join();
+    }
+
+    public <T> CompletableFuture<List<NodeResult<T>>> fanOutAsync(String operation, Function<GeoServerClient, CompletableFuture<T>> call) {
+        Metrics metrics = Metrics.global();
+        List<CompletableFuture<NodeResult<T>>> futures = new ArrayList<>();
+        for (GeoServerClient node : nodes) {
+            CompletableFuture<T> f;
+            try {
+                f = call.apply(node);
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            futures.add(f.handle((value, e) -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                metrics.counter("geoserver_cluster_ops_total", "op", operation, "result", cause == null ? "ok" : "error").inc();
+                return new NodeResult<>(node, value, cause);
+            }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /** 在所有节点上确保 workspace 存在；值为该节点上是否新建。 */
+    public List<NodeResult<Boolean>> ensureWorkspace(String ws) {
+        return fanOut("workspace", node -> node.workspaceExistsAsync(ws).thenCompose(exists -> exists
+                ? CompletableFuture.completedFuture(false)
+                : node.createWorkspaceAsync(ws).thenApply(ok -> created(ok, "workspace " + ws))));
+    }
+
+    /** 在所有节点上确保 directory datastore 存在（各节点需能以同一路径访问 folder）；值为是否新建。 */
+    public List<NodeResult<Boolean>> ensureDirectoryDatastore(String ws, String store, String folder, String charset) {
+        return fanOut("datastore", node -> node.datastoreExistsAsync(ws, store).thenCompose(exists -> exists
+                ? CompletableFuture.completedFuture(false)
+                : node.createDirectoryDatastoreAsync(ws, store, folder, charset).thenApply(ok -> created(ok, "datastore " + ws + "/" + store))));
+    }
+
+    /** 同一个 zip 并行上传给所有节点（远程模式）。 */
+    public List<NodeResult<Boolean>> uploadShapefileZip(String ws, String store, Path zip, String charset) {
+        return fanOut("upload", node -> node.uploadShapefileZipAsync(ws, store, zip, charset)
+                .thenApply(ok -> created(ok, "upload of " + zip.getFileName() + " to " + ws + "/" + store)));
+    }
+
+    private static boolean created(boolean ok, String what) {
+        if (!ok) throw new IllegalStateException("GeoServer rejected " + what);
+        return true;
+    }
+
+    /** 有节点失败时抛出异常，消息中列出每个失败的节点。 */
+    public static <T> void requireAll(String what, List<NodeResult<T>> results) {
+        List<String> failed = results.stream().filter(r -> !r.isOk()).map(NodeResult::toString).collect(Collectors.toList());
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException(what + " failed on " + failed.size() + " of " + results.size() + " node(s): "
+                    + String.join("; ", failed));
+        }
+    }
+
+    /** 各节点目录的比对结果。 */
+    public static final class CatalogDiff {
+        private final List<String> differences = new ArrayList<>();
+        private int checked;
+
+        public boolean isConsistent() { return differences.isEmpty(); }
+
+        /** 每条为 "node: missing ..."（该节点缺少、其它节点存在的项）或该节点的读取错误。 */
+        public List<String> getDifferences() { return differences; }
+
+        /** 参与比对的 datastore 数。 */
+        public int getChecked() { return checked; }
+    }
+
+    /**
+     * 并行拉取每个节点上这些 datastore 的 featureType 列表以及所在 workspace 的图层与样式列表，
+     * 以所有节点的并集为准，列出每个节点缺少的项。
+     *
+     * @param stores "ws/store" 形式
+     */
+    public CatalogDiff diff(Collection<String> stores) {
+        Set<String> sorted = new TreeSet<>(stores);
+        Set<String> workspaces = new TreeSet<>();
+        for (String key : sorted) workspaces.add(key.substring(0, key.indexOf('/')));
+        // fetchCatalog 是同步请求：每个 (节点, datastore) 占一个线程，全部同时发出；只读，不替换节点上用于发布的快照
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(32, sorted.size() * nodes.size())), r -> {
+            Thread t = new Thread(r, "cluster-diff");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Map<String, CompletableFuture<List<NodeResult<CatalogSnapshot>>>> snapshots = new LinkedHashMap<>();
+            for (String key : sorted) {
+                String ws = key.substring(0, key.indexOf('/')), store = key.substring(key.indexOf('/') + 1);
+                snapshots.put(key, fanOutAsync("diff", node -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return node.fetchCatalog(ws, store);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, pool)));
+            }
+            Map<String, CompletableFuture<List<NodeResult<List<String>>>>> styles = new LinkedHashMap<>();
+            for (String ws : workspaces) styles.put(ws, fanOutAsync("diff", node -> node.listStylesAsync(ws)));
+
+            CatalogDiff diff = new CatalogDiff();
+            Set<String> layersCompared = new LinkedHashSet<>();
+            snapshots.forEach((key, f) -> {
+                compare(key + " featureTypes", f.join(), CatalogSnapshot::featureTypeNames, diff.differences);
+                // 快照中的图层列表是整个 workspace 的，每个 workspace 比一次
+                String ws = key.substring(0, key.indexOf('/'));
+                if (layersCompared.add(ws)) compare(ws + " layers", f.join(), CatalogSnapshot::layerNames, diff.differences);
+            });
+            styles.forEach((ws, f) -> compare(ws + " styles", f.join(), Function.identity(), diff.differences));
+            diff.checked = sorted.size();
+            Metrics.global().gauge("geoserver_cluster_catalog_differences").set(diff.differences.size());
+            return diff;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <S> void compare(String what, List<NodeResult<S>> results, Function<S, ? extends Collection<String>> names,
+                                    List<String> differences) {
+        Set<String> union = new TreeSet<>();
+        for (NodeResult<S> r : results) {
+            if (r.isOk()) union.addAll(names.apply(r.getValue()));
+        }
+        for (NodeResult<S> r : results) {
+            if (!r.isOk()) {
+                differences.add(r.getNode().getBaseUrl() + ": cannot read " + what + " (" + r.getError().getMessage() + ")");
+                continue;
+            }
+            Set<String> missing = new TreeSet<>(union);
+            missing.removeAll(names.apply(r.getValue()));
+            if (!missing.isEmpty()) {
+                differences.add(r.getNode().getBaseUrl() + ": missing " + missing.size() + " of " + what + " " + abbreviate(missing));
+            }
+        }
+    }
+
+    private static String abbreviate(Set<String> names) {
+        List<String> list = new ArrayList<>(names);
+        return list.size() <= 10 ? list.toString()
+                : Arrays.toString(list.subList(0, 10).toArray()).replace("]", ", ... +" + (list.size() - 10) + "]");
+    }
+}
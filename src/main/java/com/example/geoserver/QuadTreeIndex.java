@@ -0,0 +1,277 @@
+//shapefile 的 .qix 四叉树空间索引（GeoTools / MapServer shptree 格式），在本地生成，GeoServer 首次读取即可使用
+package com.example.geoserver;
+
+import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.model.ShapefileInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * 与 GeoTools ShapeFileIndexer 写出的 .qix 相同的结构，GeoServer 的 shapefile datastore 可直接读取：
+ * <pre>
+ * header   "SQT"  byteOrder(2 = 新格式大端)  version(1)  3 字节保留
+ *          int numShapes  int maxDepth
+ * node     int 子树字节数（跳过全部子节点用）
+ *          double minx miny maxx maxy
+ *          int numShapes  int[numShapes] 记录号（从 0 开始）
+ *          int numChildren  紧接着按先序写出各子节点
+ * </pre>
+ * 插入方式同 GeoTools：节点范围沿长边按 0.55 的比例切成两半、每半再切一次得到四个互有重叠的象限，
+ * 记录放进能完全容纳它的最深象限（不超过 maxDepth），否则留在当前节点。
+ * 写出的节点范围收紧为其中记录与子节点的实际范围。
+ * <p>
+ * 记录由 {@link ShapefileValidator} 扫描时逐条送入（本类即 {@link ShapefileValidator.RecordVisitor}），只保存记录号。
+ */
+public final class QuadTreeIndex implements ShapefileValidator.RecordVisitor {
+    /** 叶子平均容纳的记录数，用于推算 maxDepth（GeoTools 默认 16）。 */
+    public static final int DEFAULT_LEAF_SIZE = 16;
+    private static final double SPLIT_RATIO = 0.55;
+    private static final byte NEW_MSB_ORDER = 2;
+    private static final byte VERSION = 1;
+    private static final int NODE_FIXED_BYTES = 4 + 4 * 8 + 4 + 4;
+
+    private static final class Node {
+        // 划分用的名义范围
+        final double minx, miny, maxx, maxy;
+        // 实际内容范围（写入文件）
+        double cminx = Double.POSITIVE_INFINITY, cminy = Double.POSITIVE_INFINITY;
+        double cmaxx = Double.NEGATIVE_INFINITY, cmaxy = Double.NEGATIVE_INFINITY;
+        int[] ids = new int[0];
+        int count;
+        Node[] quadrants; // 按象限下标固定位置，未用到的为 null
+        long subtreeBytes;
+
+        Node(double minx, double miny, double maxx, double maxy) {
+            this.minx = minx;
+            this.miny = miny;
+            this.maxx = maxx;
+            this.maxy = maxy;
+        }
+
+        boolean contains(double x0, double y0, double x1, double y1) {
+            return minx <= x0 && x1 <= maxx && miny <= y0 && y1 <= maxy;
+        }
+
+        void expand(double x0, double y0, double x1, double y1) {
+            cminx = Math.min(cminx, x0);
+            cminy = Math.min(cminy, y0);
+            cmaxx = Math.max(cmaxx, x1);
+            cmaxy = Math.max(cmaxy, y1);
+        }
+
+        void add(int id) {
+            if (count == ids.length) ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+            ids[count++] = id;
+        }
+
+        int childCount() {
+            int n = 0;
+            if (quadrants != null) for (Node q : quadrants) if (q != null) n++;
+            return n;
+        }
+    }
+
+    private final Node root;
+    private final int numShapes;
+    private final int maxDepth;
+
+    /**
+     * @param bounds    根节点范围（通常为 .shp 头中的 bbox；范围外的记录留在根节点）
+     * @param numShapes .shx 中的记录数
+     */
+    public QuadTreeIndex(BoundingBox bounds, int numShapes, int leafSize) {
+        this.root = new Node(bounds.minx, bounds.miny, bounds.maxx, bounds.maxy);
+        this.numShapes = numShapes;
+        this.maxDepth = maxDepth(numShapes, leafSize);
+    }
+
+    /** 同 GeoTools：满四叉树的叶子数 x leafSize 不少于记录数所需的层数，至少 10 层。 */
+    static int maxDepth(int numShapes, int leafSize) {
+        int depth = 1;
+        long nodes = 1;
+        while (nodes * leafSize < numShapes) {
+            depth++;
+            nodes *= 4;
+        }
+        return Math.max(depth, 10);
+    }
+
+    /**
+     * 校验并为 shp 建立索引（一次扫描）；数据不合格时抛出 {@link IllegalArgumentException}，见 {@link ShapefileValidator}。
+     */
+    public static QuadTreeIndex build(Path shp, int leafSize) throws IOException {
+        ShapefileInfo header = ShapefileReader.readHeader(shp);
+        Path shx = ShapefileReader.sibling(shp, ".shx");
+        int records = shx != null ? ShapefileReader.readRecordCount(shx) : 0;
+        BoundingBox bounds = header.bbox;
+        if (!usable(bounds)) {
+            // 头中的 bbox 不可用：先扫描一遍取实际范围（页已在缓存中，第二遍很快）
+            bounds = ShapefileValidator.validate(shp).getExtent();
+            if (bounds == null) bounds = new BoundingBox(0, 0, 0, 0);
+        }
+        QuadTreeIndex index = new QuadTreeIndex(bounds, records, leafSize);
+        ShapefileValidator.validate(shp, index);
+        return index;
+    }
+
+    @Override
+    public void record(int id, double x0, double y0, double x1, double y1) {
+        Node node = root;
+        int depth = maxDepth;
+        while (true) {
+            node.expand(x0, y0, x1, y1);
+            if (depth <= 1) break;
+            Node child = quadrantFor(node, x0, y0, x1, y1);
+            if (child == null) break;
+            node = child;
+            depth--;
+        }
+        node.add(id);
+    }
+
+    // 能完全容纳该范围的象限（需要时创建）；都容纳不了返回 null
+    private static Node quadrantFor(Node node, double x0, double y0, double x1, double y1) {
+        if (node.quadrants != null) {
+            for (Node q : node.quadrants) {
+                if (q != null && q.contains(x0, y0, x1, y1)) return q;
+            }
+        }
+        double[][] quads = split(node);
+        for (int i = 0; i < 4; i++) {
+            double[] q = quads[i];
+            if (q[0] <= x0 && x1 <= q[2] && q[1] <= y0 && y1 <= q[3]) {
+                if (node.quadrants == null) node.quadrants = new Node[4];
+                if (node.quadrants[i] == null) node.quadrants[i] = new Node(q[0], q[1], q[2], q[3]);
+                return node.quadrants[i];
+            }
+        }
+        return null;
+    }
+
+    // 先沿长边切两半，每半再沿其长边切两半；相邻两半各占 55%，有 10% 重叠
+    private static double[][] split(Node n) {
+        double[][] halves = halves(n.minx, n.miny, n.maxx, n.maxy);
+        double[][] a = halves(halves[0][0], halves[0][1], halves[0][2], halves[0][3]);
+        double[][] b = halves(halves[1][0], halves[1][1], halves[1][2], halves[1][3]);
+        return new double[][] {a[0], a[1], b[0], b[1]};
+    }
+
+    private static double[][] halves(double minx, double miny, double maxx, double maxy) {
+        if (maxx - minx > maxy - miny) {
+            double range = maxx - minx;
+            return new double[][] {
+                    {minx, miny, minx + range * SPLIT_RATIO, maxy},
+                    {maxx - range * SPLIT_RATIO, miny, maxx, maxy}};
+        }
+        double range = maxy - miny;
+        return new double[][] {
+                {minx, miny, maxx, miny + range * SPLIT_RATIO},
+                {minx, maxy - range * SPLIT_RATIO, maxx, maxy}};
+    }
+
+    /** 先写临时文件再原子替换，GeoServer 不会读到写了一半的索引。 */
+    public void write(Path qix) throws IOException {
+        sizeOf(root);
+        Path tmp = qix.resolveSibling(qix.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            // DataOutputStream 固定大端，对应 NEW_MSB_ORDER
+            out.write("SQT".getBytes(StandardCharsets.US_ASCII));
+            out.writeByte(NEW_MSB_ORDER);
+            out.writeByte(VERSION);
+            out.write(new byte[3]);
+            out.writeInt(numShapes);
+            out.writeInt(maxDepth);
+            writeNode(out, root);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        try {
+            Files.move(tmp, qix, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, qix, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 返回节点自身加子树的字节数，并记下子树部分（即节点头里的 offset）
+    private static long sizeOf(Node node) {
+        long children = 0;
+        if (node.quadrants != null) {
+            for (Node q : node.quadrants) if (q != null) children += sizeOf(q);
+        }
+        node.subtreeBytes = children;
+        return NODE_FIXED_BYTES + 4L * node.count + children;
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        if (node.subtreeBytes > Integer.MAX_VALUE) throw new IOException("Spatial index larger than 2 GB");
+        out.writeInt((int) node.subtreeBytes);
+        boolean empty = node.cminx > node.cmaxx; // 只可能是没有任何记录的根节点
+        out.writeDouble(empty ? node.minx : node.cminx);
+        out.writeDouble(empty ? node.miny : node.cminy);
+        out.writeDouble(empty ? node.maxx : node.cmaxx);
+        out.writeDouble(empty ? node.maxy : node.cmaxy);
+        out.writeInt(node.count);
+        for (int i = 0; i < node.count; i++) out.writeInt(node.ids[i]);
+        out.writeInt(node.childCount());
+        if (node.quadrants != null) {
+            for (Node q : node.quadrants) if (q != null) writeNode(out, q);
+        }
+    }
+
+    public int getNumShapes() { return numShapes; }
+
+    public int getMaxDepth() { return maxDepth; }
+
+    /** x.shp -> x.qix（X.SHP -> X.QIX）。 */
+    public static Path qixPath(Path shp) {
+        String name = shp.getFileName().toString();
+        String ext = name.substring(name.length() - 4);
+        return shp.resolveSibling(name.substring(0, name.length() - 4) + (ext.equals(".SHP") ? ".QIX" : ".qix"));
+    }
+
+    /** 已有的 .qix 不早于 .shp / .shx（与 GeoTools 判断索引过期的方式一致）。 */
+    public static boolean isFresh(Path shp) {
+        try {
+            Path qix = qixPath(shp);
+            if (!Files.isRegularFile(qix)) return false;
+            long indexed = Files.getLastModifiedTime(qix).toMillis();
+            if (indexed < Files.getLastModifiedTime(shp).toMillis()) return false;
+            Path shx = ShapefileReader.sibling(shp, ".shx");
+            return shx == null || indexed >= Files.getLastModifiedTime(shx).toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@link #isFresh} 之外还要求 .qix 不早于给定的同名文件（如 ".dbf"）：
+     * 预检在校验通过后才写索引，因此成立时说明这些文件在上次预检之后都没有变过。
+     */
+    public static boolean isFreshFor(Path shp, String... sidecars) {
+        if (!isFresh(shp)) return false;
+        try {
+            long indexed = Files.getLastModifiedTime(qixPath(shp)).toMillis();
+            for (String ext : sidecars) {
+                Path p = ShapefileReader.sibling(shp, ext);
+                if (p != null && Files.getLastModifiedTime(p).toMillis() > indexed) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean usable(BoundingBox b) {
+        return b != null && Double.isFinite(b.minx) && Double.isFinite(b.miny) && Double.isFinite(b.maxx) && Double.isFinite(b.maxy)
+                && b.minx <= b.maxx && b.miny <= b.maxy;
+    }
+}
@@ -0,0 +1,121 @@
+//本地读取 .shp/.shx 文件头与 .prj，无需 REST 即可得到 bbox、几何类型和坐标系
+package com.example.geoserver;
+
+import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.model.ShapefileInfo;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 只读 100 字节主文件头（内存映射），不扫描记录本身。
+ * <pre>
+ *  0  int  BE  file code 9994
+ * 24  int  BE  file length（16 位字为单位）
+ * 28  int  LE  version 1000
+ * 32  int  LE  shape type
+ * 36  4 x double LE  Xmin Ymin Xmax Ymax
+ * </pre>
+ */
+public final class ShapefileReader {
+    private ShapefileReader() {}
+
+    public static final int HEADER_LENGTH = 100;
+    private static final int FILE_CODE = 9994;
+    private static final Pattern EPSG_AUTHORITY = Pattern.compile("AUTHORITY\\[\"EPSG\",\\s*\"?(\\d+)\"?\\]");
+
+    /**
+     * 读取 shp 对应的 .shp/.shx/.prj；shp 不存在或头部非法时返回 empty。
+     */
+    public static Optional<ShapefileInfo> read(Path shp) {
+        if (shp == null || !Files.isRegularFile(shp)) return Optional.empty();
+        try {
+            ShapefileInfo info = readHeader(shp);
+            Path shx = sibling(shp, ".shx");
+            if (shx != null) info.recordCount = readRecordCount(shx);
+            Path prj = sibling(shp, ".prj");
+            if (prj != null) info.srs = parsePrj(Files.readString(prj, StandardCharsets.ISO_8859_1));
+            return Optional.of(info);
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** 解析 .shp 主文件头。 */
+    public static ShapefileInfo readHeader(Path shp) throws IOException {
+        try (FileChannel ch = FileChannel.open(shp, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_LENGTH) throw new IllegalArgumentException("Not a shapefile (too short): " + shp);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            buf.order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt(0) != FILE_CODE) throw new IllegalArgumentException("Bad shapefile file code: " + shp);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int shapeType = buf.getInt(32);
+            BoundingBox bbox = new BoundingBox(buf.getDouble(36), buf.getDouble(44), buf.getDouble(52), buf.getDouble(60));
+            return new ShapefileInfo(shapeType, bbox);
+        }
+    }
+
+    /** .shx 头中的文件长度推出记录数：(长度 - 100) / 8。 */
+    public static int readRecordCount(Path shx) throws IOException {
+        try (FileChannel ch = FileChannel.open(shx, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_LENGTH) throw new IllegalArgumentException("Not a shape index (too short): " + shx);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            buf.order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt(0) != FILE_CODE) throw new IllegalArgumentException("Bad shx file code: " + shx);
+            long bytes = buf.getInt(24) * 2L;
+            return (int) ((bytes - HEADER_LENGTH) / 8);
+        }
+    }
+
+    /**
+     * 从 WKT 识别 EPSG 代码：优先取最外层 AUTHORITY，其次按常见坐标系名称匹配。
+     * 识别不了返回 null（由 GeoServer 自行根据 .prj 推断）。
+     */
+    public static String parsePrj(String wkt) {
+        if (wkt == null || wkt.isBlank()) return null;
+        // 最外层的 AUTHORITY 出现在字符串末尾
+        Matcher m = EPSG_AUTHORITY.matcher(wkt);
+        String code = null;
+        int end = -1;
+        while (m.find()) {
+            code = m.group(1);
+            end = m.end();
+        }
+        // 只有紧跟着最后一个 "]" 的 AUTHORITY 才属于整个坐标系（而不是其中的基准面/椭球）
+        if (code != null && wkt.substring(end).trim().equals("]")) return "EPSG:" + code;
+
+        String upper = wkt.toUpperCase(Locale.ROOT);
+        if (upper.startsWith("PROJCS")) {
+            if (upper.contains("WEB_MERCATOR") || upper.contains("PSEUDO_MERCATOR")
+                    || upper.contains("POPULAR_VISUALISATION")) return "EPSG:3857";
+            return null;
+        }
+        if (upper.startsWith("GEOGCS")) {
+            if (upper.contains("CGCS_2000") || upper.contains("CGCS2000")
+                    || upper.contains("CHINA_GEODETIC_COORDINATE_SYSTEM_2000")) return "EPSG:4490";
+            if (upper.contains("WGS_1984") || upper.contains("WGS 84") || upper.contains("WGS84")) return "EPSG:4326";
+        }
+        return null;
+    }
+
+    // 同名不同扩展名的伴随文件，大小写不敏感；不存在返回 null
+    static Path sibling(Path shp, String ext) {
+        String name = shp.getFileName().toString();
+        String base = name.substring(0, name.length() - 4);
+        for (String candidate : new String[]{base + ext, base + ext.toUpperCase(Locale.ROOT)}) {
+            Path p = shp.resolveSibling(candidate);
+            if (Files.isRegularFile(p)) return p;
+        }
+        return null;
+    }
+}
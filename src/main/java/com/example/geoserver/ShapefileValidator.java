@@ -0,0 +1,187 @@
+//发布前的本地完整性检查：内存映射 .shp/.shx/.dbf，核对记录数与偏移，顺带取出每条记录的外包框
+package com.example.geoserver;
+
+import com.example.geoserver.model.BoundingBox;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 逐条核对 .shx 索引与 .shp 记录，并检查 .dbf 头：
+ * <ul>
+ *   <li>.shp / .shx 的 file code、version、shape type 一致，头中的文件长度不超过实际大小；</li>
+ *   <li>.shx 每条的偏移与长度落在 .shp 之内，且与 .shp 该处记录头中的长度相同，几何类型为头中类型或空；</li>
+ *   <li>.dbf 的记录数与 .shx 相同，头长度 + 记录数 x 记录长度不超过文件大小。</li>
+ * </ul>
+ * 不合格时抛出 {@link IllegalArgumentException}，消息说明哪个文件哪条记录出错。
+ * 扫描时把每条记录的外包框交给 {@link RecordVisitor}（例如 {@link QuadTreeIndex}），整个文件只读一遍。
+ */
+public final class ShapefileValidator {
+    private ShapefileValidator() {}
+
+    private static final int FILE_CODE = 9994;
+    private static final int VERSION = 1000;
+    private static final int DBF_HEADER_MIN = 32;
+
+    /** 逐条接收非空记录的外包框（按记录顺序，index 从 0 开始）。 */
+    public interface RecordVisitor {
+        void record(int index, double minx, double miny, double maxx, double maxy);
+    }
+
+    /** 通过校验的 shapefile 概要。 */
+    public static final class Result {
+        private final int shapeType;
+        private final int recordCount;
+        private final BoundingBox extent;  // 全部非空记录的并集；没有非空记录时为 null
+
+        Result(int shapeType, int recordCount, BoundingBox extent) {
+            this.shapeType = shapeType;
+            this.recordCount = recordCount;
+            this.extent = extent;
+        }
+
+        public int getShapeType() { return shapeType; }
+
+        public int getRecordCount() { return recordCount; }
+
+        public BoundingBox getExtent() { return extent; }
+    }
+
+    public static Result validate(Path shp) throws IOException {
+        return validate(shp, (i, minx, miny, maxx, maxy) -> { });
+    }
+
+    /**
+     * @param shp     .shp 路径；.shx / .dbf 按同名查找（扩展名大小写不限）
+     * @param visitor 在扫描过程中收到每条非空记录的外包框；抛出异常时已收到的内容应丢弃
+     */
+    public static Result validate(Path shp, RecordVisitor visitor) throws IOException {
+        Path shx = ShapefileReader.sibling(shp, ".shx");
+        Path dbf = ShapefileReader.sibling(shp, ".dbf");
+        if (shx == null) throw new IllegalArgumentException("Missing .shx for " + shp.getFileName());
+        if (dbf == null) throw new IllegalArgumentException("Missing .dbf for " + shp.getFileName());
+
+        try (FileChannel shpCh = FileChannel.open(shp, StandardOpenOption.READ);
+             FileChannel shxCh = FileChannel.open(shx, StandardOpenOption.READ);
+             FileChannel dbfCh = FileChannel.open(dbf, StandardOpenOption.READ)) {
+            MappedByteBuffer shpBuf = mapAll(shpCh, shp);
+            MappedByteBuffer shxBuf = mapAll(shxCh, shx);
+            int shapeType = checkHeader(shpBuf, shp);
+            int shxType = checkHeader(shxBuf, shx);
+            if (shxType != shapeType) {
+                throw new IllegalArgumentException(shx.getFileName() + ": shape type " + shxType + " differs from .shp (" + shapeType + ")");
+            }
+            long indexBytes = shxBuf.capacity() - ShapefileReader.HEADER_LENGTH;
+            if (indexBytes % 8 != 0) {
+                throw new IllegalArgumentException(shx.getFileName() + ": size " + shxBuf.capacity() + " is not 100 + 8 x records");
+            }
+            int records = (int) (indexBytes / 8);
+            // .dbf 只看头部，先查，记录数不符时不必扫描 .shp
+            checkDbf(dbfCh, dbf, records);
+            BoundingBox extent = scanRecords(shpBuf, shxBuf, records, shapeType, shp, visitor);
+            return new Result(shapeType, records, extent);
+        }
+    }
+
+    // 只读映射整个文件；规范限制单个文件不超过 2 GB
+    private static MappedByteBuffer mapAll(FileChannel ch, Path file) throws IOException {
+        long size = ch.size();
+        if (size < ShapefileReader.HEADER_LENGTH) throw new IllegalArgumentException(file.getFileName() + ": too short (" + size + " bytes)");
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException(file.getFileName() + ": larger than 2 GB");
+        return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    // 100 字节主文件头（.shp / .shx 相同格式），返回 shape type
+    private static int checkHeader(MappedByteBuffer buf, Path file) {
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.getInt(0) != FILE_CODE) throw new IllegalArgumentException(file.getFileName() + ": bad file code " + buf.getInt(0));
+        long declared = (buf.getInt(24) & 0xFFFFFFFFL) * 2;
+        if (declared > buf.capacity()) {
+            throw new IllegalArgumentException(file.getFileName() + ": truncated, header says " + declared + " bytes but file has " + buf.capacity());
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(28) != VERSION) throw new IllegalArgumentException(file.getFileName() + ": bad version " + buf.getInt(28));
+        return buf.getInt(32);
+    }
+
+    private static BoundingBox scanRecords(MappedByteBuffer shp, MappedByteBuffer shx, int records, int shapeType, Path file,
+                                           RecordVisitor visitor) {
+        long shpSize = shp.capacity();
+        double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+        double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+        shx.order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < records; i++) {
+            long offset = (shx.getInt(ShapefileReader.HEADER_LENGTH + i * 8) & 0xFFFFFFFFL) * 2;
+            long length = (shx.getInt(ShapefileReader.HEADER_LENGTH + i * 8 + 4) & 0xFFFFFFFFL) * 2;
+            if (offset < ShapefileReader.HEADER_LENGTH || offset + 8 + length > shpSize || length < 4) {
+                throw new IllegalArgumentException(file.getFileName() + ": record " + (i + 1) + " has offset " + offset
+                        + " / length " + length + " outside the .shp (" + shpSize + " bytes)");
+            }
+            int at = (int) offset;
+            shp.order(ByteOrder.BIG_ENDIAN);
+            // 记录号不少写出工具并不遵守，只核对长度
+            long contentLength = (shp.getInt(at + 4) & 0xFFFFFFFFL) * 2;
+            if (contentLength != length) {
+                throw new IllegalArgumentException(file.getFileName() + ": .shx entry " + (i + 1) + " has length " + length
+                        + " but the .shp record at offset " + offset + " has " + contentLength);
+            }
+            shp.order(ByteOrder.LITTLE_ENDIAN);
+            int type = shp.getInt(at + 8);
+            if (type == 0) continue;
+            if (type != shapeType) {
+                throw new IllegalArgumentException(file.getFileName() + ": record " + (i + 1) + " has shape type " + type
+                        + ", file type is " + shapeType);
+            }
+            double x0, y0, x1, y1;
+            if (isPoint(type)) {
+                if (length < 20) throw new IllegalArgumentException(file.getFileName() + ": point record " + (i + 1) + " too short");
+                x0 = x1 = shp.getDouble(at + 12);
+                y0 = y1 = shp.getDouble(at + 20);
+            } else {
+                if (length < 36) throw new IllegalArgumentException(file.getFileName() + ": record " + (i + 1) + " too short for a bbox");
+                x0 = shp.getDouble(at + 12);
+                y0 = shp.getDouble(at + 20);
+                x1 = shp.getDouble(at + 28);
+                y1 = shp.getDouble(at + 36);
+            }
+            // 空的多部件几何常见 NaN / 颠倒的 bbox：与空记录一样不进索引
+            if (!(x0 <= x1 && y0 <= y1) || Double.isInfinite(x1 - x0) || Double.isInfinite(y1 - y0)) continue;
+            visitor.record(i, x0, y0, x1, y1);
+            minx = Math.min(minx, x0);
+            miny = Math.min(miny, y0);
+            maxx = Math.max(maxx, x1);
+            maxy = Math.max(maxy, y1);
+        }
+        return minx > maxx ? null : new BoundingBox(minx, miny, maxx, maxy);
+    }
+
+    // .dbf 头：记录数（LE uint32 @4）、头长度（LE uint16 @8）、记录长度（LE uint16 @10）；只映射头部
+    private static void checkDbf(FileChannel ch, Path dbf, int expectedRecords) throws IOException {
+        long size = ch.size();
+        if (size < DBF_HEADER_MIN) throw new IllegalArgumentException(dbf.getFileName() + ": too short (" + size + " bytes)");
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, DBF_HEADER_MIN);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        long records = buf.getInt(4) & 0xFFFFFFFFL;
+        int headerLength = buf.getShort(8) & 0xFFFF;
+        int recordLength = buf.getShort(10) & 0xFFFF;
+        if (records != expectedRecords) {
+            throw new IllegalArgumentException(dbf.getFileName() + ": " + records + " record(s) but .shx has " + expectedRecords);
+        }
+        if (headerLength < DBF_HEADER_MIN + 1 || recordLength < 1) {
+            throw new IllegalArgumentException(dbf.getFileName() + ": bad header (header " + headerLength + ", record " + recordLength + " bytes)");
+        }
+        long needed = headerLength + records * recordLength;
+        if (needed > size) {
+            throw new IllegalArgumentException(dbf.getFileName() + ": truncated, " + records + " x " + recordLength
+                    + " byte record(s) need " + needed + " bytes but file has " + size);
+        }
+    }
+
+    private static boolean isPoint(int type) {
+        return type == 1 || type == 11 || type == 21;
+    }
+}
@@ -0,0 +1,111 @@
+//workspace 样式目录：一次列出已有样式，缺少的生成 SLD 上传一次，结果缓存
+package com.example.geoserver;
+
+import com.example.geoserver.model.ShapefileInfo.GeometryKind;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * 某个 workspace 的样式缓存，由 {@link GeoServerClient#resolveStyleAsync} 使用。
+ * <p>
+ * 第一次解析时用一次 GET styles.json 列出该 workspace 的全部样式；几何类型 K（point / line / polygon）
+ * 优先使用 workspace 中已有的同名样式，否则使用生成的 {@code auto_K}，不存在时上传一次。
+ * 同一样式的并发请求共享同一个 future，之后每个图层的样式解析都是一次内存查找。
+ * 上传失败不缓存，下次调用会重新列出并重试。
+ */
+public class StyleCatalog {
+    /** 生成样式的名称前缀，例如 auto_polygon。 */
+    public static final String GENERATED_PREFIX = "auto_";
+
+    private final String workspace;
+    private CompletableFuture<Set<String>> listing;
+    private final Map<GeometryKind, CompletableFuture<String>> resolved = new ConcurrentHashMap<>();
+
+    public StyleCatalog(String workspace) {
+        this.workspace = workspace;
+    }
+
+    public String getWorkspace() { return workspace; }
+
+    /**
+     * @param lister  列出 workspace 样式名（只在第一次或上次失败后调用）
+     * @param creator 上传 (样式名, SLD)，成功返回 true
+     * @return 应作为默认样式的 workspace 样式名
+     */
+    CompletableFuture<String> resolve(GeometryKind kind, Supplier<CompletableFuture<List<String>>> lister,
+                                      BiFunction<String, String, CompletableFuture<Boolean>> creator) {
+        if (kind == null || kind == GeometryKind.UNKNOWN) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No style for geometry kind " + kind));
+        }
+        CompletableFuture<String> f = resolved.computeIfAbsent(kind, k -> names(lister).thenCompose(names -> {
+            String plain = k.defaultStyle();
+            if (names.contains(plain)) return CompletableFuture.completedFuture(plain);
+            String generated = GENERATED_PREFIX + plain;
+            if (names.contains(generated)) return CompletableFuture.completedFuture(generated);
+            return creator.apply(generated, sld(k, generated)).thenApply(ok -> {
+                if (!ok) throw new IllegalStateException("Failed to upload style '" + generated + "' to workspace " + workspace);
+                System.out.printf("Style '%s' uploaded to workspace '%s'.%n", generated, workspace);
+                names.add(generated);
+                return generated;
+            });
+        }));
+        f.whenComplete((name, e) -> {
+            if (e != null) {
+                resolved.remove(kind, f);
+                invalidateListing();
+            }
+        });
+        return f;
+    }
+
+    private synchronized CompletableFuture<Set<String>> names(Supplier<CompletableFuture<List<String>>> lister) {
+        if (listing == null || listing.isCompletedExceptionally()) {
+            listing = lister.get().thenApply(list -> {
+                Set<String> names = ConcurrentHashMap.newKeySet();
+                names.addAll(list);
+                return names;
+            });
+        }
+        return listing;
+    }
+
+    private synchronized void invalidateListing() {
+        listing = null;
+    }
+
+    /** 各几何类型的简单 SLD 1.0：点为圆形标记，线为细实线，面为半透明填充加描边。 */
+    static String sld(GeometryKind kind, String name) {
+        String symbolizer;
+        switch (kind) {
+            case POINT:
+                symbolizer = "<PointSymbolizer><Graphic><Mark><WellKnownName>circle</WellKnownName>"
+                        + "<Fill><CssParameter name=\"fill\">#E8590C</CssParameter></Fill>"
+                        + "<Stroke><CssParameter name=\"stroke\">#FFFFFF</CssParameter><CssParameter name=\"stroke-width\">1</CssParameter></Stroke>"
+                        + "</Mark><Size>7</Size></Graphic></PointSymbolizer>";
+                break;
+            case LINE:
+                symbolizer = "<LineSymbolizer><Stroke><CssParameter name=\"stroke\">#1C7ED6</CssParameter>"
+                        + "<CssParameter name=\"stroke-width\">1.5</CssParameter></Stroke></LineSymbolizer>";
+                break;
+            default:
+                symbolizer = "<PolygonSymbolizer><Fill><CssParameter name=\"fill\">#74C0FC</CssParameter>"
+                        + "<CssParameter name=\"fill-opacity\">0.5</CssParameter></Fill>"
+                        + "<Stroke><CssParameter name=\"stroke\">#1864AB</CssParameter><CssParameter name=\"stroke-width\">0.8</CssParameter></Stroke>"
+                        + "</PolygonSymbolizer>";
+        }
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<StyledLayerDescriptor version=\"1.0.0\" xmlns=\"http://www.opengis.net/sld\" xmlns:ogc=\"http://www.opengis.net/ogc\""
+                + " xmlns:xlink=\"http://www.w3.org/1999/xlink\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://www.opengis.net/sld http://schemas.opengis.net/sld/1.0.0/StyledLayerDescriptor.xsd\">"
+                + "<NamedLayer><Name>" + name + "</Name><UserStyle><Title>" + kind.name().toLowerCase(Locale.ROOT)
+                + " (generated)</Title><FeatureTypeStyle><Rule>" + symbolizer + "</Rule></FeatureTypeStyle></UserStyle></NamedLayer>"
+                + "</StyledLayerDescriptor>";
+    }
+}
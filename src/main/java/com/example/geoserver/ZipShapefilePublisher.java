@@ -3,10 +3,16 @@ package com.example.geoserver;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipFile;
 
 /**
  * 只负责把传入的 zip 解到 GeoServer data 下 workspace/datastore/{zipBaseName}
  * 并返回解压后的目录 Path。
+ * 数据目录不在本机时不经过本类：JobPlanner 通过 {@link GeoServerCluster#uploadShapefileZip} 把 zip 直接上传到各节点，
+ * 只用 {@link #listShapefileLayers} 从中央目录取图层名。
  */
 public class ZipShapefilePublisher {
 
@@ -16,8 +22,34 @@ public class ZipShapefilePublisher {
      * zipBaseName: 不带扩展名的 zip 名，例如 "156-3857"
      */
     public Path extractZipToDataDir(Path zipFilePath, String workspace, String datastore, String zipBaseName) throws Exception {
-        Path targetRoot = AppConfig.GEOSERVER_DATA_DIR.resolve(Paths.get(workspace, datastore));    // 解压目标根目录
-        // 使用通用工具解压
-        return (FileUtils.extractZipTo(zipFilePath, targetRoot)).resolve(zipBaseName);  // 解压后的目录
+        Path targetRoot = AppConfig.geoserverDataDir().resolve(Paths.get(workspace, datastore));    // 解压目标根目录
+        // 使用通用工具解压（多核并行）
+        return (FileUtils.extractZipToParallel(zipFilePath, targetRoot)).resolve(zipBaseName);  // 解压后的目录
     }
-}
\ No newline at end of file
+
+    /**
+     * 增量解压到同一目录：只重写与上次清单相比发生变化的条目。
+     * 返回结果中的 targetDir 为 {GEOSERVER_DATA_DIR}/{workspace}/{datastore}，
+     * 图层目录仍是 targetDir.resolve(zipBaseName)。
+     */
+    public FileUtils.ExtractResult extractChangedToDataDir(Path zipFilePath, String workspace, String datastore) throws Exception {
+        Path targetRoot = AppConfig.geoserverDataDir().resolve(Paths.get(workspace, datastore));
+        return FileUtils.extractZipIncremental(zipFilePath, targetRoot);
+    }
+
+    /**
+     * 从 zip 的中央目录列出 .shp 条目对应的图层名（不解压）。
+     */
+    public List<String> listShapefileLayers(Path zipFilePath) throws Exception {
+        List<String> layers = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(zipFilePath.toFile())) {
+            zip.stream()
+                    .filter(e -> !e.isDirectory() && e.getName().toLowerCase(Locale.ROOT).endsWith(".shp"))
+                    .forEach(e -> {
+                        String file = e.getName().substring(e.getName().lastIndexOf('/') + 1);
+                        layers.add(file.substring(0, file.length() - 4));
+                    });
+        }
+        return layers;
+    }
+}
@@ -1,11 +1,15 @@
 // filepath: d:\PythonAutoPublish\GeoServerPublisherJava\src\main\java\com\example\geoserver\model\BoundingBox.java
 package com.example.geoserver.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class BoundingBox {
     public double minx;
     public double miny;
     public double maxx;
     public double maxy;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String crs; // 可为 null；序列化进 REST 请求时省略
 
     public BoundingBox() {}
 
@@ -0,0 +1,136 @@
+//featureType 文档中发布流程关心的部分（bbox / srs / 属性列表）
+package com.example.geoserver.model;
+
+import com.example.geoserver.util.JsonBodyHandlers;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GET featuretypes/{layer}.json 的精简模型，由 {@link #collector()} 从响应流中直接填充，
+ * 其余字段（keywords、metadata、大段 WKT 以外的内容等）不会被保留。
+ */
+public class FeatureTypeInfo {
+    public String name;
+    public String srs;
+    public String nativeCrs;    // 字符串形式或 {"$": "..."} 中的文本，通常为 WKT
+    public BoundingBox nativeBoundingBox;
+    public BoundingBox latLonBoundingBox;
+    public List<Attribute> attributes = new ArrayList<>();
+
+    public static class Attribute {
+        public String name;
+        public String binding;  // 例如 java.lang.String、org.locationtech.jts.geom.MultiPolygon
+        public boolean nillable = true;
+
+        @Override
+        public String toString() {
+            return name + ":" + binding;
+        }
+    }
+
+    /** nativeBoundingBox 优先，否则 latLonBoundingBox；都没有时为 null。 */
+    public BoundingBox bbox() {
+        return nativeBoundingBox != null ? nativeBoundingBox : latLonBoundingBox;
+    }
+
+    /** 声明的 SRS（如 "EPSG:4326"），没有时退回 nativeCRS；都没有时为 null。 */
+    public String declaredSrs() {
+        return srs != null ? srs : nativeCrs;
+    }
+
+    /** 第一个几何属性对应的几何大类；没有可识别的几何属性时为 UNKNOWN。 */
+    public ShapefileInfo.GeometryKind geometryKind() {
+        for (Attribute a : attributes) {
+            ShapefileInfo.GeometryKind kind = ShapefileInfo.GeometryKind.fromBinding(a.binding);
+            if (kind != ShapefileInfo.GeometryKind.UNKNOWN) return kind;
+        }
+        return ShapefileInfo.GeometryKind.UNKNOWN;
+    }
+
+    public static JsonBodyHandlers.Collector<FeatureTypeInfo> collector() {
+        return new JsonBodyHandlers.Collector<>() {
+            private final FeatureTypeInfo info = new FeatureTypeInfo();
+            private BoundingBox nativeBox, latLonBox;
+            private Attribute attribute;
+
+            @Override
+            public void startObject(String path) {
+                switch (path) {
+                    case "featureType.nativeBoundingBox": nativeBox = new BoundingBox(Double.NaN, Double.NaN, Double.NaN, Double.NaN); break;
+                    case "featureType.latLonBoundingBox": latLonBox = new BoundingBox(Double.NaN, Double.NaN, Double.NaN, Double.NaN); break;
+                    case "featureType.attributes.attribute":
+                        attribute = new Attribute();
+                        info.attributes.add(attribute);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public void value(String parent, String field, JsonParser p) throws IOException {
+                if (p.currentToken() == JsonToken.VALUE_NULL) return;
+                switch (parent) {
+                    case "featureType":
+                        if ("name".equals(field)) info.name = p.getText();
+                        else if ("srs".equals(field)) info.srs = p.getText();
+                        else if ("nativeCRS".equals(field) || "nativeSRS".equals(field)) {
+                            if (info.nativeCrs == null) info.nativeCrs = p.getText();
+                        }
+                        break;
+                    case "featureType.nativeCRS":
+                        if ("$".equals(field) && info.nativeCrs == null) info.nativeCrs = p.getText();
+                        break;
+                    case "featureType.nativeBoundingBox":
+                        setCorner(nativeBox, field, p);
+                        break;
+                    case "featureType.latLonBoundingBox":
+                        setCorner(latLonBox, field, p);
+                        break;
+                    case "featureType.nativeBoundingBox.crs":   // {"@class": "projected", "$": "EPSG:3857"}
+                        if ("$".equals(field) && nativeBox != null) nativeBox.crs = p.getText();
+                        break;
+                    case "featureType.attributes.attribute":
+                        if ("name".equals(field)) attribute.name = p.getText();
+                        else if ("binding".equals(field)) attribute.binding = p.getText();
+                        else if ("nillable".equals(field)) attribute.nillable = p.getValueAsBoolean(true);
+                        break;
+                    default:
+                }
+            }
+
+            @Override
+            public FeatureTypeInfo result() {
+                info.nativeBoundingBox = complete(nativeBox);
+                info.latLonBoundingBox = complete(latLonBox);
+                return info;
+            }
+        };
+    }
+
+    private static void setCorner(BoundingBox b, String field, JsonParser p) throws IOException {
+        if (b == null || field == null) return;
+        switch (field) {
+            case "minx": b.minx = p.getValueAsDouble(); break;
+            case "miny": b.miny = p.getValueAsDouble(); break;
+            case "maxx": b.maxx = p.getValueAsDouble(); break;
+            case "maxy": b.maxy = p.getValueAsDouble(); break;
+            case "crs": b.crs = p.getText(); break;
+            default:
+        }
+    }
+
+    // 四个角都有值才算有效 bbox
+    private static BoundingBox complete(BoundingBox b) {
+        if (b == null || Double.isNaN(b.minx) || Double.isNaN(b.miny) || Double.isNaN(b.maxx) || Double.isNaN(b.maxy)) return null;
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        return name + " srs=" + srs + " bbox=" + bbox() + " attributes=" + attributes;
+    }
+}
@@ -0,0 +1,74 @@
+//批量任务清单（JSON / YAML），一次运行发布多个 workspace/datastore
+package com.example.geoserver.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 示例（YAML）：
+ * <pre>
+ * style: auto
+ * jobs:
+ *   - workspace: test
+ *     datastore: roads
+ *     path: F:/数据/roads.zip
+ *   - workspace: test
+ *     datastore: pois
+ *     path: F:/数据/pois
+ *     style: point
+ * </pre>
+ * 顶层 url/user/password/maxInFlight/style 为可选，缺省时使用 AppConfig 中的配置。
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PublishManifest {
+    public String url;
+    public String user;
+    public String password;
+    public Integer maxInFlight;
+    public String style;
+    public List<Job> jobs = new ArrayList<>();
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Job {
+        public String workspace;
+        public String datastore;
+        public String path;
+        public String style; // 为空时继承顶层 style
+
+        public Job() {}
+
+        public Job(String workspace, String datastore, String path, String style) {
+            this.workspace = workspace;
+            this.datastore = datastore;
+            this.path = path;
+            this.style = style;
+        }
+
+        @Override
+        public String toString() {
+            return workspace + "/" + datastore + " <- " + path;
+        }
+    }
+
+    /** 按扩展名选择解析器：.yml/.yaml 为 YAML，其余按 JSON。 */
+    public static PublishManifest read(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        ObjectMapper mapper = (name.endsWith(".yml") || name.endsWith(".yaml"))
+                ? new ObjectMapper(new YAMLFactory())
+                : new ObjectMapper();
+        PublishManifest m = mapper.readValue(file.toFile(), PublishManifest.class);
+        for (Job job : m.jobs) {
+            if (job.workspace == null || job.datastore == null || job.path == null) {
+                throw new IllegalArgumentException("Manifest job needs workspace, datastore and path: " + job);
+            }
+        }
+        return m;
+    }
+}
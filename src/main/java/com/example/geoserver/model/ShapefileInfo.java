@@ -0,0 +1,62 @@
+//本地读取的 shapefile 头信息（bbox / 几何类型 / 记录数 / srs）
+package com.example.geoserver.model;
+
+import java.util.Locale;
+
+public class ShapefileInfo {
+
+    /** 与 GeoServer 内置样式 point / line / polygon 对应的几何大类。 */
+    public enum GeometryKind {
+        POINT, LINE, POLYGON, UNKNOWN;
+
+        /** GeoServer 默认样式名，UNKNOWN 返回 null。 */
+        public String defaultStyle() {
+            return this == UNKNOWN ? null : name().toLowerCase(Locale.ROOT);
+        }
+
+        /** featureType 几何属性的 binding（JTS 类名，如 ...geom.MultiPolygon）-> 几何大类。 */
+        public static GeometryKind fromBinding(String binding) {
+            if (binding == null) return UNKNOWN;
+            String type = binding.substring(binding.lastIndexOf('.') + 1);
+            if (type.endsWith("Point")) return POINT;
+            if (type.endsWith("LineString") || type.endsWith("Curve")) return LINE;
+            if (type.endsWith("Polygon") || type.endsWith("Surface")) return POLYGON;
+            return UNKNOWN;
+        }
+
+        /** ESRI shape type 代码 -> 几何大类（含 Z / M 变体）。 */
+        public static GeometryKind fromShapeType(int shapeType) {
+            switch (shapeType) {
+                case 1: case 11: case 21:   // Point
+                case 8: case 18: case 28:   // MultiPoint
+                    return POINT;
+                case 3: case 13: case 23:   // PolyLine
+                    return LINE;
+                case 5: case 15: case 25:   // Polygon
+                case 31:                    // MultiPatch
+                    return POLYGON;
+                default:
+                    return UNKNOWN;
+            }
+        }
+    }
+
+    public int shapeType;
+    public GeometryKind geometryKind;
+    public BoundingBox bbox;
+    public int recordCount = -1; // 来自 .shx，缺失时为 -1
+    public String srs;           // 从 .prj 识别出的 "EPSG:xxxx"，识别不了为 null
+
+    public ShapefileInfo() {}
+
+    public ShapefileInfo(int shapeType, BoundingBox bbox) {
+        this.shapeType = shapeType;
+        this.geometryKind = GeometryKind.fromShapeType(shapeType);
+        this.bbox = bbox;
+    }
+
+    @Override
+    public String toString() {
+        return geometryKind + "(" + shapeType + ") records=" + recordCount + " srs=" + srs + " bbox=" + bbox;
+    }
+}
@@ -0,0 +1,374 @@
+//目录监听（hot folder）：新到达的 zip / shapefile 自动发布
+package com.example.geoserver.server;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+/**
+ * 常驻进程：用 {@link WatchService} 监听若干输入目录（含子目录），把新到达的数据送入发布流水线。
+ * <ul>
+ *   <li>zip：大小与修改时间在 settle 时间内不再变化、且中央目录可读后，交给 {@link JobPlanner#prepare}；</li>
+ *   <li>散装 shapefile：同名的 .shp 与 {@link ShapefileDiscovery#REQUIRED_SIDECARS} 全部到齐、已出现的
+ *       {@link ShapefileDiscovery#OPTIONAL_SIDECARS} 也稳定后，交给 {@link JobPlanner#prepareShapefiles}。
+ *       还没有 .prj 时再多等一个 settle 窗口：复制工具常常最后才写 .prj，提前发布会让 GeoServer 按错误的坐标系登记图层。</li>
+ * </ul>
+ * 每个 zip、每个含 shapefile 的子目录各对应一个 datastore（命名见 {@link #datastoreFor}），互不覆盖。
+ * 就绪的数据先攒成小批（第一个就绪后等待 batchWindow，或达到 maxBatch 个），再由同一个
+ * {@link PublishService} 并发发布；监听线程不等待发布，整个进程共用一个 GeoServerClient 与连接池。
+ * 已完成的图层由 {@link PublishJournal} 跳过，因此重启后重新扫描目录不会重复发布。
+ */
+public class HotFolderDaemon implements AutoCloseable {
+    private final JobPlanner planner;
+    private final PublishService service;
+    private final List<Path> roots;
+    private final String workspace;
+    private final String datastore;
+    private final String styleName;
+    private final long settleNanos;
+    private final long batchWindowNanos;
+    private final int maxBatch;
+
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    // 尚未稳定的文件：path -> 最近一次看到的大小 / 修改时间
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    // 已就绪、等待下一批发布的数据：zip 路径或 .shp 路径
+    private final List<Path> batch = new ArrayList<>();
+    private long batchStartNanos;
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "hot-folder-publisher");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean running = true;
+    private PostPublishStage postPublish;
+
+    private static final class Pending {
+        long size = -1;
+        long modified = -1;
+        long changedNanos = System.nanoTime();
+        boolean warned;
+    }
+
+    public HotFolderDaemon(JobPlanner planner, PublishService service, List<Path> roots,
+                           String workspace, String datastore, String styleName,
+                           Duration settle, Duration batchWindow, int maxBatch) throws IOException {
+        if (roots.isEmpty()) throw new IllegalArgumentException("No directories to watch");
+        this.planner = planner;
+        this.service = service;
+        this.roots = roots;
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.styleName = styleName;
+        this.settleNanos = settle.toNanos();
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.maxBatch = Math.max(1, maxBatch);
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /** 每批发布后执行的图层组 / 预切阶段（可选，需在 {@link #run()} 之前设置）。 */
+    public void setPostPublish(PostPublishStage postPublish) {
+        this.postPublish = postPublish;
+    }
+
+    /**
+     * 注册监听并扫描已有文件，然后一直运行到 {@link #close()} 或线程被中断。
+     */
+    public void run() throws IOException, InterruptedException {
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) throw new IOException("Not a directory: " + root);
+            registerTree(root);
+        }
+        System.out.printf("Watching %s -> %s/%s[_subpath] (settle %d ms, batch window %d ms, max %d).%n", roots, workspace, datastore,
+                TimeUnit.NANOSECONDS.toMillis(settleNanos), TimeUnit.NANOSECONDS.toMillis(batchWindowNanos), maxBatch);
+        long tickMillis = Math.max(50, Math.min(TimeUnit.NANOSECONDS.toMillis(settleNanos), 500) / 2);
+        try {
+            while (running) {
+                WatchKey key;
+                try {
+                    key = watcher.poll(tickMillis, TimeUnit.MILLISECONDS);
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                // 一次取完已排队的事件，再统一检查稳定性
+                while (key != null) {
+                    handle(key);
+                    key = watcher.poll();
+                }
+                checkPending();
+                flushBatchIfDue(false);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // close() 从其它线程调用
+        } finally {
+            // 已就绪的数据照常发布，等待进行中的批次结束
+            flushBatchIfDue(true);
+            publisher.shutdown();
+            if (!publisher.awaitTermination(10, TimeUnit.MINUTES)) publisher.shutdownNow();
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失：重新扫描整个目录
+                System.out.println("Watch events overflowed, rescanning " + dir);
+                try {
+                    registerTree(dir);
+                } catch (IOException e) {
+                    System.err.println("Failed to rescan " + dir + ": " + e.getMessage());
+                }
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (Files.isDirectory(child)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    try {
+                        registerTree(child);
+                    } catch (IOException e) {
+                        System.err.println("Failed to watch " + child + ": " + e.getMessage());
+                    }
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(child);
+            } else {
+                track(child);
+            }
+        }
+        if (!key.reset()) keys.remove(key);
+    }
+
+    // 注册目录及其子目录，并把已有文件加入待检查列表
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!keys.containsValue(dir)) {
+                    keys.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                track(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    void track(Path file) {
+        String ext = extension(file);
+        if (ext.equals("zip") || ext.equals("shp") || ShapefileDiscovery.REQUIRED_SIDECARS.contains(ext)
+                || ShapefileDiscovery.OPTIONAL_SIDECARS.contains(ext)) {
+            pending.computeIfAbsent(file, f -> new Pending());
+        }
+    }
+
+    // 大小或修改时间变化则重新计时；zip 单独就绪，shapefile 按同名文件组整体就绪
+    void checkPending() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Pending> e = it.next();
+            Pending p = e.getValue();
+            try {
+                BasicFileAttributes a = Files.readAttributes(e.getKey(), BasicFileAttributes.class);
+                if (a.size() != p.size || a.lastModifiedTime().toMillis() != p.modified) {
+                    p.size = a.size();
+                    p.modified = a.lastModifiedTime().toMillis();
+                    p.changedNanos = now;
+                }
+            } catch (IOException ex) {
+                it.remove(); // 已被删除或移走
+            }
+        }
+
+        List<Path> ready = new ArrayList<>();
+        List<Path> untracked = new ArrayList<>();
+        for (Map.Entry<Path, Pending> e : pending.entrySet()) {
+            Path file = e.getKey();
+            String ext = extension(file);
+            if (!ext.equals("zip") && !ext.equals("shp")) continue;
+            if (!isStable(file, now)) continue;
+            if (ext.equals("zip")) {
+                if (zipReadable(file)) ready.add(file);
+                continue;
+            }
+            List<Path> missing = new ArrayList<>();
+            // 没有 .prj 时整组要多静止一个 settle 窗口，给迟到的 .prj 留出时间
+            long quiet = sibling(file, "prj") == null ? 2 * settleNanos : settleNanos;
+            boolean stable = isStable(file, now, quiet);
+            for (String sidecar : ShapefileDiscovery.REQUIRED_SIDECARS) {
+                Path s = sibling(file, sidecar);
+                if (s == null) missing.add(file.resolveSibling(baseName(file) + "." + sidecar));
+                else if (!pending.containsKey(s)) {
+                    // .shp 被替换而 sidecar 早已发布过：重新开始计时
+                    untracked.add(s);
+                    stable = false;
+                } else if (!isStable(s, now, quiet)) stable = false;
+            }
+            // 可选文件不等待，但已经出现的要写完
+            for (String sidecar : ShapefileDiscovery.OPTIONAL_SIDECARS) {
+                Path s = sibling(file, sidecar);
+                if (s != null && pending.containsKey(s) && !isStable(s, now)) stable = false;
+            }
+            if (missing.isEmpty()) {
+                if (stable) ready.add(file);
+            } else if (!e.getValue().warned && now - e.getValue().changedNanos > 10 * settleNanos) {
+                e.getValue().warned = true;
+                System.out.println("Waiting for " + missing + " before publishing " + file.getFileName());
+            }
+        }
+        untracked.forEach(this::track);
+        for (Path file : ready) {
+            pending.remove(file);
+            if (extension(file).equals("shp")) {
+                for (String sidecar : ShapefileDiscovery.REQUIRED_SIDECARS) pending.remove(sibling(file, sidecar));
+                for (String sidecar : ShapefileDiscovery.OPTIONAL_SIDECARS) pending.remove(sibling(file, sidecar));
+            }
+            if (extension(file).equals("shp") && sibling(file, "prj") == null) {
+                System.out.println("Publishing " + file.getFileName() + " without a .prj; GeoServer decides its CRS.");
+            }
+            if (batch.isEmpty()) batchStartNanos = now;
+            batch.add(file);
+        }
+    }
+
+    private boolean isStable(Path file, long now) {
+        return isStable(file, now, settleNanos);
+    }
+
+    private boolean isStable(Path file, long now, long quietNanos) {
+        Pending p = pending.get(file);
+        return p != null && p.size >= 0 && now - p.changedNanos >= quietNanos;
+    }
+
+    /** 已就绪、尚未交给发布线程的数据。 */
+    List<Path> readyBatch() {
+        return new ArrayList<>(batch);
+    }
+
+    // 复制到一半的 zip 没有完整的中央目录，打不开
+    private static boolean zipReadable(Path zip) {
+        try (ZipFile z = new ZipFile(zip.toFile())) {
+            return z.size() >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void flushBatchIfDue(boolean force) {
+        if (batch.isEmpty()) return;
+        if (!force && batch.size() < maxBatch && System.nanoTime() - batchStartNanos < batchWindowNanos) return;
+        List<Path> files = new ArrayList<>(batch);
+        batch.clear();
+        try {
+            publisher.execute(() -> publishBatch(files));
+        } catch (RuntimeException e) {
+            System.err.println("Publisher stopped, dropping batch " + files + ": " + e);
+        }
+    }
+
+    private void publishBatch(List<Path> files) {
+        long start = System.currentTimeMillis();
+        List<LayerJob> jobs = new ArrayList<>();
+        // 散装 shapefile 按所在目录分组（一个目录对应一个 datastore）
+        Map<Path, List<Path>> shapefilesByDir = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                if (extension(file).equals("zip")) {
+                    String store = datastoreFor(file.resolveSibling(baseName(file)));
+                    System.out.println("Preparing " + file + " -> " + workspace + "/" + store);
+                    jobs.addAll(planner.prepare(workspace, store, file.toString(), styleName));
+                } else {
+                    shapefilesByDir.computeIfAbsent(file.getParent(), d -> new ArrayList<>()).add(file);
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to prepare " + file + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<Path, List<Path>> e : shapefilesByDir.entrySet()) {
+            try {
+                jobs.addAll(planner.prepareShapefiles(workspace, datastoreFor(e.getKey()), e.getValue(), styleName));
+            } catch (Exception ex) {
+                System.err.println("Failed to prepare " + e.getValue() + ": " + ex.getMessage());
+            }
+        }
+        if (jobs.isEmpty()) return;
+        List<PublishResult> results = service.publishAll(jobs);
+        service.endRun(results);
+        PublishService.printReport(results, System.currentTimeMillis() - start);
+        if (postPublish != null) postPublish.run(results);
+    }
+
+    /** 停止监听；{@link #run()} 发布完已就绪的批次后返回。可从其它线程（如 shutdown hook）调用。 */
+    public void stop() throws IOException {
+        running = false;
+        watcher.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+    }
+
+    /**
+     * 与 {@link ShapefileDiscovery} 的命名一致：监听根目录本身对应配置的 datastore，
+     * 子目录与 zip（去掉扩展名）按相对根目录的路径各自一个 datastore，日志中的图层键也随之区分。
+     */
+    String datastoreFor(Path path) {
+        Path root = null;
+        for (Path r : roots) {
+            if (path.startsWith(r) && (root == null || r.getNameCount() > root.getNameCount())) root = r;
+        }
+        return ShapefileDiscovery.datastoreName(datastore, root == null ? "" : root.relativize(path).toString());
+    }
+
+    // 同名、扩展名大小写不限的兄弟文件
+    private Path sibling(Path shp, String ext) {
+        String base = baseName(shp);
+        for (String candidate : new String[] {ext, ext.toUpperCase(Locale.ROOT)}) {
+            Path p = shp.resolveSibling(base + "." + candidate);
+            if (pending.containsKey(p) || Files.isRegularFile(p)) return p;
+        }
+        return null;
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
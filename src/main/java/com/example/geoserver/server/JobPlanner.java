@@ -0,0 +1,270 @@
+//把一个 (workspace, datastore, path, style) 任务准备成一组 LayerJob
+package com.example.geoserver.server;
+
+import com.example.geoserver.AppConfig;
+import com.example.geoserver.FileUtils;
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.GeoServerCluster;
+import com.example.geoserver.ZipShapefilePublisher;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 发布前的准备阶段：确保 workspace、解压或上传 zip、列出 *.shp 并预检（{@link ShapefilePreflight}）、确保 datastore。
+ * 交互模式与批量模式共用，多个任务共享同一个 GeoServerClient。
+ * 目录输入在 publish.recursive 开启时改用 {@link #submitTree}，边遍历边发布。
+ * <p>
+ * 多节点时（{@link GeoServerCluster}）workspace / datastore / zip 上传并行发给每个节点，
+ * 解压与遍历只做一次，得到的 LayerJob 交给每个节点各自的 PublishService。
+ */
+public class JobPlanner {
+    private final GeoServerCluster cluster;
+    private final String charset;
+    private final List<PublishJournal> journals; // 每个节点一个；EXTRACTED 与节点无关，写入全部
+    private final ShapefilePreflight preflight;
+
+    public JobPlanner(GeoServerClient gs) {
+        this(gs, PublishJournal.disabled());
+    }
+
+    public JobPlanner(GeoServerClient gs, PublishJournal journal) {
+        this(gs, AppConfig.get(AppConfig.CHARSET, "GBK"), journal);
+    }
+
+    public JobPlanner(GeoServerClient gs, String charset, PublishJournal journal) {
+        this(new GeoServerCluster(List.of(gs)), charset, List.of(journal));
+    }
+
+    public JobPlanner(GeoServerCluster cluster, String charset, List<PublishJournal> journals) {
+        this.cluster = cluster;
+        this.charset = charset;
+        this.journals = journals;
+        this.preflight = new ShapefilePreflight(AppConfig.preflightSettings());
+    }
+
+    public List<LayerJob> prepare(String workspace, String datastore, String path, String styleName) throws Exception {
+        ensureWorkspace(workspace);
+
+        // Resolve folder for datastore
+        Path input = Paths.get(path);   //将字符串形式的路径（path参数）转换为Path对象（Java NIO 中的路径表示方式）
+        Set<String> changedLayers = null; // null 表示全部视为已变化（非 zip 输入）
+        List<LayerJob> jobs = new ArrayList<>();
+        boolean isZip = Files.isRegularFile(input) && input.toString().toLowerCase(Locale.ROOT).endsWith(".zip");
+
+        if (isZip && AppConfig.useRemoteUpload()) {
+            // 数据目录不在本机：把 zip 流式 PUT 给 GeoServer，由服务端解压并创建 datastore / featureType
+            System.out.println("GeoServer data dir is not local; uploading " + input.getFileName() + " via REST.");
+            // configure=all 时服务端已计算 bbox，无需再 recalc
+            for (String layer : upload(workspace, datastore, input)) {
+                jobs.add(new LayerJob(workspace, datastore, layer, styleName, false, null));
+            }
+            return jobs;
+        }
+
+        //isRegularFiles()是否是一个regular file(shp)
+        if (Files.isRegularFile(input) && input.toString().toLowerCase(Locale.ROOT).endsWith(".shp")) {
+            input = input.getParent();  //getParent() acquire parent directory
+        }
+        if (isZip) {
+            String zipFileName = input.getFileName().toString();
+            int dot = zipFileName.lastIndexOf('.');
+            if (dot > 0) zipFileName = zipFileName.substring(0, dot);
+
+            ZipShapefilePublisher zp = new ZipShapefilePublisher();
+            // 增量解压：只重写变化的条目，并记下受影响的图层
+            FileUtils.ExtractResult extracted = zp.extractChangedToDataDir(input, workspace, datastore);
+            changedLayers = extracted.getChangedLayers();
+            System.out.printf("Extracted %d entr(ies), %d unchanged, %.1f MB in %d ms (%.1f MB/s).%n",
+                    extracted.getWrittenEntries().size(), extracted.getSkippedEntries(),
+                    extracted.getBytesWritten() / 1e6, TimeUnit.NANOSECONDS.toMillis(extracted.getElapsedNanos()),
+                    extracted.getBytesPerSecond() / 1e6);
+            input = extracted.getTargetDir().resolve(zipFileName);
+        }
+        String folder = input.toAbsolutePath().toString();  //将路径转换为绝对路径,字符串形式的路径，无论输入是shapefile or folder
+
+        // Walk *.shp
+        //Files.newDirectoryStream() create a directorystream，traverse the directory specified by input path
+        List<Path> shapefiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input, "*.shp")) {
+            for (Path shp : stream) shapefiles.add(shp);
+        } catch (IOException e) {
+            System.err.println("Failed to list shapefiles: " + e.getMessage());
+        }
+        // 预检在创建 datastore 之前：坏图层不产生任何 REST 请求
+        List<Path> valid = preflight.check(shapefiles, completedBefore(workspace, datastore, changedLayers));
+        if (valid.isEmpty()) {
+            if (!shapefiles.isEmpty()) System.out.println("No valid shapefile in " + folder + "; datastore not created.");
+            return jobs;
+        }
+
+        ensureDatastore(workspace, datastore, folder);
+
+        for (Path shp : valid) {
+            String layer = stripExt(shp.getFileName().toString());  //stripExt():delete the extension name of file
+            boolean changed = changedLayers == null || changedLayers.contains(layer);
+            // 本次解压写出了新文件：记入日志，崩溃重启后仍按已变化处理
+            if (changedLayers != null && changed) {
+                recordExtracted(workspace, datastore, layer, shp);
+            }
+            jobs.add(new LayerJob(workspace, datastore, layer, styleName, changed, shp));
+        }
+        return jobs;
+    }
+
+    /**
+     * 递归发布整棵目录树：后台线程用 {@link ShapefileDiscovery} 并行遍历，本线程每收到一组就确保 datastore
+     * 并把其中的图层提交给 service，不等遍历结束。返回的 future 顺序即提交顺序。
+     */
+    public List<CompletableFuture<PublishResult>> submitTree(String workspace, String datastore, Path root, String styleName,
+                                                             PublishService service) throws Exception {
+        return submitTree(workspace, datastore, root, styleName, List.of(service)).get(0);
+    }
+
+    /**
+     * 多节点版本：每个图层提交给每个 service（与 cluster 节点一一对应），返回值按 service 下标分组。
+     */
+    public List<List<CompletableFuture<PublishResult>>> submitTree(String workspace, String datastore, Path root, String styleName,
+                                                                   List<PublishService> services) throws Exception {
+        ensureWorkspace(workspace);
+        BlockingQueue<ShapefileDiscovery.Group> groups = new LinkedBlockingQueue<>();
+        ShapefileDiscovery.Group end = new ShapefileDiscovery.Group(null, null, List.of(), null, null);
+        Thread walker = new Thread(() -> {
+            try {
+                new ShapefileDiscovery(workspace, datastore).discover(root, groups::add);
+            } catch (RuntimeException e) {
+                System.err.println("Discovery under " + root + " failed: " + e);
+            } finally {
+                groups.add(end);
+            }
+        }, "shapefile-discovery");
+        walker.setDaemon(true);
+        walker.start();
+
+        List<List<CompletableFuture<PublishResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < services.size(); i++) futures.add(new ArrayList<>());
+        int groupCount = 0, layerCount = 0;
+        for (ShapefileDiscovery.Group g = groups.take(); g != end; g = groups.take()) {
+            groupCount++;
+            System.out.println("Discovered " + g);
+            try {
+                List<LayerJob> jobs = prepareGroup(workspace, g, styleName);
+                // 一次目录快照代替每个图层两次 exists 请求
+                for (int i = 0; i < services.size(); i++) {
+                    PublishService service = services.get(i);
+                    if (jobs.size() > 1) service.prefetchCatalog(workspace, g.getDatastore());
+                    for (LayerJob job : jobs) futures.get(i).add(service.submit(job));
+                }
+                layerCount += jobs.size();
+            } catch (Exception e) {
+                System.err.println("Failed to prepare " + g + ": " + e.getMessage());
+            }
+        }
+        System.out.printf("Discovery of %s finished: %d datastore folder(s), %d layer(s) submitted.%n", root, groupCount, layerCount);
+        return futures;
+    }
+
+    private List<LayerJob> prepareGroup(String workspace, ShapefileDiscovery.Group g, String styleName) throws Exception {
+        List<LayerJob> jobs = new ArrayList<>();
+        if (g.getUploadZip() != null) {
+            for (String layer : upload(workspace, g.getDatastore(), g.getUploadZip())) {
+                jobs.add(new LayerJob(workspace, g.getDatastore(), layer, styleName, false, null));
+            }
+            return jobs;
+        }
+        List<Path> valid = preflight.check(g.getShapefiles(), completedBefore(workspace, g.getDatastore(), g.getChangedLayers()));
+        if (valid.isEmpty()) return jobs;
+        ensureDatastore(workspace, g.getDatastore(), g.getFolder().toAbsolutePath().toString());
+        Set<String> changedLayers = g.getChangedLayers();
+        for (Path shp : valid) {
+            String layer = stripExt(shp.getFileName().toString());
+            boolean changed = changedLayers == null || changedLayers.contains(layer);
+            if (changedLayers != null && changed) {
+                recordExtracted(workspace, g.getDatastore(), layer, shp);
+            }
+            jobs.add(new LayerJob(workspace, g.getDatastore(), layer, styleName, changed, shp));
+        }
+        return jobs;
+    }
+
+    /**
+     * 目录监听模式：只为已经完整到达的几个 .shp 生成任务（同一目录下其它尚未写完的文件不受影响）。
+     * datastore 指向这些文件所在的目录，因此该目录必须对 GeoServer 可见。
+     */
+    public List<LayerJob> prepareShapefiles(String workspace, String datastore, List<Path> shapefiles, String styleName) throws Exception {
+        List<LayerJob> jobs = new ArrayList<>();
+        List<Path> valid = preflight.check(shapefiles, completedBefore(workspace, datastore, null));
+        if (valid.isEmpty()) return jobs;
+        ensureWorkspace(workspace);
+        ensureDatastore(workspace, datastore, valid.get(0).toAbsolutePath().getParent().toString());
+        for (Path shp : valid) {
+            jobs.add(new LayerJob(workspace, datastore, stripExt(shp.getFileName().toString()), styleName, true, shp));
+        }
+        return jobs;
+    }
+
+    private void ensureWorkspace(String workspace) {
+        report("Workspace", cluster.ensureWorkspace(workspace), "Workspace created.", "Workspace exists. Skipping.",
+                "Failed to create workspace.");
+    }
+
+    private void ensureDatastore(String workspace, String datastore, String folder) {
+        report("Datastore", cluster.ensureDirectoryDatastore(workspace, datastore, folder, charset), "Datastore created.",
+                "Datastore exists. Skipping creation.", "Failed to create datastore.");
+    }
+
+    // 单节点时与原来的提示一致；多节点时按结果分别列出节点
+    private void report(String what, List<GeoServerCluster.NodeResult<Boolean>> results, String created, String exists, String failed) {
+        if (results.size() == 1) {
+            GeoServerCluster.NodeResult<Boolean> r = results.get(0);
+            System.out.println(!r.isOk() ? failed : r.getValue() ? created : exists);
+            return;
+        }
+        long createdCount = results.stream().filter(r -> r.isOk() && r.getValue()).count();
+        long failedCount = results.stream().filter(r -> !r.isOk()).count();
+        System.out.printf("%s: created on %d, existed on %d, failed on %d of %d node(s).%n",
+                what, createdCount, results.size() - createdCount - failedCount, failedCount, results.size());
+        results.stream().filter(r -> !r.isOk()).forEach(r -> System.out.println("  " + r));
+    }
+
+    // 远程模式：zip 并行上传给所有节点，任一节点失败即视为该 zip 失败；图层名取自 zip 中央目录
+    private List<String> upload(String workspace, String datastore, Path zip) throws Exception {
+        GeoServerCluster.requireAll("Upload of " + zip.getFileName(),
+                cluster.uploadShapefileZip(workspace, datastore, zip, AppConfig.get(AppConfig.CHARSET, "GBK")));
+        return new ZipShapefilePublisher().listShapefileLayers(zip);
+    }
+
+    // 本次解压没有重写、且日志中（任一节点）该代次已完成的图层：上次已通过预检，不必再扫描
+    private Predicate<Path> completedBefore(String workspace, String datastore, Set<String> changedLayers) {
+        return shp -> {
+            String layer = stripExt(shp.getFileName().toString());
+            if (changedLayers != null && changedLayers.contains(layer)) return false;
+            LayerJob job = new LayerJob(workspace, datastore, layer, null, false, shp);
+            for (PublishJournal journal : journals) {
+                if (journal.isDone(job)) return true;
+            }
+            return false;
+        };
+    }
+
+    private void recordExtracted(String workspace, String datastore, String layer, Path shp) {
+        for (PublishJournal journal : journals) journal.record(workspace, datastore, layer, shp, PublishJournal.Stage.EXTRACTED);
+    }
+
+    private static String stripExt(String name) {
+        int i = name.lastIndexOf('.');
+        return i > 0 ? name.substring(0, i) : name;
+    }
+}
@@ -0,0 +1,56 @@
+//一个待发布图层（PublishService 的输入单元）
+package com.example.geoserver.server;
+
+import java.nio.file.Path;
+
+/**
+ * 描述一个要发布的图层：目标 workspace/datastore、图层名、样式，
+ * 以及可选的本地 .shp 路径（存在时用于本地读取 bbox / 几何类型）。
+ */
+public class LayerJob {
+    private final String workspace;
+    private final String datastore;
+    private final String layer;
+    private final String styleName;
+    private final boolean changed;
+    private final Path shapefile;
+
+    public LayerJob(String workspace, String datastore, String layer, String styleName) {
+        this(workspace, datastore, layer, styleName, true, null);
+    }
+
+    /**
+     * @param changed   false 表示源文件自上次以来未变化，图层已存在时跳过 bbox 更新
+     * @param shapefile 本地 .shp 路径，可为 null（远程上传模式）
+     */
+    public LayerJob(String workspace, String datastore, String layer, String styleName, boolean changed, Path shapefile) {
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.layer = layer;
+        this.styleName = styleName;
+        this.changed = changed;
+        this.shapefile = shapefile;
+    }
+
+    public String getWorkspace() { return workspace; }
+
+    public String getDatastore() { return datastore; }
+
+    public String getLayer() { return layer; }
+
+    public String getStyleName() { return styleName; }
+
+    public boolean isChanged() { return changed; }
+
+    /** 可能为 null。 */
+    public Path getShapefile() { return shapefile; }
+
+    public LayerJob withChanged(boolean changed) {
+        return changed == this.changed ? this : new LayerJob(workspace, datastore, layer, styleName, changed, shapefile);
+    }
+
+    @Override
+    public String toString() {
+        return workspace + "/" + datastore + "/" + layer;
+    }
+}
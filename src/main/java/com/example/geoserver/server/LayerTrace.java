@@ -0,0 +1,82 @@
+//单个图层流水线的分段计时（exists / publish / bbox / preview / style ...）
+package com.example.geoserver.server;
+
+import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.util.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录一个图层在发布流水线中每一段的耗时：写入 geoserver_publish_stage_seconds{stage} 直方图，
+ * 汇总到 {@link PublishResult#getStageMillis()}，并在结束时输出一条结构化日志（logger: com.example.geoserver.trace）。
+ * 同一段执行多次时耗时累加。
+ */
+final class LayerTrace {
+    private static final Logger TRACE = LoggerFactory.getLogger("com.example.geoserver.trace");
+
+    private final String workspace;
+    private final String datastore;
+    private final String layer;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    LayerTrace(String workspace, String datastore, String layer) {
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.layer = layer;
+    }
+
+    <T> T stage(String name, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return body.call();
+        } finally {
+            record(name, start);
+        }
+    }
+
+    private void record(String name, long start) {
+        long elapsed = Metrics.global().timer("geoserver_publish_stage_seconds", "stage", name).recordSince(start);
+        stageNanos.merge(name, elapsed, Long::sum);
+    }
+
+    /** 结束计时并生成结果；同时记录整层耗时、状态计数与结构化日志。 */
+    PublishResult finish(PublishResult.Status status, String message, BoundingBox bbox) {
+        return finish(status, message, bbox, status != PublishResult.Status.FAILED);
+    }
+
+    /** @param changed 见 {@link PublishResult#isChanged()} */
+    PublishResult finish(PublishResult.Status status, String message, BoundingBox bbox, boolean changed) {
+        Metrics m = Metrics.global();
+        long elapsed = m.timer("geoserver_publish_layer_seconds", "status", status.name()).recordSince(startNanos);
+        m.counter("geoserver_publish_layers_total", "status", status.name()).inc();
+
+        Map<String, Long> stages = new LinkedHashMap<>();
+        synchronized (stageNanos) {
+            stageNanos.forEach((k, v) -> stages.put(k, TimeUnit.NANOSECONDS.toMillis(v)));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        if (TRACE.isInfoEnabled()) {
+            MDC.put("workspace", workspace);
+            MDC.put("datastore", datastore);
+            MDC.put("layer", layer);
+            MDC.put("status", status.name());
+            try {
+                TRACE.info("layer={} status={} elapsedMs={} stages={}", layer, status, elapsedMillis, stages);
+            } finally {
+                MDC.remove("workspace");
+                MDC.remove("datastore");
+                MDC.remove("layer");
+                MDC.remove("status");
+            }
+        }
+        return new PublishResult(workspace, datastore, layer, status, message, bbox, elapsedMillis, stages, changed);
+    }
+}
@@ -0,0 +1,256 @@
+//发布后的可选阶段：按 datastore 建立 / 更新图层组，并提交 GeoWebCache 预切任务
+package com.example.geoserver.server;
+
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.util.Metrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量发布结束后执行（两项都默认关闭）：
+ * <ul>
+ *   <li>图层组：每个 workspace/datastore 一个 {@code {datastore}{suffix}}，已存在时把本批图层并入；</li>
+ *   <li>预切：新发布的图层提交 seed 任务，已存在但数据有变化的图层提交 reseed（旧瓦片已过期），
+ *       未变化的已有图层（含日志中已完成的）跳过。层级为 zoomStart..zoomStop，范围裁剪到图层的经纬度 bbox，
+ *       瓦片估算超过 maxTilesPerLayer 时降低 zoomStop。同时运行的任务不超过 maxConcurrent，
+ *       每个任务轮询 /gwc/rest/seed 直到完成，进度与耗时记录在 geoserver_seed_* 指标中。</li>
+ * </ul>
+ */
+public class PostPublishStage {
+    // EPSG:900913 / 3857 的半周长（米）
+    private static final double MERCATOR_HALF = 20037508.342789244;
+
+    public static class Settings {
+        public boolean layerGroups = false;
+        public String layerGroupSuffix = "_group";
+        public boolean seed = false;
+        public int zoomStart = 0;
+        public int zoomStop = 10;
+        public String gridSet = "EPSG:900913";   // 仅支持 GWC 内置的 EPSG:900913 / EPSG:4326
+        public String format = "image/png";
+        public int threadCount = 2;              // 每个 seed 任务在 GeoServer 上的线程数
+        public int maxConcurrent = 2;            // 同时运行的 seed 任务数
+        public long maxTilesPerLayer = 200_000;
+        public Duration pollInterval = Duration.ofSeconds(2);
+
+        public static Settings defaults() {
+            return new Settings();
+        }
+
+        public boolean isEnabled() {
+            return layerGroups || seed;
+        }
+    }
+
+    private final GeoServerClient gs;
+    private final Settings settings;
+    private final Metrics metrics = Metrics.global();
+
+    public PostPublishStage(GeoServerClient gs, Settings settings) {
+        this.gs = gs;
+        this.settings = settings;
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /** 处理一批发布结果；失败的图层被忽略。seed 开启时等待全部任务结束才返回。 */
+    public void run(List<PublishResult> results) {
+        if (!settings.isEnabled()) return;
+        // ws/store -> 成功的图层
+        Map<String, List<PublishResult>> byStore = new LinkedHashMap<>();
+        for (PublishResult r : results) {
+            if (!r.isSuccess() || r.getWorkspace() == null || r.getDatastore() == null) continue;
+            byStore.computeIfAbsent(r.getWorkspace() + "\t" + r.getDatastore(), k -> new ArrayList<>()).add(r);
+        }
+        if (settings.layerGroups) {
+            byStore.forEach((key, layers) -> updateLayerGroup(layers.get(0).getWorkspace(), layers.get(0).getDatastore(), layers));
+        }
+        if (settings.seed) {
+            List<PublishResult> changed = new ArrayList<>();
+            for (List<PublishResult> layers : byStore.values()) {
+                for (PublishResult r : layers) if (r.isChanged()) changed.add(r);
+            }
+            seedAll(changed);
+        }
+    }
+
+    private void updateLayerGroup(String ws, String store, List<PublishResult> results) {
+        String group = store + settings.layerGroupSuffix;
+        try {
+            Optional<List<String>> existing = gs.getLayerGroupLayers(ws, group);
+            Set<String> layers = new LinkedHashSet<>(existing.orElse(List.of()));
+            int before = layers.size();
+            for (PublishResult r : results) layers.add(ws + ":" + r.getLayer());
+            if (existing.isPresent() && layers.size() == before) {
+                System.out.printf("Layer group '%s:%s' already contains all %d layer(s).%n", ws, group, results.size());
+                return;
+            }
+            boolean ok = gs.saveLayerGroup(ws, group, new ArrayList<>(layers), existing.isPresent());
+            System.out.printf(ok ? "Layer group '%s:%s' %s with %d layer(s).%n" : "Failed to save layer group '%s:%s' (%s, %d layer(s)).%n",
+                    ws, group, existing.isPresent() ? "updated" : "created", layers.size());
+        } catch (Exception e) {
+            System.out.printf("Layer group '%s:%s' failed: %s%n", ws, group, e);
+        }
+    }
+
+    private void seedAll(List<PublishResult> results) {
+        if (results.isEmpty()) return;
+        long start = System.nanoTime();
+        // 线程数即同时运行的 seed 任务上限
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, settings.maxConcurrent), r -> {
+            Thread t = new Thread(r, "gwc-seed");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (PublishResult r : results) futures.add(pool.submit(() -> seedOne(r)));
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.println("Seeding failed: " + e);
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.printf("Seeding of %d layer(s) finished in %d s.%n", results.size(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+    }
+
+    private void seedOne(PublishResult r) {
+        String ws = r.getWorkspace(), layer = r.getLayer();
+        Metrics.Gauge running = metrics.gauge("geoserver_seed_running");
+        long start = System.nanoTime();
+        running.inc();
+        try {
+            BoundingBox bounds = gridBounds(r);
+            int zoomStop = settings.zoomStop;
+            if (bounds != null) {
+                while (zoomStop > settings.zoomStart && estimateTiles(bounds, settings.zoomStart, zoomStop) > settings.maxTilesPerLayer) {
+                    zoomStop--;
+                }
+                if (zoomStop < settings.zoomStop) {
+                    System.out.printf("Seeding '%s' only to zoom %d (%d tiles estimated up to %d).%n",
+                            layer, zoomStop, estimateTiles(bounds, settings.zoomStart, settings.zoomStop), settings.zoomStop);
+                }
+            }
+            String type = seedType(r);
+            if (!gs.seed(ws, layer, type, gridSetId(), srsNumber(), bounds, settings.zoomStart, zoomStop,
+                    settings.format, settings.threadCount)) {
+                System.out.printf("Seed request for '%s' rejected.%n", layer);
+                metrics.counter("geoserver_seed_tasks_total", "result", "rejected").inc();
+                return;
+            }
+            System.out.printf("%s '%s:%s' zoom %d-%d%s.%n", type.equals("seed") ? "Seeding" : "Reseeding", ws, layer,
+                    settings.zoomStart, zoomStop,
+                    bounds == null ? "" : " within " + bounds);
+            String result = awaitSeed(ws, layer);
+            metrics.counter("geoserver_seed_tasks_total", "result", result).inc();
+            metrics.timer("geoserver_seed_seconds", "result", result).recordSince(start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.out.printf("Seeding '%s' failed: %s%n", layer, e);
+            metrics.counter("geoserver_seed_tasks_total", "result", "error").inc();
+        } finally {
+            running.dec();
+        }
+    }
+
+    // 新发布的图层没有旧瓦片，只补缺；已存在的图层数据变了，范围内的瓦片全部重切。
+    // 从日志续跑的图层也按上次是否新建（PublishJournal.Stage.CREATED）报告为 PUBLISHED / EXISTS
+    static String seedType(PublishResult r) {
+        return r.getStatus() == PublishResult.Status.PUBLISHED ? "seed" : "reseed";
+    }
+
+    // 轮询直到该图层没有等待 / 运行中的任务；任一任务被中止则返回 "aborted"
+    private String awaitSeed(String ws, String layer) throws Exception {
+        long lastReport = 0;
+        boolean aborted = false;
+        while (true) {
+            Thread.sleep(settings.pollInterval.toMillis());
+            List<long[]> tasks = gs.seedStatus(ws, layer);
+            long done = 0, total = 0;
+            boolean active = false;
+            for (long[] t : tasks) {
+                if (t[4] == -1) aborted = true;
+                if (t[4] == 0 || t[4] == 1) active = true;
+                done += t[0];
+                total += Math.max(t[1], 0);
+            }
+            if (!active) {
+                System.out.printf("Seeding '%s:%s' %s.%n", ws, layer, aborted ? "aborted" : "finished");
+                return aborted ? "aborted" : "done";
+            }
+            long now = System.nanoTime();
+            if (now - lastReport > TimeUnit.SECONDS.toNanos(30)) {
+                lastReport = now;
+                System.out.printf("Seeding '%s:%s': %d / %d tile(s).%n", ws, layer, done, total);
+            }
+        }
+    }
+
+    // 图层经纬度范围换算到 gridSet 坐标系；取不到时为 null（GWC 切整个图层范围）
+    private BoundingBox gridBounds(PublishResult r) throws Exception {
+        BoundingBox ll = gs.getFeatureTypeInfo(r.getWorkspace(), r.getDatastore(), r.getLayer())
+                .map(info -> info.latLonBoundingBox).orElse(null);
+        if (ll == null && r.getBbox() != null && "EPSG:4326".equalsIgnoreCase(r.getBbox().crs)) ll = r.getBbox();
+        if (ll == null) return null;
+        if (srsNumber() == 4326) return new BoundingBox(ll.minx, ll.miny, ll.maxx, ll.maxy);
+        return new BoundingBox(mercatorX(ll.minx), mercatorY(ll.miny), mercatorX(ll.maxx), mercatorY(ll.maxy));
+    }
+
+    /** zoomStart..zoomStop 之间与 bounds 相交的瓦片总数（256 像素瓦片，GWC 内置网格）。 */
+    long estimateTiles(BoundingBox b, int zoomStart, int zoomStop) {
+        long total = 0;
+        for (int z = zoomStart; z <= zoomStop; z++) {
+            double tileW, tileH, originX, originY;
+            if (srsNumber() == 4326) {
+                // EPSG:4326：第 0 级为 2x1 个瓦片
+                tileW = tileH = 180.0 / (1L << z);
+                originX = -180;
+                originY = -90;
+            } else {
+                tileW = tileH = 2 * MERCATOR_HALF / (1L << z);
+                originX = originY = -MERCATOR_HALF;
+            }
+            long cols = (long) Math.floor((b.maxx - originX) / tileW) - (long) Math.floor((b.minx - originX) / tileW) + 1;
+            long rows = (long) Math.floor((b.maxy - originY) / tileH) - (long) Math.floor((b.miny - originY) / tileH) + 1;
+            total += Math.max(cols, 1) * Math.max(rows, 1);
+            if (total < 0) return Long.MAX_VALUE;
+        }
+        return total;
+    }
+
+    private String gridSetId() {
+        return srsNumber() == 4326 ? "EPSG:4326" : "EPSG:900913";
+    }
+
+    private int srsNumber() {
+        return settings.gridSet.endsWith("4326") ? 4326 : 900913;
+    }
+
+    private static double mercatorX(double lon) {
+        return lon * MERCATOR_HALF / 180.0;
+    }
+
+    private static double mercatorY(double lat) {
+        // Web Mercator 在 ±85.0511° 处截断
+        double clipped = Math.max(-85.0511287798, Math.min(85.0511287798, lat));
+        return Math.log(Math.tan((90 + clipped) * Math.PI / 360.0)) / (Math.PI / 180.0) * MERCATOR_HALF / 180.0;
+    }
+}
@@ -0,0 +1,376 @@
+//发布日志（追加写、批量 fsync），进程崩溃后从断点继续
+package com.example.geoserver.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 每个图层在流水线中完成的阶段，按行追加到本地文件：
+ * <pre>
+ * crc32 \t stage \t workspace \t datastore \t layer \t fingerprint
+ * </pre>
+ * 写入先进入内存缓冲，由后台线程每 {@link #FLUSH_INTERVAL_MS} 毫秒（或缓冲超过 64 KB 时）
+ * 一次性写盘并 fsync，发布线程不等待磁盘。崩溃时最多丢失最后一批记录，对应的图层会被重做一次（操作幂等）。
+ * <p>
+ * 启动时重放整个文件：校验失败的行（崩溃时写了一半）被忽略；源文件指纹（.shp 及各附属文件的大小 + 修改时间）
+ * 与记录不一致的图层视为新任务。
+ * 已完成（{@link Stage#DONE}）的图层在下次运行时直接跳过，不再发任何 exists 探测；
+ * 一轮发布没有失败时调用 {@link #forgetCompleted()} 移除这些记录，所以 DONE 只在中断或失败之后的那次重跑中生效。
+ */
+public final class PublishJournal implements AutoCloseable {
+
+    public enum Stage {
+        EXTRACTED,  // 已从 zip 写出新内容，尚未发布
+        CREATED,    // featureType 由本次流水线新建（而不是早已存在），续跑时据此区分 seed / reseed
+        PUBLISHED,  // featureType / layer 已存在于 GeoServer
+        BBOX,       // bbox 已更新或重算
+        STYLED,     // 默认样式已设置
+        DONE        // 整个流水线成功结束
+    }
+
+    /** 单个图层的已完成阶段（按指纹区分代次）。 */
+    public static final class LayerState {
+        private final String fingerprint;
+        private final Set<Stage> stages = EnumSet.noneOf(Stage.class);
+
+        LayerState(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public synchronized boolean has(Stage stage) {
+            return stages.contains(stage);
+        }
+
+        synchronized void add(Stage stage) {
+            stages.add(stage);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return stages.toString();
+        }
+    }
+
+    static final long FLUSH_INTERVAL_MS = 200;
+    private static final int FLUSH_THRESHOLD_BYTES = 64 * 1024;
+    private static final String NO_FINGERPRINT = "-";
+    // 计入指纹的附属文件；缺少的记为 "-"
+    private static final List<String> FINGERPRINT_SIDECARS = List.of("shx", "dbf", "prj", "cpg");
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, LayerState> states = new ConcurrentHashMap<>();
+    private final StringBuilder pending = new StringBuilder();
+    private final ScheduledExecutorService flusher;
+    private int replayedLines;
+
+    private PublishJournal(Path file) throws IOException {
+        this.file = file;
+        if (file == null) {
+            this.channel = null;
+            this.flusher = null;
+            return;
+        }
+        if (file.toAbsolutePath().getParent() != null) Files.createDirectories(file.toAbsolutePath().getParent());
+        replay();
+        compactIfWorthwhile();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "publish-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** 打开（或创建）日志并重放已有记录。 */
+    public static PublishJournal open(Path file) throws IOException {
+        return new PublishJournal(file);
+    }
+
+    /** 不落盘的空日志：不记录、不跳过任何图层。 */
+    public static PublishJournal disabled() {
+        try {
+            return new PublishJournal(null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 不会发生
+        }
+    }
+
+    /** 丢弃已有记录（--journal-reset），之后所有图层重新走完整流程。 */
+    public static void reset(Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** 重放时读入的已完成图层数。 */
+    public int completedCount() {
+        int n = 0;
+        for (LayerState s : states.values()) if (s.has(Stage.DONE)) n++;
+        return n;
+    }
+
+    /**
+     * 当前代次的状态；没有记录、或源文件指纹已变化时返回 null。
+     */
+    public LayerState state(LayerJob job) {
+        LayerState s = states.get(key(job.getWorkspace(), job.getDatastore(), job.getLayer()));
+        return s != null && s.fingerprint.equals(fingerprint(job.getShapefile())) ? s : null;
+    }
+
+    public boolean isDone(LayerJob job) {
+        LayerState s = state(job);
+        return s != null && s.has(Stage.DONE);
+    }
+
+    public void record(LayerJob job, Stage stage) {
+        record(job.getWorkspace(), job.getDatastore(), job.getLayer(), fingerprint(job.getShapefile()), stage);
+    }
+
+    /** EXTRACTED 由 JobPlanner 在写出新文件后记录，开启该图层的新一代。 */
+    public void record(String ws, String store, String layer, Path shapefile, Stage stage) {
+        record(ws, store, layer, fingerprint(shapefile), stage);
+    }
+
+    private void record(String ws, String store, String layer, String fingerprint, Stage stage) {
+        if (!isEnabled()) return;
+        apply(stage, key(ws, store, layer), fingerprint);
+        String payload = stage + "\t" + esc(ws) + "\t" + esc(store) + "\t" + esc(layer) + "\t" + fingerprint;
+        boolean flushNow;
+        synchronized (pending) {
+            pending.append(crc(payload)).append('\t').append(payload).append('\n');
+            flushNow = pending.length() >= FLUSH_THRESHOLD_BYTES;
+        }
+        if (flushNow) flushQuietly();
+    }
+
+    private void apply(Stage stage, String key, String fingerprint) {
+        // 新一代（文件变化或重新解压）丢弃旧阶段
+        LayerState s = states.compute(key, (k, old) ->
+                old == null || !old.fingerprint.equals(fingerprint) || stage == Stage.EXTRACTED ? new LayerState(fingerprint) : old);
+        s.add(stage);
+    }
+
+    /**
+     * 把缓冲写盘并 fsync。写盘或 fsync 成功之后才从缓冲中移除这一批；
+     * 失败时截掉可能写了一半的尾部，记录留在缓冲中等下一次重试。
+     */
+    public void flush() throws IOException {
+        if (!isEnabled()) return;
+        // 整个取出 + 写盘过程持有 channel 锁，保证批次按顺序落盘；其间 record 只会在缓冲末尾追加
+        synchronized (channel) {
+            int taken;
+            byte[] bytes;
+            synchronized (pending) {
+                if (pending.length() == 0) return;
+                taken = pending.length();
+                bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            long start = channel.size();
+            try {
+                ByteBuffer bb = ByteBuffer.wrap(bytes);
+                while (bb.hasRemaining()) channel.write(bb);
+                channel.force(false);
+            } catch (IOException e) {
+                truncateQuietly(start);
+                throw e;
+            }
+            synchronized (pending) {
+                pending.delete(0, taken);
+            }
+        }
+    }
+
+    // 去掉失败批次写出的部分，避免重试时与半行拼在一起
+    private void truncateQuietly(long size) {
+        try {
+            if (channel.isOpen() && channel.size() > size) channel.truncate(size);
+        } catch (IOException e) {
+            // 半行在重放时按校验失败忽略
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Failed to write publish journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一轮发布没有失败后调用：移除已完成的图层，只保留未走完流程的（例如样式没设上），并改写文件。
+     * 已完成的图层下次运行重新检查 GeoServer，而不是永久跳过。返回移除的图层数。
+     */
+    public int forgetCompleted() throws IOException {
+        if (!isEnabled()) return 0;
+        synchronized (channel) {
+            flush();
+            int dropped = 0;
+            for (Iterator<LayerState> it = states.values().iterator(); it.hasNext(); ) {
+                if (it.next().has(Stage.DONE)) {
+                    it.remove();
+                    dropped++;
+                }
+            }
+            if (dropped == 0) return 0;
+            // 原地改写：中途崩溃最多丢掉未完成图层的进度，它们下次从头再走一遍（操作幂等）
+            channel.truncate(0);
+            ByteBuffer bb = ByteBuffer.wrap(liveLines().getBytes(StandardCharsets.UTF_8));
+            while (bb.hasRemaining()) channel.write(bb);
+            channel.force(false);
+            replayedLines = 0;
+            return dropped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isEnabled()) return;
+        // 不用 shutdownNow：被中断的线程写盘时 channel 会以 ClosedByInterruptException 关闭，缓冲中的记录随之丢失。
+        // 调用线程自身的中断标志也先清掉，写完再恢复
+        boolean interrupted = Thread.interrupted();
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Publish journal flusher did not stop in time.");
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        try {
+            flush();
+            channel.close();
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private void replay() throws IOException {
+        if (!Files.isRegularFile(file)) return;
+        // 非严格解码：崩溃时截断的多字节字符不会让整个重放失败
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) continue;
+                String payload = line.substring(tab + 1);
+                if (!line.substring(0, tab).equals(crc(payload))) continue; // 写了一半的行
+                String[] f = payload.split("\t", -1);
+                if (f.length != 5) continue;
+                Stage stage;
+                try {
+                    stage = Stage.valueOf(f[0]);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                apply(stage, f[1] + "\t" + f[2] + "\t" + f[3], f[4]);
+                replayedLines++;
+            }
+        }
+    }
+
+    // 记录行数远多于存活的阶段数时，改写为每个阶段一行（先写临时文件再原子替换）
+    private void compactIfWorthwhile() throws IOException {
+        int live = 0;
+        for (LayerState s : states.values()) live += s.stages.size();
+        if (replayedLines < 10_000 || replayedLines < live * 2) return;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bb = ByteBuffer.wrap(liveLines().getBytes(StandardCharsets.UTF_8));
+            while (bb.hasRemaining()) ch.write(bb);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 当前存活的阶段，每个阶段一行
+    private String liveLines() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LayerState> e : states.entrySet()) {
+            String[] k = e.getKey().split("\t", -1);
+            for (Stage stage : e.getValue().stages) {
+                String payload = stage + "\t" + k[0] + "\t" + k[1] + "\t" + k[2] + "\t" + e.getValue().fingerprint;
+                sb.append(crc(payload)).append('\t').append(payload).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 源文件指纹：.shp 与 .shx / .dbf / .prj / .cpg 各自的大小与修改时间，
+     * 只改了属性表或坐标系的图层也算新一代；没有本地文件时为 "-"。
+     */
+    static String fingerprint(Path shapefile) {
+        if (shapefile == null) return NO_FINGERPRINT;
+        StringBuilder sb = new StringBuilder();
+        try {
+            sb.append(stamp(shapefile));
+        } catch (IOException e) {
+            return NO_FINGERPRINT;
+        }
+        String name = shapefile.getFileName().toString();
+        String base = name.substring(0, name.lastIndexOf('.') > 0 ? name.lastIndexOf('.') : name.length());
+        for (String ext : FINGERPRINT_SIDECARS) {
+            String part = NO_FINGERPRINT;
+            for (String candidate : new String[] {ext, ext.toUpperCase(Locale.ROOT)}) {
+                try {
+                    part = stamp(shapefile.resolveSibling(base + "." + candidate));
+                    break;
+                } catch (IOException e) {
+                    // 换大写扩展名再试
+                }
+            }
+            sb.append(',').append(part);
+        }
+        return sb.toString();
+    }
+
+    private static String stamp(Path file) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+        return a.size() + ":" + a.lastModifiedTime().toMillis();
+    }
+
+    // key 内部使用已转义的字段，便于压缩时直接写回
+    private static String key(String ws, String store, String layer) {
+        return esc(ws) + "\t" + esc(store) + "\t" + esc(layer);
+    }
+
+    private static String crc(String payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static String esc(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+}
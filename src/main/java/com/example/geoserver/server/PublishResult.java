@@ -0,0 +1,93 @@
+//单个图层的发布结果（供 PublishService 汇总报告）
+package com.example.geoserver.server;
+
+import com.example.geoserver.model.BoundingBox;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 一个图层在批量发布中的最终结果。
+ */
+public class PublishResult {
+
+    public enum Status {
+        PUBLISHED,  // 新发布成功
+        EXISTS,     // 已存在，仅重算 bbox
+        FAILED      // 发布失败或出现异常
+    }
+
+    private final String workspace;
+    private final String datastore;
+    private final String layer;
+    private final Status status;
+    private final String message;
+    private final BoundingBox bbox;
+    private final long elapsedMillis;
+    private final Map<String, Long> stageMillis;
+    private final boolean changed;
+
+    public PublishResult(String layer, Status status, String message, BoundingBox bbox, long elapsedMillis) {
+        this(layer, status, message, bbox, elapsedMillis, Map.of());
+    }
+
+    public PublishResult(String layer, Status status, String message, BoundingBox bbox, long elapsedMillis,
+                         Map<String, Long> stageMillis) {
+        this(null, null, layer, status, message, bbox, elapsedMillis, stageMillis);
+    }
+
+    public PublishResult(String workspace, String datastore, String layer, Status status, String message, BoundingBox bbox,
+                         long elapsedMillis, Map<String, Long> stageMillis) {
+        this(workspace, datastore, layer, status, message, bbox, elapsedMillis, stageMillis, status != Status.FAILED);
+    }
+
+    public PublishResult(String workspace, String datastore, String layer, Status status, String message, BoundingBox bbox,
+                         long elapsedMillis, Map<String, Long> stageMillis, boolean changed) {
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.layer = layer;
+        this.status = status;
+        this.message = message;
+        this.bbox = bbox;
+        this.elapsedMillis = elapsedMillis;
+        this.stageMillis = stageMillis;
+        this.changed = changed;
+    }
+
+    /** 可能为 null（旧的构造方式）。 */
+    public String getWorkspace() { return workspace; }
+
+    /** 可能为 null（旧的构造方式）。 */
+    public String getDatastore() { return datastore; }
+
+    public String getLayer() { return layer; }
+
+    public Status getStatus() { return status; }
+
+    public String getMessage() { return message; }
+
+    /** 可能为 null（bbox 获取失败时）。 */
+    public BoundingBox getBbox() { return bbox; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    /** 各阶段耗时（毫秒），按执行顺序；没有分段计时时为空。 */
+    public Map<String, Long> getStageMillis() { return stageMillis; }
+
+    public boolean isSuccess() { return status != Status.FAILED; }
+
+    /**
+     * 本次运行是否改动了 GeoServer 上的数据：新发布为 true；已存在的图层仅当源文件有变化时为 true，
+     * 未变化或日志中已完成的为 false（缓存的瓦片仍然有效）。
+     */
+    public boolean isChanged() { return changed; }
+
+    @Override
+    public String toString() {
+        String line = String.format("%-32s %-9s %6d ms  %s", layer, status, elapsedMillis, message == null ? "" : message);
+        if (stageMillis.isEmpty()) return line;
+        return line + stageMillis.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining(" ", "  [", "]"));
+    }
+}
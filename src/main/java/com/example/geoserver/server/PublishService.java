@@ -1 +1,410 @@
-//核心流程编排：调用 ZipShapefilePublisher + GeoServerClient（create datastore、publish、重试）
\ No newline at end of file
+//核心流程编排：调用 ZipShapefilePublisher + GeoServerClient（create datastore、publish、重试）
+package com.example.geoserver.server;
+
+import com.example.geoserver.CatalogSnapshot;
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.ShapefileReader;
+import com.example.geoserver.model.BoundingBox;
+import com.example.geoserver.model.FeatureTypeInfo;
+import com.example.geoserver.model.ShapefileInfo;
+import com.example.geoserver.util.Metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量发布引擎：每个图层一条流水线（exists -> publish -> recalc -> bbox -> style），
+ * 多个图层并发执行，同时在途的图层数由 maxInFlight 限制，避免压垮 GeoServer。
+ * <p>
+ * JDK 21+ 使用虚拟线程，否则退回到大小为 maxInFlight 的平台线程池。
+ */
+public class PublishService implements AutoCloseable {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private final GeoServerClient gs;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+    private final PublishJournal journal;
+    private final Metrics.Gauge layersInFlight = Metrics.global().gauge("geoserver_publish_layers_in_flight");
+
+    public PublishService(GeoServerClient gs) {
+        this(gs, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public PublishService(GeoServerClient gs, int maxInFlight) {
+        this(gs, maxInFlight, PublishJournal.disabled());
+    }
+
+    /**
+     * @param journal 记录每个图层完成的阶段；重启后据此跳过已完成的图层（见 {@link PublishJournal}）
+     */
+    public PublishService(GeoServerClient gs, int maxInFlight, PublishJournal journal) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be >= 1: " + maxInFlight);
+        this.gs = gs;
+        this.journal = journal;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = newExecutor(maxInFlight);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * 提交单个图层。在途图层数已满时阻塞调用方（天然背压），
+     * 返回的 future 永远正常完成，异常会被转换为 FAILED 结果。
+     */
+    public CompletableFuture<PublishResult> submit(String ws, String store, String layer, String styleName) {
+        return submit(new LayerJob(ws, store, layer, styleName));
+    }
+
+    public CompletableFuture<PublishResult> submit(LayerJob job) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(
+                    new PublishResult(job.getWorkspace(), job.getDatastore(), job.getLayer(), PublishResult.Status.FAILED,
+                            "interrupted before start", null, 0, Map.of()));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return publishOne(job);
+                } finally {
+                    inFlight.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            // executor 已关闭等情况
+            inFlight.release();
+            return CompletableFuture.completedFuture(
+                    new PublishResult(job.getWorkspace(), job.getDatastore(), job.getLayer(), PublishResult.Status.FAILED,
+                            e.toString(), null, 0, Map.of()));
+        }
+    }
+
+    /**
+     * 并发发布一批图层并等待全部完成，结果顺序与 layers 一致。
+     */
+    public List<PublishResult> publishAll(String ws, String store, List<String> layers, String styleName) {
+        List<LayerJob> jobs = new ArrayList<>(layers.size());
+        for (String layer : layers) jobs.add(new LayerJob(ws, store, layer, styleName));
+        return publishAll(jobs);
+    }
+
+    /**
+     * 并发发布一批任务并等待全部完成，结果顺序与 jobs 一致。
+     * 开始前为涉及到的每个 ws/store 拉取一次目录快照。
+     */
+    public List<PublishResult> publishAll(List<LayerJob> jobs) {
+        Set<String> prefetched = new HashSet<>();
+        int completed = 0;
+        for (LayerJob job : jobs) {
+            // 日志中已发布过的图层不需要目录快照；整个 ws/store 都已完成时省掉快照请求
+            PublishJournal.LayerState journaled = journal.state(job);
+            if (skipsAsDone(job, journaled)) {
+                completed++;
+                continue;
+            }
+            if (journaled != null && journaled.has(PublishJournal.Stage.PUBLISHED) && !journaled.has(PublishJournal.Stage.DONE)) {
+                continue;
+            }
+            if (prefetched.add(job.getWorkspace() + "/" + job.getDatastore())) {
+                prefetchCatalog(job.getWorkspace(), job.getDatastore());
+            }
+        }
+        if (completed > 0) {
+            System.out.printf("Journal %s: %d of %d layer(s) already completed, skipping them.%n",
+                    journal.getFile(), completed, jobs.size());
+        }
+        List<CompletableFuture<PublishResult>> futures = new ArrayList<>(jobs.size());
+        for (LayerJob job : jobs) {
+            futures.add(submit(job));
+        }
+        List<PublishResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<PublishResult> f : futures) {
+            results.add(f.join());
+        }
+        return results;
+    }
+
+    /**
+     * 一轮发布结束后调用：没有失败时从日志中移除已完成的图层（见 {@link PublishJournal#forgetCompleted()}），
+     * 下次运行重新检查它们，而不是永久跳过。
+     */
+    public void endRun(List<PublishResult> results) {
+        if (results.stream().anyMatch(r -> r.getStatus() == PublishResult.Status.FAILED)) return;
+        try {
+            int dropped = journal.forgetCompleted();
+            if (dropped > 0) System.out.printf("Journal %s: run finished without failures, cleared %d completed layer(s).%n",
+                    journal.getFile(), dropped);
+        } catch (IOException e) {
+            System.err.println("Failed to compact publish journal: " + e.getMessage());
+        }
+    }
+
+    // 日志中已 DONE 且任务未标记为变化；目录输入无法判断是否变化（changed 恒为 true），每次都重新检查
+    private static boolean skipsAsDone(LayerJob job, PublishJournal.LayerState journaled) {
+        return journaled != null && journaled.has(PublishJournal.Stage.DONE) && !job.isChanged();
+    }
+
+    /**
+     * 批量开始前一次性拉取目录快照，替代每个图层的 layerExists + featureTypeExists 两次 GET。
+     * 拉取失败时不影响发布，只是退回到逐个探测。
+     */
+    void prefetchCatalog(String ws, String store) {
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshot snapshot = gs.loadCatalog(ws, store);
+            Metrics.global().timer("geoserver_publish_stage_seconds", "stage", "catalog").recordSince(start);
+            System.out.printf("Catalog loaded: %d featureType(s), %d layer(s) in %s/%s.%n",
+                    snapshot.featureTypeCount(), snapshot.layerCount(), ws, store);
+        } catch (Exception e) {
+            System.out.println("Catalog prefetch failed, falling back to per-layer checks: " + e.getMessage());
+        }
+    }
+
+    private static boolean isAuto(String styleName) {
+        return "auto".equalsIgnoreCase(styleName);
+    }
+
+    /**
+     * 单图层流水线；不抛异常，任何失败都记录在返回的结果里。
+     * 有本地 .shp 时，bbox / srs / 几何类型从文件头读取，省去 recalc PUT 与 bbox GET。
+     * 每一段的耗时记录在结果的 stageMillis 与 geoserver_publish_stage_seconds 直方图中。
+     * <p>
+     * 每完成一个阶段写入 {@link PublishJournal}：日志中已 DONE 且未变化的图层直接跳过；
+     * 已 PUBLISHED 的图层不再做 exists 探测，只补做剩下的 bbox / style。
+     * 某一段被 GeoServer 拒绝时不记录该段与 DONE，下次运行从这一段重新开始。
+     */
+    PublishResult publishOne(LayerJob job) {
+        String ws = job.getWorkspace(), store = job.getDatastore(), layer = job.getLayer();
+        LayerTrace trace = new LayerTrace(ws, store, layer);
+        layersInFlight.inc();
+        try {
+            PublishJournal.LayerState journaled = journal.state(job);
+            if (skipsAsDone(job, journaled)) {
+                return trace.finish(PublishResult.Status.EXISTS, "completed in a previous run (journal)", null, false);
+            }
+            // 上次解压出新文件但没走完流程：按已变化处理
+            if (journaled != null && journaled.has(PublishJournal.Stage.EXTRACTED) && !job.isChanged()) {
+                job = job.withChanged(true);
+            }
+            LayerJob current = job;
+            ShapefileInfo local = trace.stage("read", () -> ShapefileReader.read(current.getShapefile())).orElse(null);
+
+            if (journaled != null && journaled.has(PublishJournal.Stage.PUBLISHED) && !journaled.has(PublishJournal.Stage.DONE)) {
+                System.out.printf("Resuming layer '%s' from journal %s.%n", layer, journaled);
+                return resume(job, local, journaled, trace);
+            }
+
+            // Skip if layer already published (workspace:layer)
+            if (trace.stage("exists", () -> gs.layerExists(ws, layer))) {
+                System.out.printf("Resource named '%s' already exists in namespace: '%s'%n", layer, ws);
+                journal.record(job, PublishJournal.Stage.PUBLISHED);
+                BoundingBox bbox = refreshExisting(job, local, trace);
+                journal.record(job, PublishJournal.Stage.DONE);
+                return trace.finish(PublishResult.Status.EXISTS, job.isChanged() ? "layer exists" : "layer exists, unchanged", bbox,
+                        job.isChanged());
+            }
+
+            // If resource exists in store, skip publish, just recalc + preview
+            if (trace.stage("exists", () -> gs.featureTypeExists(ws, store, layer))) {
+                System.out.printf("Layer '%s' already exists in datastore '%s'. Skipping publish.%n", layer, store);
+                journal.record(job, PublishJournal.Stage.PUBLISHED);
+                BoundingBox bbox = refreshExisting(job, local, trace);
+                journal.record(job, PublishJournal.Stage.DONE);
+                return trace.finish(PublishResult.Status.EXISTS, job.isChanged() ? "featureType exists" : "featureType exists, unchanged", bbox,
+                        job.isChanged());
+            }
+
+            BoundingBox bbox;
+            if (local != null) {
+                // bbox 随发布请求一起提交，无需 recalc
+                boolean created = trace.stage("publish",
+                        () -> gs.publishFeatureType(ws, store, layer, layer, null, local.bbox, local.srs)); // let .prj define CRS
+                if (!created) return publishFailed(layer, trace);
+                System.out.printf("Layer '%s' published successfully.%n", layer);
+                journal.record(job, PublishJournal.Stage.CREATED);
+                journal.record(job, PublishJournal.Stage.PUBLISHED);
+                journal.record(job, PublishJournal.Stage.BBOX);
+                bbox = preview(ws, store, layer, local);
+            } else {
+                boolean created = trace.stage("publish", () -> gs.publishFeatureType(ws, store, layer, layer, null)); // let .prj define CRS
+                if (!created) return publishFailed(layer, trace);
+                System.out.printf("Layer '%s' published successfully.%n", layer);
+                journal.record(job, PublishJournal.Stage.CREATED);
+                journal.record(job, PublishJournal.Stage.PUBLISHED);
+                // Recalc and preview
+                bbox = recalcAndPreview(ws, store, layer, trace);
+                journal.record(job, PublishJournal.Stage.BBOX);
+            }
+
+            return finishStyled(job, local, trace, PublishResult.Status.PUBLISHED, "published", bbox);
+        } catch (Exception e) {
+            System.out.printf("Layer '%s' failed: %s%n", layer, e);
+            return trace.finish(PublishResult.Status.FAILED, e.toString(), null);
+        } finally {
+            layersInFlight.dec();
+        }
+    }
+
+    // 日志显示已发布：跳过 exists 与 publish，只补做未完成的 bbox / style。
+    // 上次运行新建的图层（CREATED）仍报告为 PUBLISHED，原本已存在的报告为 EXISTS（已变化），发布后阶段据此选择 seed / reseed
+    private PublishResult resume(LayerJob job, ShapefileInfo local, PublishJournal.LayerState journaled,
+                                 LayerTrace trace) throws Exception {
+        String ws = job.getWorkspace(), store = job.getDatastore(), layer = job.getLayer();
+        BoundingBox bbox;
+        if (journaled.has(PublishJournal.Stage.BBOX)) {
+            bbox = local != null ? preview(ws, store, layer, local) : preview(ws, store, layer, trace);
+        } else {
+            bbox = refreshExisting(job.withChanged(true), local, trace); // 成功时记录 BBOX
+        }
+        PublishResult.Status status = journaled.has(PublishJournal.Stage.CREATED)
+                ? PublishResult.Status.PUBLISHED : PublishResult.Status.EXISTS;
+        if (journaled.has(PublishJournal.Stage.STYLED)) {
+            journal.record(job, PublishJournal.Stage.DONE);
+            return trace.finish(status, "resumed from journal", bbox);
+        }
+        return finishStyled(job, local, trace, status, "resumed from journal", bbox);
+    }
+
+    // 设置样式后结束；样式没设上时不记录 DONE，下次运行从样式这一段继续
+    private PublishResult finishStyled(LayerJob job, ShapefileInfo local, LayerTrace trace, PublishResult.Status status,
+                                       String message, BoundingBox bbox) throws Exception {
+        String failedStyle = applyStyle(job, local, trace);
+        if (failedStyle != null) {
+            return trace.finish(status, message + ", style '" + failedStyle + "' not applied", bbox);
+        }
+        journal.record(job, PublishJournal.Stage.DONE);
+        return trace.finish(status, message, bbox);
+    }
+
+    // Optional: apply style if provided; "auto" 按几何类型解析 workspace 中的 point/line/polygon 样式（缓存，缺少时上传一次）
+    // 返回没能设置的样式名；成功或无需设置时返回 null
+    private String applyStyle(LayerJob job, ShapefileInfo local, LayerTrace trace) throws Exception {
+        String ws = job.getWorkspace(), store = job.getDatastore(), layer = job.getLayer();
+        String styleName = job.getStyleName();
+        if (isAuto(styleName)) {
+            // 没有本地文件时从 featureType 的几何属性判断（预览阶段刚取过，通常命中缓存）
+            ShapefileInfo.GeometryKind kind = local != null ? local.geometryKind
+                    : trace.stage("style", () -> gs.getFeatureTypeInfo(ws, store, layer))
+                            .map(FeatureTypeInfo::geometryKind).orElse(ShapefileInfo.GeometryKind.UNKNOWN);
+            if (kind == ShapefileInfo.GeometryKind.UNKNOWN) return null;
+            styleName = trace.stage("style", () -> gs.resolveStyle(ws, kind));
+        }
+        if (styleName == null || styleName.isBlank()) return null;
+        String style = styleName;
+        boolean styled = trace.stage("style", () -> gs.setDefaultStyle(ws, layer, style));
+        System.out.println(styled
+                ? String.format("Style '%s' applied to '%s'.", styleName, layer)
+                : String.format("Failed to apply style '%s' to '%s'.", styleName, layer));
+        if (!styled) return styleName;
+        journal.record(job, PublishJournal.Stage.STYLED);
+        return null;
+    }
+
+    private static PublishResult publishFailed(String layer, LayerTrace trace) {
+        System.out.printf("Failed to publish layer '%s'.%n", layer);
+        return trace.finish(PublishResult.Status.FAILED, "publish rejected", null);
+    }
+
+    // 已存在的图层：未变化只打印预览；变化了优先用本地 bbox 更新，否则让服务端 recalc。
+    // 更新成功才记录 BBOX；被拒绝时抛出，由 publishOne 记为失败，下次运行重做这一段
+    private BoundingBox refreshExisting(LayerJob job, ShapefileInfo local, LayerTrace trace) throws Exception {
+        String ws = job.getWorkspace(), store = job.getDatastore(), layer = job.getLayer();
+        if (local != null) {
+            if (job.isChanged()) {
+                requireOk(trace.stage("bbox", () -> gs.updateFeatureTypeBBox(ws, store, layer, local.bbox, local.srs)), "bbox update");
+                journal.record(job, PublishJournal.Stage.BBOX);
+            }
+            return preview(ws, store, layer, local);
+        }
+        if (!job.isChanged()) return preview(ws, store, layer, trace);
+        BoundingBox bbox = recalcAndPreview(ws, store, layer, trace);
+        journal.record(job, PublishJournal.Stage.BBOX);
+        return bbox;
+    }
+
+    private BoundingBox recalcAndPreview(String ws, String store, String layer, LayerTrace trace) throws Exception {
+        requireOk(trace.stage("recalc", () -> gs.recalcFeatureTypeBBox(ws, store, layer, "nativebbox,latlonbbox")), "bbox recalculation");
+        return preview(ws, store, layer, trace);
+    }
+
+    private static void requireOk(boolean ok, String step) {
+        if (!ok) throw new IllegalStateException(step + " rejected by GeoServer");
+    }
+
+    private BoundingBox preview(String ws, String store, String layer, LayerTrace trace) throws Exception {
+        Optional<BoundingBox> bbox = trace.stage("bbox", () -> gs.getFeatureTypeBBox(ws, store, layer));
+        bbox.ifPresent(b -> System.out.println("OpenLayers preview: " + gs.buildOpenLayersPreview(ws, store, layer, b)));
+        return bbox.orElse(null);
+    }
+
+    private BoundingBox preview(String ws, String store, String layer, ShapefileInfo local) {
+        String preview = local.srs != null
+                ? gs.buildOpenLayersPreviewWithSrs(ws, layer, local.bbox, local.srs)
+                : gs.buildOpenLayersPreview(ws, store, layer, local.bbox);
+        System.out.println("OpenLayers preview: " + preview);
+        return local.bbox;
+    }
+
+    /**
+     * 打印汇总报告（每个图层一行 + 统计）。
+     */
+    public static void printReport(List<PublishResult> results, long wallMillis) {
+        int published = 0, exists = 0, failed = 0;
+        System.out.println("---- Publish report ----");
+        for (PublishResult r : results) {
+            System.out.println(r);
+            switch (r.getStatus()) {
+                case PUBLISHED: published++; break;
+                case EXISTS: exists++; break;
+                default: failed++;
+            }
+        }
+        System.out.printf("Total %d: %d published, %d existing, %d failed in %d ms.%n",
+                results.size(), published, exists, failed, wallMillis);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newExecutor(int maxInFlight) {
+        try {
+            // JDK 21+: Executors.newVirtualThreadPerTaskExecutor()（反射调用以兼容旧 JDK 编译）
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger seq = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxInFlight, r -> {
+                Thread t = new Thread(r, "publish-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,278 @@
+//递归发现目录树中的 shapefile（含嵌套 zip），按 datastore 目录分组并流式输出
+package com.example.geoserver.server;
+
+import com.example.geoserver.AppConfig;
+import com.example.geoserver.FileUtils;
+import com.example.geoserver.ZipShapefilePublisher;
+import com.example.geoserver.util.Metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipFile;
+
+/**
+ * 并行遍历目录树（fork-join，每个目录 / 每个 zip 一个任务），找出可发布的 shapefile：
+ * <ul>
+ *   <li>每个含有 .shp 的目录是一组，对应一个 directory datastore；根目录使用给定的 datastore 名，
+ *       子目录为 {@code datastore_子目录_...}（命名规则见 {@link #datastoreName(String, String)}）；</li>
+ *   <li>目录中的 zip 按增量方式解压到 {GEOSERVER_DATA_DIR}/{workspace}/{datastore_zip路径}，zip 内每个含 .shp 的目录同样各成一组；
+ *       远程模式下不解压，整个 zip 作为一组交给上传；</li>
+ *   <li>缺少 {@link #REQUIRED_SIDECARS} 中任一文件的图层被剔除并打印原因；.prj 可以没有（坐标系由 GeoServer 或发布参数决定）。
+ *       一次性遍历时文件已经到齐；目录监听模式下缺 .prj 的图层由 {@link HotFolderDaemon} 多等一个 settle 窗口。</li>
+ * </ul>
+ * 每发现一组立即交给 sink（在 worker 线程上、可能并发调用），调用方可以在遍历结束前就开始发布。
+ */
+public class ShapefileDiscovery {
+    /** 与 .shp 同名、必须存在的文件（扩展名大小写不限）。 */
+    public static final List<String> REQUIRED_SIDECARS = List.of("shx", "dbf");
+    /** 可以没有、但存在时属于该图层的文件。 */
+    public static final List<String> OPTIONAL_SIDECARS = List.of("prj", "cpg");
+
+    /** 一个 datastore 目录下的全部有效图层。 */
+    public static final class Group {
+        private final String datastore;
+        private final Path folder;
+        private final List<Path> shapefiles;
+        private final Set<String> changedLayers;
+        private final Path uploadZip;
+
+        Group(String datastore, Path folder, List<Path> shapefiles, Set<String> changedLayers, Path uploadZip) {
+            this.datastore = datastore;
+            this.folder = folder;
+            this.shapefiles = shapefiles;
+            this.changedLayers = changedLayers;
+            this.uploadZip = uploadZip;
+        }
+
+        public String getDatastore() { return datastore; }
+
+        /** datastore 指向的本地目录；远程上传组为 null。 */
+        public Path getFolder() { return folder; }
+
+        /** 已通过 sidecar 检查的 .shp；远程上传组为空，图层名由上传结果给出。 */
+        public List<Path> getShapefiles() { return shapefiles; }
+
+        /** 解压时写出过新内容的图层；null 表示全部视为已变化。 */
+        public Set<String> getChangedLayers() { return changedLayers; }
+
+        /** 远程模式下需要整体上传的 zip；本地模式为 null。 */
+        public Path getUploadZip() { return uploadZip; }
+
+        @Override
+        public String toString() {
+            return uploadZip != null ? datastore + " <- " + uploadZip
+                    : datastore + " <- " + folder + " (" + shapefiles.size() + " layer(s))";
+        }
+    }
+
+    private final String workspace;
+    private final String datastore;
+    private final int parallelism;
+
+    public ShapefileDiscovery(String workspace, String datastore) {
+        // 网络共享上的遍历以等待 I/O 为主，线程数不少于 4
+        this(workspace, datastore, Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ShapefileDiscovery(String workspace, String datastore, int parallelism) {
+        this.workspace = workspace;
+        this.datastore = datastore;
+        this.parallelism = parallelism;
+    }
+
+    /** 遍历 root，直到整棵树处理完才返回；sink 在遍历过程中被调用。 */
+    public void discover(Path root, Consumer<Group> sink) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(root, root, sink));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path root;
+        private final Path dir;
+        private final Consumer<Group> sink;
+
+        DirectoryTask(Path root, Path dir, Consumer<Group> sink) {
+            this.root = root;
+            this.dir = dir;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> children = new ArrayList<>();
+            List<Path> shapefiles = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path p : stream) {
+                    String name = p.getFileName().toString();
+                    // 不跟随符号链接，避免目录环
+                    if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                        if (!name.startsWith(".")) children.add(new DirectoryTask(root, p, sink));
+                        continue;
+                    }
+                    names.add(name.toLowerCase(Locale.ROOT));
+                    String ext = extension(name);
+                    if (ext.equals("shp")) shapefiles.add(p);
+                    else if (ext.equals("zip")) children.add(new ZipTask(root, p, sink));
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to list " + dir + ": " + e.getMessage());
+                return;
+            }
+            // 先输出本目录，发布可以与子目录的遍历同时进行
+            List<Path> valid = validate(shapefiles, names);
+            if (!valid.isEmpty()) {
+                sink.accept(new Group(datastoreName(root.relativize(dir).toString()), dir, valid, null, null));
+            }
+            invokeAll(children);
+        }
+    }
+
+    private final class ZipTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path root;
+        private final Path zip;
+        private final Consumer<Group> sink;
+
+        ZipTask(Path root, Path zip, Consumer<Group> sink) {
+            this.root = root;
+            this.zip = zip;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            String rel = root.relativize(zip).toString();
+            String zipBaseName = stripExt(zip.getFileName().toString());
+            String zipStore = datastoreName(stripExt(rel));
+            try {
+                // zip 内 .shp 所在的目录 -> 该目录下的文件名（小写）
+                List<String> entries = new ArrayList<>();
+                try (ZipFile z = new ZipFile(zip.toFile())) {
+                    z.stream().filter(e -> !e.isDirectory()).forEach(e -> entries.add(e.getName()));
+                }
+                if (AppConfig.useRemoteUpload()) {
+                    // GeoServer 看不到本地目录：整个 zip 上传到一个 datastore，由服务端负责解析
+                    if (entries.stream().anyMatch(e -> extension(e).equals("shp"))) {
+                        sink.accept(new Group(zipStore, null, Collections.emptyList(), null, zip));
+                    }
+                    return;
+                }
+                FileUtils.ExtractResult extracted = new ZipShapefilePublisher().extractChangedToDataDir(zip, workspace, zipStore);
+                Set<String> innerDirs = new LinkedHashSet<>();
+                for (String e : entries) {
+                    if (extension(e).equals("shp")) innerDirs.add(e.lastIndexOf('/') < 0 ? "" : e.substring(0, e.lastIndexOf('/')));
+                }
+                for (String inner : innerDirs) {
+                    Path folder = extracted.getTargetDir().resolve(inner).normalize();
+                    if (!folder.startsWith(extracted.getTargetDir())) continue;
+                    List<Path> shapefiles = new ArrayList<>();
+                    Set<String> names = new HashSet<>();
+                    String prefix = inner.isEmpty() ? "" : inner + "/";
+                    for (String e : entries) {
+                        if (!e.startsWith(prefix) || e.indexOf('/', prefix.length()) >= 0) continue;
+                        String name = e.substring(prefix.length());
+                        names.add(name.toLowerCase(Locale.ROOT));
+                        if (extension(name).equals("shp")) shapefiles.add(folder.resolve(name));
+                    }
+                    List<Path> valid = validate(shapefiles, names);
+                    if (valid.isEmpty()) continue;
+                    // zip 根下与 zip 同名的目录（ZipShapefilePublisher 的约定）不再重复进 datastore 名
+                    String innerRel = inner.equals(zipBaseName) ? "" : inner.startsWith(zipBaseName + "/")
+                            ? inner.substring(zipBaseName.length() + 1) : inner;
+                    String store = innerRel.isEmpty() ? zipStore : datastoreName(stripExt(rel) + "/" + innerRel);
+                    sink.accept(new Group(store, folder, valid, extracted.getChangedLayers(), null));
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to read " + zip + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // 剔除缺少 sidecar 的图层；names 为同目录下全部文件名（小写）
+    private static List<Path> validate(List<Path> shapefiles, Set<String> names) {
+        if (shapefiles.isEmpty()) return Collections.emptyList();
+        List<Path> valid = new ArrayList<>();
+        Metrics m = Metrics.global();
+        for (Path shp : shapefiles) {
+            String base = stripExt(shp.getFileName().toString()).toLowerCase(Locale.ROOT);
+            List<String> missing = new ArrayList<>();
+            for (String ext : REQUIRED_SIDECARS) {
+                if (!names.contains(base + "." + ext)) missing.add("." + ext);
+            }
+            if (missing.isEmpty()) {
+                valid.add(shp);
+                m.counter("geoserver_discovery_layers_total", "result", "ok").inc();
+            } else {
+                System.out.println("Skipping " + shp + ": missing " + String.join(", ", missing));
+                m.counter("geoserver_discovery_layers_total", "result", "incomplete").inc();
+            }
+        }
+        return valid;
+    }
+
+    String datastoreName(String relative) {
+        return datastoreName(datastore, relative);
+    }
+
+    /**
+     * 根目录 -> datastore；子路径 a/b -> datastore_a_b。
+     * 只含字母、数字与 '-' 的路径段原样拼接，这样的名称互不相同；段中有 '_' 或其它字符时（会被替换为 '_'，
+     * 如 a_b/ 与 a/b/ 都会变成 datastore_a_b）在末尾加上 "__" 与整个相对路径的 CRC32，避免两个目录落到同一个 datastore。
+     */
+    static String datastoreName(String datastore, String relative) {
+        StringBuilder sb = new StringBuilder(datastore);
+        StringBuilder path = new StringBuilder();
+        boolean lossy = false;
+        for (String segment : relative.split("[/\\\\]")) {
+            if (segment.isEmpty()) continue;
+            sb.append('_');
+            if (path.length() > 0) path.append('/');
+            path.append(segment);
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                boolean safe = Character.isLetterOrDigit(c) || c == '-';
+                sb.append(safe ? c : '_');
+                lossy |= !safe;
+            }
+        }
+        if (lossy) {
+            // 不改写的名称里不会出现 "__"（段非空且不含 '_'），因此两类名称也不会相撞
+            CRC32 crc = new CRC32();
+            crc.update(path.toString().getBytes(StandardCharsets.UTF_8));
+            sb.append("__").append(String.format("%08x", crc.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static String stripExt(String name) {
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        int dot = name.lastIndexOf('.');
+        return dot > slash + 1 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && dot > name.lastIndexOf('/') ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,154 @@
+//发布前的本地预检：多线程校验 shapefile 并生成 .qix 空间索引，坏图层在任何 REST 请求之前被剔除
+package com.example.geoserver.server;
+
+import com.example.geoserver.QuadTreeIndex;
+import com.example.geoserver.ShapefileValidator;
+import com.example.geoserver.util.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * JobPlanner 在创建 datastore 之前调用：
+ * <ul>
+ *   <li>用 {@link ShapefileValidator} 内存映射 .shp/.shx/.dbf，核对记录数、偏移与长度，不合格的图层不再发布；</li>
+ *   <li>buildIndex 开启时在同一次扫描中建立四叉树并写出 .qix（见 {@link QuadTreeIndex}），
+ *       GeoServer 第一次请求就走索引读取，不必在负载下临时建索引。已有且不早于 .shp 的 .qix 不重建。</li>
+ * </ul>
+ * 上次运行后没有变化的图层不再扫描：buildIndex 开启时看 .qix 是否不早于 .shp / .shx / .dbf
+ * （预检只在校验通过后写出索引，解压重写的文件一定比它新）；关闭时由调用方判定（日志中已完成且本次没有重写）。
+ * <p>
+ * 各图层在固定大小的线程池上并行处理，池在每次 {@link #check} 结束时关闭。.qix 写不进去（例如只读目录）只打印警告，不影响发布。
+ */
+public class ShapefilePreflight {
+
+    public static class Settings {
+        public boolean enabled = true;
+        public boolean buildIndex = true;
+        public int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        public int leafSize = QuadTreeIndex.DEFAULT_LEAF_SIZE;
+
+        public static Settings defaults() {
+            return new Settings();
+        }
+    }
+
+    private final Settings settings;
+    private final Metrics metrics = Metrics.global();
+
+    public ShapefilePreflight(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * 并行检查，返回通过的 .shp（保持输入顺序）；被剔除的打印原因。
+     */
+    public List<Path> check(List<Path> shapefiles) {
+        return check(shapefiles, shp -> false);
+    }
+
+    /**
+     * 同上；unchanged 判定为 true 的图层上次已通过预检、文件没有变化，不再扫描
+     * （buildIndex 开启时改为以 .qix 是否最新为准，过期的照常扫描并重建索引）。
+     */
+    public List<Path> check(List<Path> shapefiles, Predicate<Path> unchanged) {
+        if (!settings.enabled || shapefiles.isEmpty()) return shapefiles;
+        long start = System.nanoTime();
+        List<Future<String>> futures = new ArrayList<>();
+        int skipped = 0;
+        ExecutorService executor = null;
+        try {
+            for (Path shp : shapefiles) {
+                if (canSkip(shp, unchanged, settings.buildIndex)) {
+                    futures.add(null);
+                    skipped++;
+                    continue;
+                }
+                if (executor == null) executor = newExecutor(shapefiles.size());
+                futures.add(executor.submit(() -> checkOne(shp)));
+            }
+
+            List<Path> valid = new ArrayList<>();
+            for (int i = 0; i < shapefiles.size(); i++) {
+                Path shp = shapefiles.get(i);
+                if (futures.get(i) == null) {
+                    valid.add(shp);
+                    metrics.counter("geoserver_preflight_layers_total", "result", "unchanged").inc();
+                    continue;
+                }
+                String problem;
+                try {
+                    problem = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    problem = "interrupted";
+                } catch (ExecutionException e) {
+                    problem = String.valueOf(e.getCause());
+                }
+                if (problem == null) {
+                    valid.add(shp);
+                    metrics.counter("geoserver_preflight_layers_total", "result", "ok").inc();
+                } else {
+                    System.out.println("Rejecting " + shp + ": " + problem);
+                    metrics.counter("geoserver_preflight_layers_total", "result", "rejected").inc();
+                }
+            }
+            System.out.printf("Pre-flight: %d of %d shapefile(s) valid (%d unchanged, not rescanned) in %d ms.%n",
+                    valid.size(), shapefiles.size(), skipped, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return valid;
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+    }
+
+    private static boolean canSkip(Path shp, Predicate<Path> unchanged, boolean buildIndex) {
+        return buildIndex ? QuadTreeIndex.isFreshFor(shp, ".dbf") : unchanged.test(shp);
+    }
+
+    // 通过返回 null，否则返回原因
+    private String checkOne(Path shp) {
+        long start = System.nanoTime();
+        try {
+            if (settings.buildIndex) {
+                QuadTreeIndex index = QuadTreeIndex.build(shp, settings.leafSize);
+                writeIndex(shp, index);
+            } else {
+                ShapefileValidator.validate(shp);
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        } catch (IOException e) {
+            return "cannot read: " + e;
+        } finally {
+            metrics.timer("geoserver_preflight_seconds").recordSince(start);
+        }
+    }
+
+    private void writeIndex(Path shp, QuadTreeIndex index) {
+        Path qix = QuadTreeIndex.qixPath(shp);
+        try {
+            index.write(qix);
+            metrics.counter("geoserver_preflight_index_total", "result", "built").inc();
+        } catch (IOException e) {
+            System.out.println("Could not write " + qix + " (GeoServer will build it on first use): " + e.getMessage());
+            metrics.counter("geoserver_preflight_index_total", "result", "failed").inc();
+        }
+    }
+
+    private ExecutorService newExecutor(int layers) {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(settings.threads, layers)), r -> {
+            Thread t = new Thread(r, "shapefile-preflight");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -1 +1,415 @@
-//可选：HTTP 辅助方法（构造 headers、url 编码等）
\ No newline at end of file
+//可选：HTTP 辅助方法（构造 headers、url 编码等）
+//这里实现为带超时 / 重试 / 熔断 / 自适应并发的请求执行器，GeoServerClient 的所有请求都经过它
+package com.example.geoserver.util;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeoServer 请求执行器：
+ * <ul>
+ *   <li>每个请求都有超时（请求自身未设置时使用 {@link Settings#requestTimeout}）；</li>
+ *   <li>幂等请求（GET/PUT/DELETE/HEAD）遇到 IO 异常、超时或 429/5xx 时按带抖动的指数退避重试；
+ *       POST 只在连接未建立（ConnectException）时重试；</li>
+ *   <li>熔断器：连续失败达到阈值后打开，冷却期内所有请求暂停等待，而不是继续压向过载的服务器；</li>
+ *   <li>自适应并发（AIMD）：延迟正常时缓慢增加并发上限，出现延迟尖刺或过载响应时成倍收缩；
+ *       延迟按端点分别平滑，zip 上传（file.*）不参与延迟判断；</li>
+ *   <li>每次尝试按端点记录延迟直方图、状态码计数与在途请求数（{@link Metrics}）。</li>
+ * </ul>
+ */
+public class HttpUtils {
+
+    /** 可调参数；字段直接赋值即可。 */
+    public static class Settings {
+        public Duration connectTimeout = Duration.ofSeconds(10);
+        public Duration requestTimeout = Duration.ofSeconds(60);
+        public int maxRetries = 4;
+        public Duration baseBackoff = Duration.ofMillis(200);
+        public Duration maxBackoff = Duration.ofSeconds(10);
+        public int breakerFailureThreshold = 5;
+        public Duration breakerCooldown = Duration.ofSeconds(15);
+        public int minConcurrency = 2;
+        public int maxConcurrency = 64;
+        public int initialConcurrency = 16;
+        public double latencySpikeFactor = 3.0; // 超过平滑延迟的倍数视为尖刺
+
+        public static Settings defaults() {
+            return new Settings();
+        }
+    }
+
+    private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 500, 502, 503, 504);
+    // 作为端点名的 REST 资源集合（取路径中最后一个出现的）
+    private static final Set<String> RESOURCES = Set.of(
+            "workspaces", "datastores", "featuretypes", "layers", "styles", "layergroups", "seed");
+
+    private final HttpClient http;
+    private final Settings settings;
+    private final CircuitBreaker breaker;
+    private final AdaptiveLimiter limiter;
+    private final Metrics metrics = Metrics.global();
+    private final Metrics.Gauge inFlightGauge = metrics.gauge("geoserver_http_in_flight");
+
+    public HttpUtils(HttpClient http, Settings settings) {
+        this.http = http;
+        this.settings = settings;
+        this.breaker = new CircuitBreaker(settings.breakerFailureThreshold, settings.breakerCooldown.toNanos());
+        this.limiter = new AdaptiveLimiter(settings.minConcurrency, settings.maxConcurrency,
+                settings.initialConcurrency, settings.latencySpikeFactor);
+        metrics.gauge("geoserver_http_concurrency_limit", limiter::getLimit);
+        metrics.gauge("geoserver_http_breaker_open", () -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+    }
+
+    /** 按 Settings 创建带连接超时的 HttpClient。 */
+    public static HttpClient newHttpClient(Settings settings) {
+        return HttpClient.newBuilder()
+                .connectTimeout(settings.connectTimeout)
+                .build();
+    }
+
+    public Settings getSettings() { return settings; }
+
+    public CircuitBreaker getBreaker() { return breaker; }
+
+    public AdaptiveLimiter getLimiter() { return limiter; }
+
+    /**
+     * 同步发送；重试耗尽后返回最后一次响应（可能仍是 5xx），或抛出最后一次异常。
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        HttpRequest req = withTimeout(request);
+        String endpoint = endpointOf(req);
+        for (int attempt = 0; ; attempt++) {
+            if (attempt > 0) metrics.counter("geoserver_http_retries_total", "endpoint", endpoint).inc();
+            long queued = System.nanoTime();
+            breaker.awaitPermission();
+            limiter.acquire().join();
+            metrics.timer("geoserver_http_queue_wait_seconds").recordSince(queued);
+            long start = System.nanoTime();
+            inFlightGauge.inc();
+            HttpResponse<T> res;
+            try {
+                res = http.send(req, handler);
+            } catch (IOException e) {
+                onFailure(start, endpoint, e.getClass().getSimpleName());
+                if (!shouldRetry(req, e, attempt)) throw e;
+                Thread.sleep(backoffMillis(attempt));
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                // 请求没有得到服务端的回应：只归还许可，不作为过载信号
+                inFlightGauge.dec();
+                limiter.abandon();
+                breaker.abandonProbe();
+                throw e;
+            }
+            boolean overloaded = RETRYABLE_STATUS.contains(res.statusCode());
+            String status = String.valueOf(res.statusCode());
+            if (overloaded) onFailure(start, endpoint, status); else onSuccess(start, endpoint, status);
+            if (!overloaded || !shouldRetry(req, null, attempt)) return res;
+            Thread.sleep(backoffMillis(attempt));
+        }
+    }
+
+    /**
+     * 异步发送；退避等待通过 delayedExecutor 完成，不占用线程。
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        HttpRequest req = withTimeout(request);
+        return attemptAsync(req, endpointOf(req), handler, 0);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attemptAsync(HttpRequest req, String endpoint,
+                                                               HttpResponse.BodyHandler<T> handler, int attempt) {
+        if (attempt > 0) metrics.counter("geoserver_http_retries_total", "endpoint", endpoint).inc();
+        long queued = System.nanoTime();
+        return breaker.permissionAsync()
+                .thenCompose(v -> limiter.acquire())
+                .thenCompose(v -> {
+                    metrics.timer("geoserver_http_queue_wait_seconds").recordSince(queued);
+                    long start = System.nanoTime();
+                    inFlightGauge.inc();
+                    CompletableFuture<HttpResponse<T>> sent;
+                    try {
+                        sent = http.sendAsync(req, handler);
+                    } catch (RuntimeException e) {
+                        // 同步抛出（参数非法、客户端已关闭等）：请求没有发出，归还许可与在途计数
+                        inFlightGauge.dec();
+                        limiter.abandon();
+                        breaker.abandonProbe();
+                        return CompletableFuture.<HttpResponse<T>>failedFuture(e);
+                    }
+                    return sent.handle((res, err) -> {
+                        Throwable cause = unwrap(err);
+                        if (cause != null) {
+                            onFailure(start, endpoint, cause.getClass().getSimpleName());
+                            if (cause instanceof IOException && shouldRetry(req, (IOException) cause, attempt)) {
+                                return retryLater(req, endpoint, handler, attempt);
+                            }
+                            return CompletableFuture.<HttpResponse<T>>failedFuture(cause);
+                        }
+                        boolean overloaded = RETRYABLE_STATUS.contains(res.statusCode());
+                        String status = String.valueOf(res.statusCode());
+                        if (overloaded) onFailure(start, endpoint, status); else onSuccess(start, endpoint, status);
+                        if (overloaded && shouldRetry(req, null, attempt)) return retryLater(req, endpoint, handler, attempt);
+                        return CompletableFuture.completedFuture(res);
+                    }).thenCompose(f -> f);
+                });
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> retryLater(HttpRequest req, String endpoint,
+                                                             HttpResponse.BodyHandler<T> handler, int attempt) {
+        return CompletableFuture.supplyAsync(() -> null,
+                        CompletableFuture.delayedExecutor(backoffMillis(attempt), TimeUnit.MILLISECONDS))
+                .thenCompose(v -> attemptAsync(req, endpoint, handler, attempt + 1));
+    }
+
+    private void onSuccess(long startNanos, String endpoint, String status) {
+        breaker.recordSuccess();
+        limiter.release(latencyClass(endpoint), record(startNanos, endpoint, status), false);
+    }
+
+    private void onFailure(long startNanos, String endpoint, String status) {
+        breaker.recordFailure();
+        limiter.release(latencyClass(endpoint), record(startNanos, endpoint, status), true);
+    }
+
+    // 延迟信号按端点区分；zip 上传耗时取决于文件大小而非服务器负载，返回 null 表示不参与延迟判断
+    static String latencyClass(String endpoint) {
+        return endpoint.contains(" file.") ? null : endpoint;
+    }
+
+    // 记录一次尝试的延迟与结果，返回耗时（纳秒）
+    private long record(long startNanos, String endpoint, String status) {
+        inFlightGauge.dec();
+        long elapsed = metrics.timer("geoserver_http_request_seconds", "endpoint", endpoint).recordSince(startNanos);
+        metrics.counter("geoserver_http_responses_total", "endpoint", endpoint, "status", status).inc();
+        return elapsed;
+    }
+
+    /**
+     * 指标用的端点名："方法 资源"，资源取路径中最后一个 REST 集合名，
+     * 例如 GET /rest/workspaces/ws/datastores/s/featuretypes/x.json -> "GET featuretypes"；
+     * 上传 file.shp 记为 "PUT file.shp"。
+     */
+    static String endpointOf(HttpRequest req) {
+        String[] segments = req.uri().getPath().split("/");
+        String resource = "other";
+        for (int i = 0; i < segments.length; i++) {
+            String seg = segments[i];
+            int dot = seg.indexOf('.');
+            String bare = dot > 0 && !seg.startsWith("file.") ? seg.substring(0, dot) : seg;
+            if (RESOURCES.contains(bare) || seg.startsWith("file.")) resource = bare;
+        }
+        return req.method() + " " + resource;
+    }
+
+    private boolean shouldRetry(HttpRequest req, IOException error, int attempt) {
+        if (attempt >= settings.maxRetries) return false;
+        if (IDEMPOTENT.contains(req.method())) return true;
+        // 非幂等请求只在请求肯定没有发出时重试
+        return error instanceof ConnectException;
+    }
+
+    /** Full jitter：在 [0, min(max, base * 2^attempt)] 内随机。 */
+    long backoffMillis(int attempt) {
+        long cap = Math.min(settings.maxBackoff.toMillis(), settings.baseBackoff.toMillis() << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private HttpRequest withTimeout(HttpRequest req) {
+        if (req.timeout().isPresent()) return req;
+        return HttpRequest.newBuilder(req, (name, value) -> true).timeout(settings.requestTimeout).build();
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t;
+    }
+
+    /**
+     * 连续失败计数熔断器：CLOSED -> OPEN（冷却）-> HALF_OPEN（放行一个探测请求）-> CLOSED。
+     * OPEN 期间请求不会失败，而是等待冷却结束，从而让整批任务暂停。
+     */
+    public static class CircuitBreaker {
+        public enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final int threshold;
+        private final long cooldownNanos;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean probeInFlight;
+
+        CircuitBreaker(int threshold, long cooldownNanos) {
+            this.threshold = threshold;
+            this.cooldownNanos = cooldownNanos;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        /** 需要等待的纳秒数；0 表示可以立即发送。 */
+        synchronized long waitNanos() {
+            if (state == State.CLOSED) return 0;
+            if (state == State.OPEN) {
+                long remaining = openedAt + cooldownNanos - System.nanoTime();
+                if (remaining > 0) return remaining;
+                state = State.HALF_OPEN;
+                probeInFlight = false;
+            }
+            // HALF_OPEN：只放行一个探测请求，其余稍后再试
+            if (!probeInFlight) {
+                probeInFlight = true;
+                return 0;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(200);
+        }
+
+        void awaitPermission() throws InterruptedException {
+            long wait;
+            boolean announced = false;
+            while ((wait = waitNanos()) > 0) {
+                if (!announced) {
+                    System.out.printf("GeoServer looks overloaded; pausing requests for %d ms.%n",
+                            TimeUnit.NANOSECONDS.toMillis(wait));
+                    announced = true;
+                }
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        CompletableFuture<Void> permissionAsync() {
+            long wait = waitNanos();
+            if (wait == 0) return CompletableFuture.completedFuture(null);
+            return CompletableFuture.supplyAsync(() -> null,
+                            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS))
+                    .thenCompose(v -> permissionAsync());
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+            probeInFlight = false;
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= threshold) {
+                if (state != State.OPEN) {
+                    System.out.printf("Circuit breaker open after %d consecutive failure(s).%n", consecutiveFailures);
+                }
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                probeInFlight = false;
+            }
+        }
+
+        /**
+         * 探测请求没有得到响应（中断、发送前失败）：回到 OPEN 并重新冷却，
+         * 否则 probeInFlight 永远不会被清除，之后的请求会一直等待。
+         */
+        synchronized void abandonProbe() {
+            if (state != State.HALF_OPEN || !probeInFlight) return;
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * AIMD 并发上限：成功且延迟正常时 limit += 1/limit，失败或延迟尖刺时 limit *= 0.7。
+     * 尖刺与各自端点类别的平滑延迟（EWMA）比较，慢的端点不会拖低快的端点的基线，反之亦然。
+     * 等待者按 FIFO 排队，获取许可返回 CompletableFuture，同步与异步调用共用。
+     */
+    public static class AdaptiveLimiter {
+        private final int min;
+        private final int max;
+        private final double spikeFactor;
+        private double limit;
+        private int inFlight;
+        private final Map<String, Double> smoothedLatencyNanos = new HashMap<>(); // 端点类别 -> EWMA
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+        AdaptiveLimiter(int min, int max, int initial, double spikeFactor) {
+            this.min = min;
+            this.max = max;
+            this.limit = Math.max(min, Math.min(max, initial));
+            this.spikeFactor = spikeFactor;
+        }
+
+        public synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> f = new CompletableFuture<>();
+                waiters.add(f);
+                return f;
+            }
+        }
+
+        /**
+         * @param latencyClass 端点类别；null 表示该请求的耗时不作为延迟信号（只看成败）
+         */
+        void release(String latencyClass, long latencyNanos, boolean failed) {
+            CompletableFuture<Void> wake;
+            synchronized (this) {
+                Double smoothed = latencyClass == null ? null : smoothedLatencyNanos.get(latencyClass);
+                boolean spike = smoothed != null && latencyNanos > smoothed * spikeFactor;
+                if (failed || spike) {
+                    limit = Math.max(min, limit * 0.7);
+                } else {
+                    limit = Math.min(max, limit + 1.0 / limit);
+                }
+                if (!failed && latencyClass != null) {
+                    smoothedLatencyNanos.put(latencyClass, smoothed == null ? latencyNanos : smoothed * 0.9 + latencyNanos * 0.1);
+                }
+                wake = returnPermit();
+            }
+            // 在锁外完成，避免在持锁时执行下游回调
+            if (wake != null) wake.complete(null);
+        }
+
+        /** 请求未得到响应（中断、发送前失败）：归还许可，不调整上限。 */
+        void abandon() {
+            CompletableFuture<Void> wake;
+            synchronized (this) {
+                wake = returnPermit();
+            }
+            if (wake != null) wake.complete(null);
+        }
+
+        // 调用方持锁；有等待者且未超过上限时把许可直接转交给它
+        private CompletableFuture<Void> returnPermit() {
+            inFlight--;
+            if (inFlight < (int) limit && !waiters.isEmpty()) {
+                inFlight++;
+                return waiters.poll();
+            }
+            return null;
+        }
+    }
+}
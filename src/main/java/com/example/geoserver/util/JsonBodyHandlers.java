@@ -0,0 +1,156 @@
+//流式 JSON 响应体处理：边接收边解析，只取需要的字段
+package com.example.geoserver.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * 基于 Jackson 非阻塞解析器的 {@link HttpResponse.BodyHandler}：响应体分块到达时直接送入解析器，
+ * 不拼接完整字符串、不建立 JsonNode 树。字段通过 {@link Collector} 按路径回调，由调用方决定保留什么。
+ * <p>
+ * 路径为以 '.' 连接的对象字段名，数组是透明的（不产生路径段），因此 GeoServer 列表
+ * "单个元素时是对象、多个时是数组" 的两种形式得到相同路径，例如 {@code featureTypes.featureType}。
+ * 同步 send 与异步 sendAsync 都可以使用，解析不阻塞 HttpClient 的线程。
+ */
+public final class JsonBodyHandlers {
+    private JsonBodyHandlers() {}
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /** 按路径接收解析事件；每个响应新建一个实例。 */
+    public interface Collector<T> {
+        /** 进入一个对象（含数组中的对象元素）。 */
+        default void startObject(String path) {}
+
+        /**
+         * 标量值。parent 为所在对象的路径，field 为字段名（数组中的标量为 null）。
+         * 调用期间 p 指向该值，可用 getText() / getValueAsDouble() 等读取。
+         */
+        void value(String parent, String field, JsonParser p) throws IOException;
+
+        T result();
+    }
+
+    /**
+     * 200 时流式解析并返回 collector 的结果；其它状态码丢弃响应体，body 为 null。
+     */
+    public static <T> HttpResponse.BodyHandler<T> ofJson(Supplier<? extends Collector<T>> collector) {
+        return info -> info.statusCode() == 200
+                ? new StreamingSubscriber<>(collector.get())
+                : HttpResponse.BodySubscribers.replacing(null);
+    }
+
+    private static final class StreamingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final Collector<T> collector;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        // 当前所在的容器：路径与是否为数组
+        private final ArrayDeque<String> paths = new ArrayDeque<>();
+        private final ArrayDeque<Boolean> arrays = new ArrayDeque<>();
+        private String field;
+        private Flow.Subscription subscription;
+
+        StreamingSubscriber(Collector<T> collector) {
+            this.collector = collector;
+            try {
+                this.parser = FACTORY.createNonBlockingByteBufferParser();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (ByteBuffer buffer : items) {
+                    feeder.feedInput(buffer);
+                    drain();
+                }
+                subscription.request(1);
+            } catch (IOException | RuntimeException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) return;
+            try {
+                feeder.endOfInput();
+                drain();
+                result.complete(collector.result());
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        // 消费当前已送入的全部 token，直到解析器需要更多输入
+        private void drain() throws IOException {
+            JsonToken t;
+            while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+                switch (t) {
+                    case FIELD_NAME:
+                        field = parser.currentName();
+                        break;
+                    case START_OBJECT:
+                    case START_ARRAY: {
+                        String path = childPath();
+                        paths.push(path);
+                        arrays.push(t == JsonToken.START_ARRAY);
+                        field = null;
+                        if (t == JsonToken.START_OBJECT) collector.startObject(path);
+                        break;
+                    }
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        paths.pop();
+                        arrays.pop();
+                        field = null;
+                        break;
+                    default:
+                        collector.value(paths.isEmpty() ? "" : paths.peek(),
+                                arrays.isEmpty() || arrays.peek() ? null : field, parser);
+                }
+            }
+        }
+
+        private String childPath() {
+            if (paths.isEmpty()) return "";
+            String parent = paths.peek();
+            if (arrays.peek() || field == null) return parent;
+            return parent.isEmpty() ? field : parent + "." + field;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+//运行指标：计数器、仪表、延迟直方图；运行结束导出 JSON / Prometheus 文本，运行中通过 JMX 查看
+package com.example.geoserver.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内指标注册表，不依赖第三方库。指标名与标签沿用 Prometheus 的写法：
+ * <pre>
+ * Metrics.global().timer("geoserver_http_request_seconds", "endpoint", "GET featuretypes").record(nanos);
+ * Metrics.global().counter("geoserver_extract_bytes_total").add(n);
+ * </pre>
+ * 同名同标签返回同一个实例；所有操作都是无锁的，可以在热路径上调用。
+ */
+public final class Metrics {
+    private static final Metrics GLOBAL = new Metrics();
+    private static final ObjectName JMX_NAME = objectName("com.example.geoserver:type=PublishMetrics");
+
+    // 直方图桶上界（毫秒），覆盖本地解压到大文件上传
+    private static final long[] BUCKETS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final long createdNanos = System.nanoTime();
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String... labels) {
+        return counters.computeIfAbsent(key(name, labels), k -> new Counter());
+    }
+
+    /** 可增可减的仪表（例如在途请求数）。 */
+    public Gauge gauge(String name, String... labels) {
+        return gauges.computeIfAbsent(key(name, labels), k -> new Gauge(null));
+    }
+
+    /** 读取时才计算的仪表；同名再次注册时替换取值函数。 */
+    public Gauge gauge(String name, LongSupplier supplier, String... labels) {
+        Gauge g = new Gauge(supplier);
+        gauges.put(key(name, labels), g);
+        return g;
+    }
+
+    public Timer timer(String name, String... labels) {
+        return timers.computeIfAbsent(key(name, labels), k -> new Timer());
+    }
+
+    /** 清空所有指标（基准测试多轮之间使用）。 */
+    public void reset() {
+        counters.clear();
+        gauges.clear();
+        timers.clear();
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() { value.increment(); }
+
+        public void add(long n) { value.add(n); }
+
+        public long get() { return value.sum(); }
+    }
+
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private final LongSupplier supplier;
+
+        Gauge(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        public long inc() { return value.incrementAndGet(); }
+
+        public long dec() { return value.decrementAndGet(); }
+
+        public void set(long v) { value.set(v); }
+
+        public long get() { return supplier != null ? supplier.getAsLong() : value.get(); }
+    }
+
+    /**
+     * 固定桶延迟直方图：按 {@link #BUCKETS_MILLIS} 计数，另记总数、总耗时与最大值。
+     * 分位数由桶边界估算（取所在桶上界），足以判断瓶颈在哪一段。
+     */
+    public static final class Timer {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS_MILLIS.length + 1]; // 最后一个为 +Inf
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Timer() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void record(long nanos) {
+            int i = 0;
+            while (i < BUCKETS_MILLIS.length && nanos > TimeUnit.MILLISECONDS.toNanos(BUCKETS_MILLIS[i])) i++;
+            buckets[i].increment();
+            count.increment();
+            sumNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        /** 记录从 startNanos（System.nanoTime()）到现在的耗时。 */
+        public long recordSince(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            record(elapsed);
+            return elapsed;
+        }
+
+        public long count() { return count.sum(); }
+
+        public double sumSeconds() { return sumNanos.sum() / 1e9; }
+
+        public double maxMillis() { return maxNanos.get() / 1e6; }
+
+        public double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : sumNanos.sum() / 1e6 / n;
+        }
+
+        /** q 取 0~1；落在 +Inf 桶时返回观测到的最大值。 */
+        public double percentileMillis(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n), seen = 0;
+            for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) return BUCKETS_MILLIS[i];
+            }
+            return maxMillis();
+        }
+    }
+
+    // ---- 导出 ----
+
+    /** Prometheus 文本格式（text/plain; version=0.0.4）。 */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        String lastType = null;
+        for (Map.Entry<String, Counter> e : new TreeMap<>(counters).entrySet()) {
+            lastType = typeLine(sb, e.getKey(), "counter", lastType);
+            sb.append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Gauge> e : new TreeMap<>(gauges).entrySet()) {
+            lastType = typeLine(sb, e.getKey(), "gauge", lastType);
+            sb.append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Timer> e : new TreeMap<>(timers).entrySet()) {
+            lastType = typeLine(sb, e.getKey(), "histogram", lastType);
+            String name = baseName(e.getKey());
+            String labels = labels(e.getKey());
+            Timer t = e.getValue();
+            long cumulative = 0;
+            for (int i = 0; i <= BUCKETS_MILLIS.length; i++) {
+                cumulative += t.buckets[i].sum();
+                String le = i < BUCKETS_MILLIS.length ? formatSeconds(BUCKETS_MILLIS[i] / 1000.0) : "+Inf";
+                sb.append(name).append("_bucket{").append(labels).append(labels.isEmpty() ? "" : ",")
+                        .append("le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            sb.append(name).append("_sum").append(suffix).append(' ').append(formatSeconds(t.sumSeconds())).append('\n');
+            sb.append(name).append("_count").append(suffix).append(' ').append(t.count()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** JSON 快照：计数器 / 仪表为数值，直方图给出 count、mean、p50/p95/p99、max（毫秒）。 */
+    public String toJson() {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode root = mapper.createObjectNode();
+        root.put("uptimeSeconds", (System.nanoTime() - createdNanos) / 1e9);
+        ObjectNode c = root.putObject("counters");
+        new TreeMap<>(counters).forEach((k, v) -> c.put(k, v.get()));
+        ObjectNode g = root.putObject("gauges");
+        new TreeMap<>(gauges).forEach((k, v) -> g.put(k, v.get()));
+        ArrayNode h = root.putArray("timers");
+        new TreeMap<>(timers).forEach((k, t) -> h.addObject()
+                .put("name", k)
+                .put("count", t.count())
+                .put("meanMs", round(t.meanMillis()))
+                .put("p50Ms", t.percentileMillis(0.50))
+                .put("p95Ms", t.percentileMillis(0.95))
+                .put("p99Ms", t.percentileMillis(0.99))
+                .put("maxMs", round(t.maxMillis()))
+                .put("totalSeconds", round(t.sumSeconds())));
+        try {
+            return mapper.writeValueAsString(root);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 按扩展名导出：.prom / .txt 为 Prometheus 文本，其余为 JSON。 */
+    public void writeTo(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        String text = name.endsWith(".prom") || name.endsWith(".txt") ? toPrometheus() : toJson();
+        if (file.toAbsolutePath().getParent() != null) Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    /** 控制台摘要：按总耗时排序的直方图，一眼看出时间花在哪一段。 */
+    public void printSummary() {
+        System.out.println("---- Metrics ----");
+        timers.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue().sumSeconds(), a.getValue().sumSeconds()))
+                .forEach(e -> {
+                    Timer t = e.getValue();
+                    System.out.printf("%-70s n=%-6d total=%8.2fs mean=%8.1fms p95=%7.0fms max=%8.1fms%n",
+                            e.getKey(), t.count(), t.sumSeconds(), t.meanMillis(), t.percentileMillis(0.95), t.maxMillis());
+                });
+        new TreeMap<>(counters).forEach((k, v) -> System.out.printf("%-70s %d%n", k, v.get()));
+    }
+
+    // ---- JMX ----
+
+    /** JMX 视图（jconsole / VisualVM 中 com.example.geoserver:type=PublishMetrics）。 */
+    public interface MetricsMXBean {
+        Map<String, Long> getCounters();
+
+        Map<String, Long> getGauges();
+
+        Map<String, Double> getP95Millis();
+
+        String getPrometheusText();
+
+        String getJson();
+    }
+
+    /** 把全局注册表注册到平台 MBeanServer；重复调用无副作用。 */
+    public static void registerJmx() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(JMX_NAME)) return;
+        Metrics m = GLOBAL;
+        MetricsMXBean bean = new MetricsMXBean() {
+            @Override
+            public Map<String, Long> getCounters() {
+                Map<String, Long> out = new TreeMap<>();
+                m.counters.forEach((k, v) -> out.put(k, v.get()));
+                return out;
+            }
+
+            @Override
+            public Map<String, Long> getGauges() {
+                Map<String, Long> out = new TreeMap<>();
+                m.gauges.forEach((k, v) -> out.put(k, v.get()));
+                return out;
+            }
+
+            @Override
+            public Map<String, Double> getP95Millis() {
+                Map<String, Double> out = new TreeMap<>();
+                m.timers.forEach((k, v) -> out.put(k, v.percentileMillis(0.95)));
+                return out;
+            }
+
+            @Override
+            public String getPrometheusText() { return m.toPrometheus(); }
+
+            @Override
+            public String getJson() { return m.toJson(); }
+        };
+        try {
+            server.registerMBean(new StandardMBean(bean, MetricsMXBean.class, true), JMX_NAME);
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // ---- 辅助 ----
+
+    // name{k="v",...}；标签按参数顺序
+    private static String key(String name, String... labels) {
+        if (labels.length == 0) return name;
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be key/value pairs: " + name);
+        StringBuilder sb = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"").append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String baseName(String key) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? key : key.substring(0, brace);
+    }
+
+    private static String labels(String key) {
+        int brace = key.indexOf('{');
+        return brace < 0 ? "" : key.substring(brace + 1, key.length() - 1);
+    }
+
+    // 同一指标名只输出一次 # TYPE
+    private static String typeLine(StringBuilder sb, String key, String type, String lastType) {
+        String name = baseName(key);
+        if (!name.equals(lastType)) sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return name;
+    }
+
+    private static String formatSeconds(double v) {
+        return Double.toString(v);
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000) / 1000.0;
+    }
+
+    private static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(name);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
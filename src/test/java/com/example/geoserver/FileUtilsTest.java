@@ -0,0 +1,182 @@
+//FileUtils：并行解压与串行结果一致（含 STORED 条目与修改时间）、增量解压清单、变化图层识别、旧 .qix 清理与 zip-slip 防护
+package com.example.geoserver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileUtilsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void secondExtractionSkipsUnchangedEntries() throws Exception {
+        Path zip = zip("data.zip", layers("a", "v1", "b", "v1"));
+        Path out = dir.resolve("out");
+
+        FileUtils.ExtractResult first = FileUtils.extractZipIncremental(zip, out, 2);
+        assertEquals(6, first.getWrittenEntries().size());
+        assertEquals(Set.of("a", "b"), first.getChangedLayers());
+        assertTrue(Files.isRegularFile(out.resolve(FileUtils.MANIFEST_NAME)));
+
+        FileUtils.ExtractResult second = FileUtils.extractZipIncremental(zip, out, 2);
+        assertEquals(0, second.getWrittenEntries().size());
+        assertEquals(6, second.getSkippedEntries());
+        assertEquals(Set.of(), second.getChangedLayers());
+    }
+
+    @Test
+    void onlyChangedLayerIsRewritten() throws Exception {
+        Path out = dir.resolve("out");
+        FileUtils.extractZipIncremental(zip("data.zip", layers("a", "v1", "b", "v1")), out, 2);
+
+        FileUtils.ExtractResult r = FileUtils.extractZipIncremental(zip("data.zip", layers("a", "v1", "b", "v2")), out, 2);
+
+        assertEquals(Set.of("b"), r.getChangedLayers());
+        assertEquals("b.dbf v2", Files.readString(out.resolve("sub/b.dbf")));
+        assertEquals("a.dbf v1", Files.readString(out.resolve("sub/a.dbf")));
+    }
+
+    @Test
+    void missingFileOnDiskIsExtractedAgain() throws Exception {
+        Path zip = zip("data.zip", layers("a", "v1", "b", "v1"));
+        Path out = dir.resolve("out");
+        FileUtils.extractZipIncremental(zip, out, 2);
+        Files.delete(out.resolve("sub/a.shx"));
+
+        FileUtils.ExtractResult r = FileUtils.extractZipIncremental(zip, out, 2);
+
+        assertEquals(java.util.List.of("sub/a.shx"), r.getWrittenEntries());
+        assertEquals(Set.of("a"), r.getChangedLayers());
+    }
+
+    @Test
+    void metadataEntriesBelongToTheirLayer() throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("x.shp.xml", "meta");
+        entries.put("x.cpg", "UTF-8");
+        FileUtils.ExtractResult r = FileUtils.extractZipIncremental(zip("m.zip", entries), dir.resolve("out"), 1);
+        assertEquals(Set.of("x"), r.getChangedLayers());
+    }
+
+    @Test
+    void rejectsEntriesOutsideTarget() throws Exception {
+        Path zip = zip("evil.zip", Map.of("../escape.txt", "x"));
+        assertThrows(IllegalStateException.class, () -> FileUtils.extractZipTo(zip, dir.resolve("out")));
+        assertThrows(IllegalStateException.class, () -> FileUtils.extractZipToParallel(zip, dir.resolve("out2"), 2));
+        assertThrows(IllegalStateException.class, () -> FileUtils.extractZipIncremental(zip, dir.resolve("out3"), 1));
+        assertTrue(Files.notExists(dir.resolve("escape.txt")));
+    }
+
+    @Test
+    void parallelAndSerialExtractionMatch() throws Exception {
+        Path zip = zip("data.zip", layers("a", "v1", "b", "v1"));
+        FileUtils.extractZipTo(zip, dir.resolve("serial"));
+        FileUtils.extractZipToParallel(zip, dir.resolve("parallel"), 3);
+        for (String name : layers("a", "v1", "b", "v1").keySet()) {
+            assertEquals(Files.readString(dir.resolve("serial").resolve(name)), Files.readString(dir.resolve("parallel").resolve(name)));
+        }
+    }
+
+    @Test
+    void storedEntriesAreCopiedAndKeepModifiedTime() throws Exception {
+        byte[] big = new byte[3 << 20];
+        new Random(1).nextBytes(big);
+        byte[] small = "roads.dbf".getBytes(StandardCharsets.UTF_8);
+        FileTime mtime = FileTime.fromMillis(1_500_000_000_000L);
+        Path zip = dir.resolve("stored.zip");
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            putStored(zos, "sub/roads.shp", big, mtime);
+            ZipEntry deflated = new ZipEntry("sub/roads.shx");
+            deflated.setLastModifiedTime(mtime);
+            zos.putNextEntry(deflated);
+            zos.write(big, 0, 4096);
+            zos.closeEntry();
+            putStored(zos, "sub/roads.dbf", small, mtime);
+        }
+
+        for (String mode : new String[] {"serial", "parallel"}) {
+            Path out = dir.resolve(mode);
+            if (mode.equals("serial")) FileUtils.extractZipTo(zip, out);
+            else FileUtils.extractZipToParallel(zip, out, 3);
+            assertArrayEquals(big, Files.readAllBytes(out.resolve("sub/roads.shp")), mode);
+            assertArrayEquals(Arrays.copyOf(big, 4096), Files.readAllBytes(out.resolve("sub/roads.shx")), mode);
+            assertArrayEquals(small, Files.readAllBytes(out.resolve("sub/roads.dbf")), mode);
+            for (String ext : new String[] {"shp", "shx", "dbf"}) {
+                assertEquals(mtime.toMillis(), Files.getLastModifiedTime(out.resolve("sub/roads." + ext)).toMillis(), mode + " " + ext);
+            }
+        }
+    }
+
+    @Test
+    void rewrittenLayerDropsOlderLookingIndex() throws Exception {
+        Path out = dir.resolve("out");
+        FileUtils.extractZipIncremental(zip("data.zip", layers("a", "v1", "b", "v1")), out, 2);
+        // 上次预检写的索引比（保留了 zip 时间的）组成文件新
+        Files.writeString(out.resolve("sub/a.qix"), "index");
+        Files.writeString(out.resolve("sub/b.qix"), "index");
+
+        FileUtils.extractZipIncremental(zip("data.zip", layers("a", "v1", "b", "v2")), out, 2);
+
+        assertTrue(Files.isRegularFile(out.resolve("sub/a.qix")));
+        assertTrue(Files.notExists(out.resolve("sub/b.qix")));
+    }
+
+    private static void putStored(ZipOutputStream zos, String name, byte[] data, FileTime mtime) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        entry.setCrc(crc.getValue());
+        entry.setLastModifiedTime(mtime); // 写入扩展时间戳 extra 字段，本地头之后的数据偏移随之后移
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private static Map<String, String> layers(String a, String aVersion, String b, String bVersion) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String ext : new String[] {"shp", "shx", "dbf"}) {
+            entries.put("sub/" + a + "." + ext, a + "." + ext + " " + aVersion);
+            entries.put("sub/" + b + "." + ext, b + "." + ext + " " + bVersion);
+        }
+        return entries;
+    }
+
+    // 固定条目时间，内容相同的 zip 重新打包后清单指纹不变
+    private Path zip(String name, Map<String, String> entries) throws IOException {
+        Path zip = dir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                ZipEntry entry = new ZipEntry(e.getKey());
+                entry.setLastModifiedTime(FileTime.fromMillis(1_600_000_000_000L));
+                zos.putNextEntry(entry);
+                zos.write(e.getValue().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return zip;
+    }
+}
@@ -0,0 +1,127 @@
+//GeoServerClient：同一 workspace 的快照共享图层集合；带本地 bbox 发布时的 latLonBoundingBox
+package com.example.geoserver;
+
+import com.example.geoserver.model.BoundingBox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoServerClientTest {
+
+    private RestStub stub;
+    private GeoServerClient gs;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new RestStub()
+                .on("GET /geoserver/rest/workspaces/ws/datastores/a/featuretypes.json", 200,
+                        "{\"featureTypes\":{\"featureType\":[{\"name\":\"roads\"}]}}")
+                .on("GET /geoserver/rest/workspaces/ws/datastores/b/featuretypes.json", 200, "{\"featureTypes\":\"\"}")
+                .on("GET /geoserver/rest/layers.json", 200,
+                        "{\"layers\":{\"layer\":[{\"name\":\"ws:roads\"},{\"name\":\"other:rivers\"}]}}")
+                .on("POST /geoserver/rest/workspaces/ws/datastores/b/featuretypes", 201, "")
+                .on("POST /geoserver/rest/workspaces/ws/datastores/c/featuretypes", 201, "")
+                .on("PUT /geoserver/rest/workspaces/ws/datastores/c/featuretypes/utm.json", 200, "");
+        gs = new GeoServerClient(stub.baseUrl(), "admin", "geoserver");
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void snapshotAnswersExistenceWithoutRequests() throws Exception {
+        CatalogSnapshot a = gs.loadCatalog("ws", "a");
+        long before = stub.requests().size();
+
+        assertTrue(gs.featureTypeExists("ws", "a", "roads"));
+        assertFalse(gs.featureTypeExists("ws", "a", "rivers"));
+        assertTrue(gs.layerExists("ws", "roads"));
+        assertFalse(gs.layerExists("ws", "rivers"));
+        assertTrue(gs.layerExistsAsync("ws", "roads").join());
+        assertEquals(before, stub.requests().size());
+        assertEquals(1, a.layerCount());
+    }
+
+    @Test
+    void layerPublishedInAnotherStoreIsVisibleToEverySnapshot() throws Exception {
+        CatalogSnapshot a = gs.loadCatalog("ws", "a");
+        CatalogSnapshot b = gs.loadCatalog("ws", "b");
+
+        assertTrue(gs.publishFeatureType("ws", "b", "parcels", "parcels", null));
+
+        assertTrue(a.hasLayer("parcels"));
+        assertTrue(b.hasLayer("parcels"));
+        assertTrue(b.hasFeatureType("parcels"));
+        assertFalse(a.hasFeatureType("parcels"));
+        assertTrue(gs.layerExists("ws", "parcels"));
+    }
+
+    @Test
+    void publishInStoreWithoutSnapshotUpdatesWorkspaceLayers() throws Exception {
+        gs.loadCatalog("ws", "a");
+
+        assertTrue(gs.publishFeatureTypeAsync("ws", "c", "wells", "wells", null).join());
+
+        assertTrue(gs.layerExists("ws", "wells"));
+        assertEquals(0, stub.count("GET /geoserver/rest/layers/"));
+    }
+
+    @Test
+    void localBBoxIsSentWithLatLonBounds() throws Exception {
+        assertTrue(gs.publishFeatureType("ws", "c", "geo", "geo", null, new BoundingBox(116, 39, 117, 40), "EPSG:4326"));
+        String body = stub.bodies().get(stub.bodies().size() - 1);
+        assertTrue(body.contains("\"nativeBoundingBox\":{\"minx\":116.0,\"miny\":39.0,\"maxx\":117.0,\"maxy\":40.0,\"crs\":\"EPSG:4326\"}"), body);
+        assertTrue(body.contains("\"latLonBoundingBox\":{\"minx\":116.0,\"miny\":39.0,\"maxx\":117.0,\"maxy\":40.0,\"crs\":\"EPSG:4326\"}"), body);
+        assertEquals(0, stub.count("PUT "));
+
+        assertTrue(gs.publishFeatureTypeAsync("ws", "c", "merc", "merc", null,
+                new BoundingBox(-20037508.342789244, 0, 20037508.342789244, 20037508.342789244), "EPSG:3857").join());
+        body = stub.bodies().get(stub.bodies().size() - 1);
+        assertTrue(body.contains("\"latLonBoundingBox\":{\"minx\":-180.0,\"miny\":0.0,\"maxx\":180.0,\"maxy\":85.0511287798066"), body);
+        assertEquals(0, stub.count("PUT "));
+    }
+
+    @Test
+    void otherCrsDerivesLatLonOnServer() throws Exception {
+        assertTrue(gs.publishFeatureType("ws", "c", "utm", "utm", null, new BoundingBox(400000, 4300000, 500000, 4400000), "EPSG:32650"));
+        assertFalse(stub.bodies().get(stub.bodies().size() - 2).contains("latLonBoundingBox"));
+        assertEquals(1, stub.count("PUT /geoserver/rest/workspaces/ws/datastores/c/featuretypes/utm.json?recalculate=latlonbbox"));
+
+        // 服务端拒绝 recalc 时整体视为失败，但 featureType 已创建
+        gs.loadCatalog("ws", "b");
+        assertFalse(gs.publishFeatureTypeAsync("ws", "b", "utm2", "utm2", null, new BoundingBox(0, 0, 1, 1), null).join());
+        assertTrue(gs.featureTypeExists("ws", "b", "utm2"));
+    }
+
+    @Test
+    void fetchAndClusterDiffDoNotInstallSnapshots() throws Exception {
+        stub.on("GET /geoserver/rest/workspaces/ws/styles.json", 200, "{\"styles\":\"\"}");
+        CatalogSnapshot fetched = gs.fetchCatalog("ws", "a");
+        assertTrue(fetched.hasFeatureType("roads"));
+        assertTrue(fetched.hasLayer("roads"));
+
+        GeoServerCluster.CatalogDiff diff = new GeoServerCluster(List.of(gs)).diff(List.of("ws/a"));
+        assertTrue(diff.isConsistent(), diff.getDifferences().toString());
+
+        // 没有安装快照：exists 检查仍然逐个请求
+        assertFalse(gs.featureTypeExists("ws", "a", "roads"));
+        assertEquals(1, stub.count("GET /geoserver/rest/workspaces/ws/datastores/a/featuretypes/roads.json"));
+    }
+
+    @Test
+    void invalidatingLastSnapshotFallsBackToRequests() throws Exception {
+        gs.loadCatalog("ws", "a");
+        gs.invalidateCatalog("ws", "a");
+
+        assertFalse(gs.layerExists("ws", "roads")); // 桩上没有 layers/ws:roads.json
+        assertEquals(1, stub.count("GET /geoserver/rest/layers/ws:roads.json"));
+    }
+}
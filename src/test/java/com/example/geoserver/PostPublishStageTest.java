@@ -0,0 +1,69 @@
+//PostPublishStage：只预切新发布的图层，数据变化的已有图层 reseed，未变化的跳过
+package com.example.geoserver;
+
+import com.example.geoserver.server.PostPublishStage;
+import com.example.geoserver.server.PublishResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostPublishStageTest {
+
+    private RestStub stub;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new RestStub();
+        for (String layer : new String[] {"fresh", "edited", "same", "journaled"}) {
+            stub.on("POST /geoserver/gwc/rest/seed/ws:" + layer + ".json", 200, "")
+                    .on("GET /geoserver/gwc/rest/seed/ws:" + layer + ".json", 200, "{\"long-array-array\":[]}");
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void seedsOnlyChangedLayers() {
+        PostPublishStage.Settings settings = PostPublishStage.Settings.defaults();
+        settings.seed = true;
+        settings.pollInterval = Duration.ofMillis(10);
+        PostPublishStage stage = new PostPublishStage(new GeoServerClient(stub.baseUrl(), "admin", "geoserver"), settings);
+
+        stage.run(List.of(
+                result("fresh", PublishResult.Status.PUBLISHED, true),
+                result("edited", PublishResult.Status.EXISTS, true),
+                result("same", PublishResult.Status.EXISTS, false),
+                result("journaled", PublishResult.Status.EXISTS, false),
+                result("broken", PublishResult.Status.FAILED, false)));
+
+        assertEquals(1, stub.count("POST /geoserver/gwc/rest/seed/ws:fresh.json"));
+        assertEquals(1, stub.count("POST /geoserver/gwc/rest/seed/ws:edited.json"));
+        assertEquals(0, stub.count("POST /geoserver/gwc/rest/seed/ws:same.json"));
+        assertEquals(0, stub.count("POST /geoserver/gwc/rest/seed/ws:journaled.json"));
+        assertEquals(0, stub.count("POST /geoserver/gwc/rest/seed/ws:broken.json"));
+        assertTrue(body("ws:fresh").contains("\"type\":\"seed\""), body("ws:fresh"));
+        assertTrue(body("ws:edited").contains("\"type\":\"reseed\""), body("ws:edited"));
+    }
+
+    private String body(String layer) {
+        List<String> requests = stub.requests();
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i).equals("POST /geoserver/gwc/rest/seed/" + layer + ".json")) return stub.bodies().get(i);
+        }
+        return "";
+    }
+
+    private static PublishResult result(String layer, PublishResult.Status status, boolean changed) {
+        return new PublishResult("ws", "s", layer, status, "", null, 0, Map.of(), changed);
+    }
+}
@@ -0,0 +1,153 @@
+//PublishService：bbox / 样式被 GeoServer 拒绝时不记录 BBOX / DONE，下次运行从未完成的阶段继续，并保留新建 / 已存在的区别；
+//日志中的 DONE 只跳过未变化的图层，一轮没有失败后被清除
+package com.example.geoserver;
+
+import com.example.geoserver.server.LayerJob;
+import com.example.geoserver.server.PublishJournal;
+import com.example.geoserver.server.PublishResult;
+import com.example.geoserver.server.PublishService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishServiceTest {
+
+    private static final String FT = "/geoserver/rest/workspaces/ws/datastores/s/featuretypes";
+
+    @TempDir
+    Path dir;
+
+    private RestStub stub;
+    private PublishJournal journal;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new RestStub()
+                .on("GET " + FT + ".json", 200, "{\"featureTypes\":{\"featureType\":[{\"name\":\"roads\"}]}}")
+                .on("GET /geoserver/rest/layers.json", 200, "{\"layers\":\"\"}")
+                .on("POST " + FT, 201, "");
+        journal = PublishJournal.open(dir.resolve("journal.log"));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        journal.close();
+        stub.close();
+    }
+
+    @Test
+    void rejectedBBoxUpdateLeavesStageOpen() throws Exception {
+        LayerJob job = job("roads", null);
+        stub.on("PUT " + FT + "/roads.json", 404, "");
+
+        PublishResult first = publish(job);
+        assertEquals(PublishResult.Status.FAILED, first.getStatus());
+        assertTrue(first.getMessage().contains("bbox update rejected"), first.getMessage());
+        assertTrue(journal.state(job).has(PublishJournal.Stage.PUBLISHED));
+        assertFalse(journal.state(job).has(PublishJournal.Stage.BBOX));
+        assertFalse(journal.isDone(job));
+
+        stub.on("PUT " + FT + "/roads.json", 200, "");
+        PublishResult second = publish(job);
+        // roads 原本就在 datastore 中：续跑后仍是已存在、已变化的图层（预切时 reseed）
+        assertEquals(PublishResult.Status.EXISTS, second.getStatus());
+        assertTrue(second.isChanged());
+        assertFalse(journal.state(job).has(PublishJournal.Stage.CREATED));
+        assertEquals("resumed from journal", second.getMessage());
+        assertTrue(journal.state(job).has(PublishJournal.Stage.BBOX));
+        assertTrue(journal.isDone(job));
+        assertEquals(2, stub.count("PUT " + FT + "/roads.json"));
+    }
+
+    @Test
+    void rejectedRecalcLeavesStageOpen() throws Exception {
+        LayerJob job = new LayerJob("ws", "s", "roads", null, true, null); // 没有本地文件，由服务端 recalc
+        stub.on("PUT " + FT + "/roads.json", 500, "");
+
+        assertEquals(PublishResult.Status.FAILED, publish(job).getStatus());
+        assertFalse(journal.state(job).has(PublishJournal.Stage.BBOX));
+        assertFalse(journal.isDone(job));
+    }
+
+    @Test
+    void styleNotAppliedIsRetriedNextRun() throws Exception {
+        LayerJob job = job("parcels", "parcel_style").withChanged(false); // zip 中未变化的图层
+        stub.on("PUT /geoserver/rest/layers/ws:parcels", 404, "");
+
+        PublishResult first = publish(job);
+        assertEquals(PublishResult.Status.PUBLISHED, first.getStatus());
+        assertEquals("published, style 'parcel_style' not applied", first.getMessage());
+        assertTrue(journal.state(job).has(PublishJournal.Stage.BBOX));
+        assertFalse(journal.state(job).has(PublishJournal.Stage.STYLED));
+        assertFalse(journal.isDone(job));
+
+        stub.on("PUT /geoserver/rest/layers/ws:parcels", 200, "");
+        PublishResult second = publish(job);
+        assertEquals("resumed from journal", second.getMessage());
+        // 上次运行新建的图层：续跑后仍是新图层（预切时 seed）
+        assertEquals(PublishResult.Status.PUBLISHED, second.getStatus());
+        assertTrue(journal.isDone(job));
+        assertEquals(1, stub.count("POST " + FT));
+
+        PublishResult third = publish(job);
+        assertEquals(PublishResult.Status.EXISTS, third.getStatus());
+        assertFalse(third.isChanged()); // 日志中已完成：发布后阶段不再预切
+        assertEquals(2, stub.count("PUT /geoserver/rest/layers/ws:parcels"));
+    }
+
+    @Test
+    void folderInputRechecksDoneLayers() throws Exception {
+        LayerJob job = job("roads", null); // 目录输入：changed 恒为 true
+        stub.on("PUT " + FT + "/roads.json", 200, "");
+        journal.record(job, PublishJournal.Stage.PUBLISHED);
+        journal.record(job, PublishJournal.Stage.DONE);
+
+        PublishResult result = publish(job);
+        assertEquals(PublishResult.Status.EXISTS, result.getStatus());
+        assertEquals("featureType exists", result.getMessage());
+        assertTrue(result.isChanged());
+        assertEquals(1, stub.count("PUT " + FT + "/roads.json"));
+    }
+
+    @Test
+    void cleanRunForgetsCompletedLayers() throws Exception {
+        LayerJob done = job("parcels", null).withChanged(false);
+        LayerJob broken = job("roads", null);
+        journal.record(done, PublishJournal.Stage.PUBLISHED);
+        journal.record(done, PublishJournal.Stage.DONE);
+
+        try (PublishService service = new PublishService(new GeoServerClient(stub.baseUrl(), "admin", "geoserver"), 2, journal)) {
+            stub.on("PUT " + FT + "/roads.json", 404, "");
+            List<PublishResult> failed = service.publishAll(List.of(done, broken));
+            assertEquals("completed in a previous run (journal)", failed.get(0).getMessage());
+            service.endRun(failed);
+            assertTrue(journal.isDone(done)); // 有失败：保留，下次重跑继续跳过
+
+            stub.on("PUT " + FT + "/roads.json", 200, "");
+            List<PublishResult> clean = service.publishAll(List.of(done, broken));
+            assertEquals("resumed from journal", clean.get(1).getMessage());
+            service.endRun(clean);
+            assertFalse(journal.isDone(done));
+            assertFalse(journal.isDone(broken));
+        }
+    }
+
+    private PublishResult publish(LayerJob job) {
+        try (PublishService service = new PublishService(new GeoServerClient(stub.baseUrl(), "admin", "geoserver"), 2, journal)) {
+            return service.publishAll(List.of(job)).get(0);
+        }
+    }
+
+    private LayerJob job(String layer, String style) throws Exception {
+        Path shp = ShapefileFixtures.write(dir, layer, 5, new double[][] {{116, 39, 117, 40}});
+        return new LayerJob("ws", "s", layer, style, true, shp);
+    }
+}
@@ -0,0 +1,178 @@
+//QuadTreeIndex：按 .qix 格式解析写出的文件，核对结构、每个记录号恰好出现一次、窗口查询与逐条比较一致
+package com.example.geoserver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuadTreeIndexTest {
+
+    @TempDir
+    Path dir;
+
+    /** 解析出的节点：范围、记录号、子节点、深度。 */
+    private static final class Node {
+        double minx, miny, maxx, maxy;
+        int[] ids;
+        final List<Node> children = new ArrayList<>();
+        int depth;
+    }
+
+    @Test
+    void polygonsRoundTrip() throws Exception {
+        Random random = new Random(42);
+        double[][] boxes = new double[3000][];
+        for (int i = 0; i < boxes.length; i++) {
+            if (i % 97 == 0) continue; // 空记录不进索引
+            double x = random.nextDouble() * 1000, y = random.nextDouble() * 500;
+            // 大部分是小矩形，少数跨越很大范围（只能留在上层节点）
+            double w = i % 50 == 0 ? random.nextDouble() * 800 : random.nextDouble() * 5;
+            double h = i % 50 == 0 ? random.nextDouble() * 400 : random.nextDouble() * 5;
+            boxes[i] = new double[] {x, y, x + w, y + h};
+        }
+        verify(ShapefileFixtures.write(dir, "polygons", 5, boxes), boxes, random);
+    }
+
+    @Test
+    void pointsStackedOnOneCoordinateRespectMaxDepth() throws Exception {
+        Random random = new Random(7);
+        double[][] boxes = new double[1500][];
+        for (int i = 0; i < boxes.length; i++) {
+            // 三分之一的点重合，迫使它们停在 maxDepth
+            double x = i % 3 == 0 ? 10 : random.nextDouble() * 100, y = i % 3 == 0 ? 20 : random.nextDouble() * 100;
+            boxes[i] = new double[] {x, y, x, y};
+        }
+        verify(ShapefileFixtures.write(dir, "points", 1, boxes), boxes, random);
+    }
+
+    @Test
+    void emptyLayerWritesRootOnly() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "empty", 5, new double[][] {null, null});
+        QuadTreeIndex index = QuadTreeIndex.build(shp, QuadTreeIndex.DEFAULT_LEAF_SIZE);
+        Path qix = QuadTreeIndex.qixPath(shp);
+        index.write(qix);
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(qix)).order(ByteOrder.BIG_ENDIAN);
+        b.position(8);
+        assertEquals(2, b.getInt());
+        assertEquals(index.getMaxDepth(), b.getInt());
+        Node root = readNode(b, 1);
+        assertEquals(0, root.ids.length);
+        assertTrue(root.children.isEmpty());
+        assertFalse(b.hasRemaining());
+    }
+
+    @Test
+    void freshnessFollowsShpAndShx() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "fresh", 5, new double[][] {{0, 0, 1, 1}});
+        assertFalse(QuadTreeIndex.isFresh(shp));
+        QuadTreeIndex.build(shp, QuadTreeIndex.DEFAULT_LEAF_SIZE).write(QuadTreeIndex.qixPath(shp));
+        assertTrue(QuadTreeIndex.isFresh(shp));
+        Files.setLastModifiedTime(shp.resolveSibling("fresh.shx"),
+                FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertFalse(QuadTreeIndex.isFresh(shp));
+    }
+
+    private void verify(Path shp, double[][] boxes, Random random) throws Exception {
+        QuadTreeIndex index = QuadTreeIndex.build(shp, QuadTreeIndex.DEFAULT_LEAF_SIZE);
+        Path qix = QuadTreeIndex.qixPath(shp);
+        index.write(qix);
+
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(qix)).order(ByteOrder.BIG_ENDIAN);
+        byte[] magic = new byte[3];
+        b.get(magic);
+        assertEquals("SQT", new String(magic, StandardCharsets.US_ASCII));
+        assertEquals(2, b.get()); // 新格式、大端
+        assertEquals(1, b.get());
+        b.position(b.position() + 3);
+        assertEquals(boxes.length, b.getInt());
+        int maxDepth = b.getInt();
+        assertEquals(index.getMaxDepth(), maxDepth);
+        Node root = readNode(b, 1);
+        assertFalse(b.hasRemaining(), "trailing bytes after root");
+
+        // 每个非空记录恰好出现一次，且位于一个能容纳它的节点中
+        int[] seen = new int[boxes.length];
+        List<Node> all = new ArrayList<>();
+        collect(root, all);
+        for (Node n : all) {
+            assertTrue(n.depth <= maxDepth, "depth " + n.depth);
+            for (int id : n.ids) {
+                seen[id]++;
+                double[] box = boxes[id];
+                assertTrue(box != null, "null record " + id + " indexed");
+                assertTrue(n.minx <= box[0] && box[2] <= n.maxx && n.miny <= box[1] && box[3] <= n.maxy,
+                        "record " + id + " outside its node");
+            }
+            for (Node c : n.children) {
+                assertTrue(n.minx <= c.minx && c.maxx <= n.maxx && n.miny <= c.miny && c.maxy <= n.maxy, "child outside parent");
+            }
+        }
+        for (int id = 0; id < boxes.length; id++) assertEquals(boxes[id] == null ? 0 : 1, seen[id], "record " + id);
+
+        // 与 GeoTools 的读取方式相同：节点范围不相交时跳过整个子树
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 1000, y = random.nextDouble() * 500;
+            double[] window = {x, y, x + random.nextDouble() * 100, y + random.nextDouble() * 100};
+            Set<Integer> expected = new TreeSet<>();
+            for (int id = 0; id < boxes.length; id++) {
+                if (boxes[id] != null && intersects(boxes[id], window)) expected.add(id);
+            }
+            Set<Integer> found = new TreeSet<>();
+            query(root, window, boxes, found);
+            assertEquals(expected, found, "window " + Arrays.toString(window));
+        }
+    }
+
+    private static Node readNode(ByteBuffer b, int depth) {
+        Node n = new Node();
+        n.depth = depth;
+        int subtreeBytes = b.getInt();
+        n.minx = b.getDouble();
+        n.miny = b.getDouble();
+        n.maxx = b.getDouble();
+        n.maxy = b.getDouble();
+        n.ids = new int[b.getInt()];
+        for (int i = 0; i < n.ids.length; i++) n.ids[i] = b.getInt();
+        int children = b.getInt();
+        int start = b.position();
+        for (int i = 0; i < children; i++) n.children.add(readNode(b, depth + 1));
+        assertEquals(subtreeBytes, b.position() - start, "subtree size of node at depth " + depth);
+        // 没有记录的中间节点没有意义，只有根可以为空
+        if (depth > 1) assertTrue(n.ids.length > 0 || children > 0, "empty node at depth " + depth);
+        assertTrue(children <= 4);
+        return n;
+    }
+
+    private static void collect(Node n, List<Node> out) {
+        out.add(n);
+        for (Node c : n.children) collect(c, out);
+    }
+
+    private static void query(Node n, double[] window, double[][] boxes, Set<Integer> found) {
+        if (!intersects(new double[] {n.minx, n.miny, n.maxx, n.maxy}, window)) return;
+        for (int id : n.ids) {
+            if (intersects(boxes[id], window)) found.add(id);
+        }
+        for (Node c : n.children) query(c, window, boxes, found);
+    }
+
+    private static boolean intersects(double[] a, double[] b) {
+        return a[0] <= b[2] && b[0] <= a[2] && a[1] <= b[3] && b[1] <= a[3];
+    }
+}
@@ -0,0 +1,71 @@
+//测试用的最小 REST 桩：按 "方法 路径" 返回固定状态码与响应体，并记录收到的请求
+package com.example.geoserver;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 路由键为 "GET /rest/layers.json" 这样的方法加路径（不含查询串）；没有匹配的路由返回 404。
+ * 收到的请求按 "方法 路径?查询串" 记入 {@link #requests()}，请求体记入 {@link #bodies()}。
+ */
+public final class RestStub implements AutoCloseable {
+    private final HttpServer server;
+    private final Map<String, Object[]> routes = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+
+    public RestStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String key = exchange.getRequestMethod() + " " + path;
+            requests.add(key + (query == null ? "" : "?" + query));
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Object[] route = routes.getOrDefault(key, new Object[] {404, ""});
+            byte[] body = ((String) route[1]).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders((Integer) route[0], body.length == 0 ? -1 : body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    public RestStub on(String methodAndPath, int status, String body) {
+        routes.put(methodAndPath, new Object[] {status, body});
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/geoserver";
+    }
+
+    public List<String> requests() {
+        return requests;
+    }
+
+    public List<String> bodies() {
+        return bodies;
+    }
+
+    /** 以 prefix 开头的请求数。 */
+    public long count(String prefix) {
+        return requests.stream().filter(r -> r.startsWith(prefix)).count();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,115 @@
+//测试用的小型 shapefile 生成器：按规范写出 .shp/.shx/.dbf/.prj
+package com.example.geoserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 每条记录由外包框 {minx, miny, maxx, maxy} 给出：shapeType 1 写成点（取 minx/miny），
+ * 5 写成矩形面；null 元素写成空记录（type 0）。.dbf 只有一个数字字段 ID。
+ */
+public final class ShapefileFixtures {
+    private ShapefileFixtures() {}
+
+    public static final String WGS84_PRJ = "GEOGCS[\"GCS_WGS_1984\",DATUM[\"D_WGS_1984\",SPHEROID[\"WGS_1984\",6378137.0,298.257223563]],"
+            + "PRIMEM[\"Greenwich\",0.0],UNIT[\"Degree\",0.0174532925199433]]";
+
+    public static Path write(Path dir, String name, int shapeType, double[][] boxes) throws IOException {
+        return write(dir, name, shapeType, boxes, boxes.length);
+    }
+
+    /** dbfRecords 与记录数不同时用于构造 .dbf 不一致的数据。返回 .shp 路径。 */
+    public static Path write(Path dir, String name, int shapeType, double[][] boxes, int dbfRecords) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteBuffer index = ByteBuffer.allocate(8 * boxes.length);
+        double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+        double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+        int offset = 100;
+        for (int i = 0; i < boxes.length; i++) {
+            byte[] content = content(shapeType, boxes[i]);
+            ByteBuffer head = ByteBuffer.allocate(8);
+            head.putInt(i + 1).putInt(content.length / 2);
+            records.write(head.array());
+            records.write(content);
+            index.putInt(offset / 2).putInt(content.length / 2);
+            offset += 8 + content.length;
+            double[] b = boxes[i];
+            if (b == null) continue;
+            minx = Math.min(minx, b[0]);
+            miny = Math.min(miny, b[1]);
+            maxx = Math.max(maxx, shapeType == 1 ? b[0] : b[2]);
+            maxy = Math.max(maxy, shapeType == 1 ? b[1] : b[3]);
+        }
+        if (minx > maxx) minx = miny = maxx = maxy = 0;
+        Path shp = dir.resolve(name + ".shp");
+        ByteArrayOutputStream shpBytes = new ByteArrayOutputStream();
+        shpBytes.write(header(offset, shapeType, minx, miny, maxx, maxy));
+        shpBytes.write(records.toByteArray());
+        Files.write(shp, shpBytes.toByteArray());
+
+        ByteArrayOutputStream shxBytes = new ByteArrayOutputStream();
+        shxBytes.write(header(100 + index.capacity(), shapeType, minx, miny, maxx, maxy));
+        shxBytes.write(index.array());
+        Files.write(dir.resolve(name + ".shx"), shxBytes.toByteArray());
+
+        Files.write(dir.resolve(name + ".dbf"), dbf(dbfRecords));
+        Files.writeString(dir.resolve(name + ".prj"), WGS84_PRJ, StandardCharsets.ISO_8859_1);
+        return shp;
+    }
+
+    private static byte[] content(int shapeType, double[] b) {
+        if (b == null) {
+            ByteBuffer r = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            return r.putInt(0).array();
+        }
+        if (shapeType == 1) {
+            ByteBuffer r = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            return r.putInt(1).putDouble(b[0]).putDouble(b[1]).array();
+        }
+        // 单个外环的矩形：bbox、1 个部件、5 个点
+        ByteBuffer r = ByteBuffer.allocate(4 + 32 + 4 + 4 + 4 + 5 * 16).order(ByteOrder.LITTLE_ENDIAN);
+        r.putInt(shapeType).putDouble(b[0]).putDouble(b[1]).putDouble(b[2]).putDouble(b[3]);
+        r.putInt(1).putInt(5).putInt(0);
+        double[][] ring = {{b[0], b[1]}, {b[0], b[3]}, {b[2], b[3]}, {b[2], b[1]}, {b[0], b[1]}};
+        for (double[] p : ring) r.putDouble(p[0]).putDouble(p[1]);
+        return r.array();
+    }
+
+    static byte[] header(int fileLength, int shapeType, double minx, double miny, double maxx, double maxy) {
+        ByteBuffer h = ByteBuffer.allocate(100);
+        h.putInt(9994);
+        h.position(24);
+        h.putInt(fileLength / 2);
+        h.order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(1000).putInt(shapeType).putDouble(minx).putDouble(miny).putDouble(maxx).putDouble(maxy);
+        return h.array();
+    }
+
+    // dBASE III：32 字节头 + 一个 N(10) 字段描述 + 0x0D，记录为删除标记 + 10 字符
+    static byte[] dbf(int records) {
+        int headerLength = 32 + 32 + 1;
+        int recordLength = 1 + 10;
+        ByteBuffer b = ByteBuffer.allocate(headerLength + records * recordLength + 1).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte) 3).put((byte) 124).put((byte) 1).put((byte) 1);
+        b.putInt(records).putShort((short) headerLength).putShort((short) recordLength);
+        b.position(32);
+        b.put("ID".getBytes(StandardCharsets.US_ASCII));
+        b.position(32 + 11);
+        b.put((byte) 'N');
+        b.position(32 + 16);
+        b.put((byte) 10);
+        b.position(64);
+        b.put((byte) 0x0D);
+        for (int i = 0; i < records; i++) {
+            b.put((byte) ' ');
+            b.put(String.format("%10d", i).getBytes(StandardCharsets.US_ASCII));
+        }
+        b.put((byte) 0x1A);
+        return b.array();
+    }
+}
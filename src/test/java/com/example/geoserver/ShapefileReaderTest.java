@@ -0,0 +1,82 @@
+//ShapefileReader：文件头、记录数与 .prj 识别
+package com.example.geoserver;
+
+import com.example.geoserver.model.ShapefileInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapefileReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsHeaderRecordCountAndSrs() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "roads", 5, new double[][] {{1, 2, 3, 4}, {-5, 0, 0, 10}, null});
+
+        ShapefileInfo info = ShapefileReader.read(shp).orElseThrow();
+
+        assertEquals(5, info.shapeType);
+        assertEquals(ShapefileInfo.GeometryKind.POLYGON, info.geometryKind);
+        assertEquals(3, info.recordCount);
+        assertEquals("EPSG:4326", info.srs);
+        assertEquals(-5, info.bbox.minx);
+        assertEquals(0, info.bbox.miny);
+        assertEquals(3, info.bbox.maxx);
+        assertEquals(10, info.bbox.maxy);
+    }
+
+    @Test
+    void missingShxLeavesRecordCountUnknown() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "pts", 1, new double[][] {{1, 1, 1, 1}});
+        Files.delete(dir.resolve("pts.shx"));
+
+        ShapefileInfo info = ShapefileReader.read(shp).orElseThrow();
+
+        assertEquals(-1, info.recordCount);
+        assertEquals(ShapefileInfo.GeometryKind.POINT, info.geometryKind);
+    }
+
+    @Test
+    void rejectsNonShapefiles() throws Exception {
+        Path bogus = dir.resolve("bogus.shp");
+        Files.write(bogus, new byte[100]);
+        Path tiny = dir.resolve("tiny.shp");
+        Files.write(tiny, new byte[10]);
+
+        assertFalse(ShapefileReader.read(bogus).isPresent());
+        assertFalse(ShapefileReader.read(tiny).isPresent());
+        assertFalse(ShapefileReader.read(dir.resolve("absent.shp")).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> ShapefileReader.readHeader(bogus));
+    }
+
+    @Test
+    void findsUpperCaseSiblings() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "UP", 1, new double[][] {{1, 1, 1, 1}, {2, 2, 2, 2}});
+        Files.move(dir.resolve("UP.shx"), dir.resolve("UP.SHX"));
+
+        assertTrue(ShapefileReader.sibling(shp, ".shx").getFileName().toString().equals("UP.SHX"));
+        assertEquals(2, ShapefileReader.read(shp).orElseThrow().recordCount);
+    }
+
+    @Test
+    void parsesPrj() {
+        assertEquals("EPSG:4326", ShapefileReader.parsePrj(ShapefileFixtures.WGS84_PRJ));
+        assertEquals("EPSG:4490", ShapefileReader.parsePrj("GEOGCS[\"China Geodetic Coordinate System 2000\",DATUM[\"CGCS_2000\"]]"));
+        assertEquals("EPSG:3857", ShapefileReader.parsePrj("PROJCS[\"WGS_1984_Web_Mercator_Auxiliary_Sphere\",GEOGCS[\"GCS_WGS_1984\"]]"));
+        // 最外层的 AUTHORITY 优先，内部基准面的不算
+        assertEquals("EPSG:32650", ShapefileReader.parsePrj(
+                "PROJCS[\"WGS 84 / UTM zone 50N\",GEOGCS[\"WGS 84\",AUTHORITY[\"EPSG\",\"4326\"]],AUTHORITY[\"EPSG\",\"32650\"]]"));
+        assertNull(ShapefileReader.parsePrj("PROJCS[\"Local\",GEOGCS[\"WGS 84\",AUTHORITY[\"EPSG\",\"4326\"]],UNIT[\"metre\",1]]"));
+        assertNull(ShapefileReader.parsePrj(" "));
+    }
+}
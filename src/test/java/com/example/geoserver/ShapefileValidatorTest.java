@@ -0,0 +1,136 @@
+//ShapefileValidator：合法数据逐条回调，损坏的 .shp/.shx/.dbf 给出可读的原因
+package com.example.geoserver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapefileValidatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void visitsNonNullRecordsInOrder() throws Exception {
+        double[][] boxes = {{0, 0, 1, 1}, null, {5, -2, 6, 3}};
+        Path shp = ShapefileFixtures.write(dir, "poly", 5, boxes);
+        List<double[]> seen = new ArrayList<>();
+
+        ShapefileValidator.Result r = ShapefileValidator.validate(shp,
+                (i, x0, y0, x1, y1) -> seen.add(new double[] {i, x0, y0, x1, y1}));
+
+        assertEquals(5, r.getShapeType());
+        assertEquals(3, r.getRecordCount());
+        assertEquals(2, seen.size());
+        assertArrayEquals(new double[] {0, 0, 0, 1, 1}, seen.get(0));
+        assertArrayEquals(new double[] {2, 5, -2, 6, 3}, seen.get(1));
+        assertEquals(0, r.getExtent().minx);
+        assertEquals(-2, r.getExtent().miny);
+        assertEquals(6, r.getExtent().maxx);
+        assertEquals(3, r.getExtent().maxy);
+    }
+
+    @Test
+    void pointsAndEmptyFiles() throws Exception {
+        Path pts = ShapefileFixtures.write(dir, "pts", 1, new double[][] {{3, 4, 3, 4}});
+        Path empty = ShapefileFixtures.write(dir, "empty", 1, new double[0][]);
+
+        ShapefileValidator.Result r = ShapefileValidator.validate(pts);
+        assertEquals(3, r.getExtent().minx);
+        assertEquals(4, r.getExtent().maxy);
+        assertEquals(0, ShapefileValidator.validate(empty).getRecordCount());
+        assertNull(ShapefileValidator.validate(empty).getExtent());
+    }
+
+    @Test
+    void rejectsDbfRecordCountMismatch() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(10), 9);
+        assertProblem(shp, "a.dbf: 9 record(s) but .shx has 10");
+    }
+
+    @Test
+    void rejectsTruncatedDbf() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(10));
+        byte[] dbf = Files.readAllBytes(dir.resolve("a.dbf"));
+        Files.write(dir.resolve("a.dbf"), Arrays.copyOf(dbf, dbf.length - 20));
+        assertProblem(shp, "a.dbf: truncated");
+    }
+
+    @Test
+    void rejectsTruncatedShp() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(10));
+        byte[] bytes = Files.readAllBytes(shp);
+        Files.write(shp, Arrays.copyOf(bytes, bytes.length - 28));
+        assertProblem(shp, "a.shp: truncated");
+    }
+
+    @Test
+    void rejectsShxOffsetOutsideShp() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(10));
+        patchShx(4, 0, 1_000_000);
+        assertProblem(shp, "record 5 has offset 2000000");
+    }
+
+    @Test
+    void rejectsShxLengthDisagreeingWithRecord() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(10));
+        patchShx(2, 4, 8);
+        assertProblem(shp, ".shx entry 3 has length 16");
+    }
+
+    @Test
+    void rejectsShxOfOddSize() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(3));
+        byte[] shx = Files.readAllBytes(dir.resolve("a.shx"));
+        Files.write(dir.resolve("a.shx"), Arrays.copyOf(shx, shx.length + 3));
+        assertProblem(shp, "is not 100 + 8 x records");
+    }
+
+    @Test
+    void rejectsMixedShapeTypes() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 5, new double[][] {{0, 0, 1, 1}, {2, 2, 3, 3}});
+        // 第二条记录的类型改为 3（PolyLine）
+        byte[] bytes = Files.readAllBytes(shp);
+        int second = 100 + 8 + 128 + 8;
+        ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(second, 3);
+        Files.write(shp, bytes);
+        assertProblem(shp, "record 2 has shape type 3");
+    }
+
+    @Test
+    void rejectsMissingSidecars() throws Exception {
+        Path shp = ShapefileFixtures.write(dir, "a", 1, points(2));
+        Files.delete(dir.resolve("a.dbf"));
+        assertProblem(shp, "Missing .dbf");
+    }
+
+    private void patchShx(int record, int field, int value) throws Exception {
+        Path shx = dir.resolve("a.shx");
+        byte[] bytes = Files.readAllBytes(shx);
+        ByteBuffer.wrap(bytes).putInt(100 + record * 8 + field, value);
+        Files.write(shx, bytes);
+    }
+
+    private static void assertProblem(Path shp, String expected) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ShapefileValidator.validate(shp));
+        assertTrue(e.getMessage().contains(expected), e.getMessage());
+    }
+
+    private static double[][] points(int n) {
+        double[][] p = new double[n][];
+        for (int i = 0; i < n; i++) p[i] = new double[] {i, i, i, i};
+        return p;
+    }
+}
@@ -0,0 +1,122 @@
+//StyleCatalog：每个 workspace 只列一次样式；优先用已有的 point/line/polygon，否则上传一次 auto_<kind>；上传失败会重试
+package com.example.geoserver;
+
+import com.example.geoserver.model.ShapefileInfo.GeometryKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StyleCatalogTest {
+
+    private static final String STYLES = "/geoserver/rest/workspaces/ws/styles";
+
+    private RestStub stub;
+    private GeoServerClient gs;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new RestStub()
+                .on("GET " + STYLES + ".json", 200, "{\"styles\":{\"style\":[{\"name\":\"polygon\"},{\"name\":\"auto_line\"}]}}")
+                .on("POST " + STYLES, 201, "")
+                .on("GET /geoserver/rest/workspaces/other/styles.json", 200, "{\"styles\":\"\"}")
+                .on("POST /geoserver/rest/workspaces/other/styles", 201, "");
+        gs = new GeoServerClient(stub.baseUrl(), "admin", "geoserver");
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void listingIsCachedPerWorkspace() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals("polygon", gs.resolveStyle("ws", GeometryKind.POLYGON));
+            assertEquals("auto_line", gs.resolveStyle("ws", GeometryKind.LINE));
+        }
+        assertEquals(1, stub.count("GET " + STYLES + ".json"));
+        assertEquals(0, stub.count("POST " + STYLES));
+
+        // 另一个 workspace 有自己的目录
+        assertEquals("auto_polygon", gs.resolveStyle("other", GeometryKind.POLYGON));
+        assertEquals(1, stub.count("GET /geoserver/rest/workspaces/other/styles.json"));
+        assertEquals(1, stub.count("GET " + STYLES + ".json"));
+    }
+
+    @Test
+    void prefersExistingStyleElseUploadsGeneratedOnce() throws Exception {
+        // 已有 polygon：直接使用；已有 auto_line：不再上传
+        assertEquals("polygon", gs.resolveStyle("ws", GeometryKind.POLYGON));
+        assertEquals("auto_line", gs.resolveStyle("ws", GeometryKind.LINE));
+        // 两者都没有：上传 auto_point，之后命中缓存
+        assertEquals("auto_point", gs.resolveStyle("ws", GeometryKind.POINT));
+        assertEquals("auto_point", gs.resolveStyle("ws", GeometryKind.POINT));
+
+        assertEquals(List.of("POST " + STYLES + "?name=auto_point"), posts());
+        String sld = stub.bodies().get(stub.requests().indexOf("POST " + STYLES + "?name=auto_point"));
+        assertTrue(sld.contains("<Name>auto_point</Name>") && sld.contains("PointSymbolizer"), sld);
+        assertThrows(IllegalArgumentException.class, () -> gs.resolveStyle("ws", GeometryKind.UNKNOWN));
+    }
+
+    @Test
+    void concurrentResolvesUploadOnce() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    return gs.resolveStyle("ws", GeometryKind.POINT);
+                }));
+            }
+            go.countDown();
+            for (Future<String> f : futures) assertEquals("auto_point", f.get());
+        } finally {
+            pool.shutdownNow();
+        }
+        // 异步入口与同步入口共用同一个结果
+        List<CompletableFuture<String>> async = new ArrayList<>();
+        for (int i = 0; i < threads; i++) async.add(gs.resolveStyleAsync("ws", GeometryKind.POINT));
+        for (CompletableFuture<String> f : async) assertEquals("auto_point", f.join());
+
+        assertEquals(1, stub.count("GET " + STYLES + ".json"));
+        assertEquals(1, stub.count("POST " + STYLES));
+    }
+
+    @Test
+    void failedUploadIsEvictedAndRetried() throws Exception {
+        stub.on("POST " + STYLES, 403, "");
+        Exception e = assertThrows(Exception.class, () -> gs.resolveStyle("ws", GeometryKind.POINT));
+        assertTrue(e.getMessage().contains("auto_point"), e.getMessage());
+        // 其它几何类型不受影响
+        assertEquals("polygon", gs.resolveStyle("ws", GeometryKind.POLYGON));
+
+        stub.on("POST " + STYLES, 201, "");
+        assertEquals("auto_point", gs.resolveStyle("ws", GeometryKind.POINT));
+        assertEquals("auto_point", gs.resolveStyle("ws", GeometryKind.POINT));
+
+        assertEquals(2, stub.count("POST " + STYLES));
+        // 失败后重新列出一次（可能由别的进程上传成功），之后不再列出
+        assertEquals(2, stub.count("GET " + STYLES + ".json"));
+    }
+
+    private List<String> posts() {
+        List<String> posts = new ArrayList<>();
+        for (String r : stub.requests()) if (r.startsWith("POST ")) posts.add(r);
+        return posts;
+    }
+}
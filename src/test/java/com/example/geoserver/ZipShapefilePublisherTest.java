@@ -0,0 +1,100 @@
+//远程发布：从 zip 中央目录取图层名（不解压），zip 原样流式 PUT 到 file.shp，成功后作废目录快照
+package com.example.geoserver;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZipShapefilePublisherTest {
+
+    private static final String STORE = "/geoserver/rest/workspaces/ws/datastores/s";
+
+    @TempDir
+    Path dir;
+
+    private RestStub stub;
+    private GeoServerClient gs;
+
+    @BeforeEach
+    void start() throws Exception {
+        stub = new RestStub()
+                .on("GET " + STORE + "/featuretypes.json", 200, "{\"featureTypes\":\"\"}")
+                .on("GET /geoserver/rest/layers.json", 200, "{\"layers\":\"\"}");
+        gs = new GeoServerClient(stub.baseUrl(), "admin", "geoserver");
+    }
+
+    @AfterEach
+    void stop() {
+        stub.close();
+    }
+
+    @Test
+    void listsLayersFromCentralDirectory() throws Exception {
+        Path zip = zip("data.zip", "city/", "city/roads.shp", "city/roads.dbf", "PARCELS.SHP", "readme.txt");
+
+        assertEquals(List.of("roads", "PARCELS"), new ZipShapefilePublisher().listShapefileLayers(zip));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count()); // 没有解压出任何文件
+        }
+    }
+
+    @Test
+    void uploadStreamsZipAndDropsCatalogSnapshot() throws Exception {
+        Path zip = zip("data.zip", "roads.shp", "roads.shx", "roads.dbf");
+        stub.on("PUT " + STORE + "/file.shp", 201, "");
+        gs.loadCatalog("ws", "s");
+        assertFalse(gs.featureTypeExists("ws", "s", "roads"));
+        assertEquals(0, stub.count("GET " + STORE + "/featuretypes/roads.json"));
+
+        assertTrue(gs.uploadShapefileZip("ws", "s", zip, "GBK"));
+
+        List<String> requests = stub.requests();
+        int put = requests.indexOf("PUT " + STORE + "/file.shp?configure=all&charset=GBK");
+        assertTrue(put >= 0, requests.toString());
+        assertEquals(new String(Files.readAllBytes(zip), StandardCharsets.UTF_8), stub.bodies().get(put));
+        // 上传后快照作废：存在性重新向服务器确认
+        gs.featureTypeExists("ws", "s", "roads");
+        assertEquals(1, stub.count("GET " + STORE + "/featuretypes/roads.json"));
+    }
+
+    @Test
+    void rejectedUploadKeepsSnapshot() throws Exception {
+        Path zip = zip("data.zip", "roads.shp");
+        stub.on("PUT " + STORE + "/file.shp", 400, "");
+        gs.loadCatalog("ws", "s");
+
+        assertFalse(gs.uploadShapefileZip("ws", "s", zip, "UTF-8"));
+        assertFalse(gs.uploadShapefileZipAsync("ws", "s", zip, "UTF-8").join());
+
+        assertFalse(gs.featureTypeExists("ws", "s", "roads"));
+        assertEquals(0, stub.count("GET " + STORE + "/featuretypes/roads.json"));
+        assertEquals(2, stub.count("PUT " + STORE + "/file.shp?configure=all&charset=UTF-8"));
+    }
+
+    // 条目内容为条目名；以 / 结尾的为目录
+    private Path zip(String name, String... entries) throws IOException {
+        Path zip = dir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (String entry : entries) {
+                zos.putNextEntry(new ZipEntry(entry));
+                if (!entry.endsWith("/")) zos.write(entry.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return zip;
+    }
+}
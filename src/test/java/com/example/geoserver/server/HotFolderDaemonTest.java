@@ -0,0 +1,72 @@
+//HotFolderDaemon：每个 zip / 子目录按相对监听根目录的路径各自一个 datastore；没有 .prj 的 shapefile 多等一个 settle 窗口
+package com.example.geoserver.server;
+
+import com.example.geoserver.GeoServerClient;
+import com.example.geoserver.ShapefileFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotFolderDaemonTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void datastorePerZipAndDirectory() throws Exception {
+        Path inbox = Files.createDirectories(dir.resolve("inbox"));
+        Path nested = Files.createDirectories(inbox.resolve("city/roads"));
+        Path other = Files.createDirectories(dir.resolve("other"));
+        GeoServerClient gs = new GeoServerClient("http://127.0.0.1:1/geoserver", "admin", "geoserver");
+        try (PublishService service = new PublishService(gs, 1);
+             HotFolderDaemon daemon = new HotFolderDaemon(new JobPlanner(gs), service, List.of(inbox, other),
+                     "ws", "drop", null, Duration.ZERO, Duration.ZERO, 1)) {
+            assertEquals("drop", daemon.datastoreFor(inbox));
+            assertEquals(ShapefileDiscovery.datastoreName("drop", "city/roads"), daemon.datastoreFor(nested));
+            // zip 与 ShapefileDiscovery 一样去掉扩展名
+            assertEquals(ShapefileDiscovery.datastoreName("drop", "parcels"), daemon.datastoreFor(inbox.resolve("parcels")));
+            assertNotEquals(daemon.datastoreFor(inbox.resolve("a")), daemon.datastoreFor(inbox.resolve("b")));
+            assertEquals(ShapefileDiscovery.datastoreName("drop", "x"), daemon.datastoreFor(other.resolve("x")));
+        }
+    }
+
+    @Test
+    void shapefileWithoutPrjWaitsAnExtraSettleWindow() throws Exception {
+        Path inbox = Files.createDirectories(dir.resolve("inbox"));
+        Path withPrj = ShapefileFixtures.write(inbox, "with_prj", 5, new double[][] {{0, 0, 1, 1}});
+        Path noPrj = ShapefileFixtures.write(inbox, "no_prj", 5, new double[][] {{0, 0, 1, 1}});
+        Files.delete(inbox.resolve("no_prj.prj"));
+        GeoServerClient gs = new GeoServerClient("http://127.0.0.1:1/geoserver", "admin", "geoserver");
+        try (PublishService service = new PublishService(gs, 1);
+             HotFolderDaemon daemon = new HotFolderDaemon(new JobPlanner(gs), service, List.of(inbox),
+                     "ws", "drop", null, Duration.ofMillis(400), Duration.ofHours(1), 100)) {
+            try (var files = Files.list(inbox)) {
+                files.forEach(daemon::track);
+            }
+            long start = System.nanoTime();
+            daemon.checkPending(); // 记下大小与修改时间，开始计时
+
+            sleepUntil(start, 550);
+            daemon.checkPending();
+            assertEquals(List.of(withPrj), daemon.readyBatch());
+
+            sleepUntil(start, 950);
+            daemon.checkPending();
+            assertEquals(List.of(withPrj, noPrj), daemon.readyBatch());
+        }
+    }
+
+    private static void sleepUntil(long startNanos, long millis) throws InterruptedException {
+        long left = millis - Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+        assertTrue(left > 0, "test machine too slow");
+        Thread.sleep(left);
+    }
+}
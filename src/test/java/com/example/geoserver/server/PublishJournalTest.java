@@ -0,0 +1,241 @@
+//PublishJournal：重放、半行截断、指纹变化（含附属文件）、压缩与无失败后清除已完成记录
+package com.example.geoserver.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysCompletedStagesAfterReopen() throws Exception {
+        LayerJob a = job("a");
+        LayerJob b = job("b");
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(a, PublishJournal.Stage.PUBLISHED);
+            j.record(a, PublishJournal.Stage.DONE);
+            j.record(b, PublishJournal.Stage.PUBLISHED);
+        }
+
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertTrue(j.isDone(a));
+            assertFalse(j.isDone(b));
+            assertTrue(j.state(b).has(PublishJournal.Stage.PUBLISHED));
+            assertFalse(j.state(b).has(PublishJournal.Stage.BBOX));
+            assertEquals(1, j.completedCount());
+        }
+    }
+
+    @Test
+    void ignoresTornAndCorruptLines() throws Exception {
+        LayerJob a = job("a");
+        LayerJob b = job("b");
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(a, PublishJournal.Stage.DONE);
+            j.record(b, PublishJournal.Stage.DONE);
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        // 第二行崩溃时只写了一半，再追加一行校验和不对的记录
+        String torn = lines.get(0) + "\n" + lines.get(1).substring(0, lines.get(1).length() - 5);
+        Files.writeString(file, torn + "\ndeadbeef\tDONE\tws\tstore\tc\t-\n", StandardCharsets.UTF_8);
+
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertTrue(j.isDone(a));
+            assertFalse(j.isDone(b));
+            assertFalse(j.isDone(job("c")));
+        }
+    }
+
+    @Test
+    void changedSourceFileStartsNewGeneration() throws Exception {
+        Path shp = dir.resolve("a.shp");
+        Files.writeString(shp, "v1");
+        LayerJob a = new LayerJob("ws", "store", "a", null, true, shp);
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(a, PublishJournal.Stage.DONE);
+        }
+        Files.writeString(shp, "v2 longer");
+        Files.setLastModifiedTime(shp, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertNull(j.state(a));
+            assertFalse(j.isDone(a));
+        }
+    }
+
+    @Test
+    void changedSidecarStartsNewGeneration() throws Exception {
+        Path shp = dir.resolve("a.shp");
+        Files.writeString(shp, "geometry");
+        Path dbf = dir.resolve("a.DBF");
+        Files.writeString(dbf, "attributes v1");
+        LayerJob a = new LayerJob("ws", "store", "a", null, false, shp);
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(a, PublishJournal.Stage.DONE);
+        }
+        // 只改属性表（大写扩展名），.shp 不变
+        Files.writeString(dbf, "attributes v2, longer");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertFalse(j.isDone(a));
+            j.record(a, PublishJournal.Stage.DONE);
+        }
+        // 后来补上 .prj 也是新一代
+        Files.writeString(dir.resolve("a.prj"), "GEOGCS[]");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertFalse(j.isDone(a));
+        }
+    }
+
+    @Test
+    void forgetCompletedKeepsUnfinishedLayers() throws Exception {
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(job("a"), PublishJournal.Stage.PUBLISHED);
+            j.record(job("a"), PublishJournal.Stage.DONE);
+            j.record(job("b"), PublishJournal.Stage.PUBLISHED);
+            j.record(job("b"), PublishJournal.Stage.BBOX);
+            assertEquals(1, j.forgetCompleted());
+            assertFalse(j.isDone(job("a")));
+            assertNull(j.state(job("a")));
+            assertEquals(0, j.forgetCompleted());
+            j.record(job("c"), PublishJournal.Stage.PUBLISHED);
+        }
+        assertEquals(3, Files.readAllLines(file).size());
+
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertNull(j.state(job("a")));
+            assertTrue(j.state(job("b")).has(PublishJournal.Stage.BBOX));
+            assertTrue(j.state(job("c")).has(PublishJournal.Stage.PUBLISHED));
+            assertEquals(0, j.completedCount());
+        }
+    }
+
+    @Test
+    void extractedResetsEarlierStages() throws Exception {
+        LayerJob a = job("a");
+        try (PublishJournal j = PublishJournal.open(dir.resolve("journal.log"))) {
+            j.record(a, PublishJournal.Stage.DONE);
+            j.record("ws", "store", "a", null, PublishJournal.Stage.EXTRACTED);
+            assertFalse(j.isDone(a));
+            assertTrue(j.state(a).has(PublishJournal.Stage.EXTRACTED));
+        }
+    }
+
+    @Test
+    void escapesSeparatorsInNames() throws Exception {
+        LayerJob odd = new LayerJob("w\ts", "st\\ore", "la\nyer", null, true, null);
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(odd, PublishJournal.Stage.DONE);
+        }
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertTrue(j.isDone(odd));
+        }
+    }
+
+    @Test
+    void compactsLongJournals() throws Exception {
+        LayerJob a = job("a");
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            for (int i = 0; i < 6_000; i++) {
+                j.record(a, PublishJournal.Stage.PUBLISHED);
+                j.record(a, PublishJournal.Stage.DONE);
+            }
+        }
+        assertEquals(12_000, Files.readAllLines(file).size());
+
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertTrue(j.isDone(a));
+        }
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void recordsAppendAcrossRuns() throws Exception {
+        Path file = dir.resolve("journal.log");
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(job("a"), PublishJournal.Stage.DONE);
+        }
+        try (PublishJournal j = PublishJournal.open(file)) {
+            j.record(job("b"), PublishJournal.Stage.DONE);
+        }
+        Files.writeString(file, "garbage without tabs\n", StandardOpenOption.APPEND);
+        try (PublishJournal j = PublishJournal.open(file)) {
+            assertEquals(2, j.completedCount());
+        }
+    }
+
+    @Test
+    void closeFromInterruptedThreadKeepsBufferedRecords() throws Exception {
+        Path file = dir.resolve("journal.log");
+        PublishJournal j = PublishJournal.open(file);
+        for (int i = 0; i < 500; i++) j.record(job("l" + i), PublishJournal.Stage.DONE);
+        Thread.currentThread().interrupt();
+        try {
+            j.close();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        try (PublishJournal reopened = PublishJournal.open(file)) {
+            assertEquals(500, reopened.completedCount());
+        }
+    }
+
+    @Test
+    void flushKeepsRecordsWhenWriteFails() throws Exception {
+        Path file = dir.resolve("journal.log");
+        PublishJournal j = PublishJournal.open(file);
+        j.record(job("a"), PublishJournal.Stage.DONE);
+        j.flush();
+        j.record(job("b"), PublishJournal.Stage.DONE);
+        j.close();
+        // 关闭后写盘必然失败，缓冲不应被清空
+        j.record(job("c"), PublishJournal.Stage.DONE);
+        assertThrows(IOException.class, j::flush);
+        assertThrows(IOException.class, j::flush);
+
+        try (PublishJournal reopened = PublishJournal.open(file)) {
+            assertEquals(2, reopened.completedCount());
+        }
+    }
+
+    @Test
+    void disabledJournalRecordsNothing() throws Exception {
+        try (PublishJournal j = PublishJournal.disabled()) {
+            j.record(job("a"), PublishJournal.Stage.DONE);
+            assertFalse(j.isEnabled());
+            assertFalse(j.isDone(job("a")));
+            assertNull(j.getFile());
+        }
+        assertNotNull(PublishJournal.fingerprint(null));
+    }
+
+    private static LayerJob job(String layer) {
+        return new LayerJob("ws", "store", layer, null, true, null);
+    }
+}
@@ -0,0 +1,61 @@
+//ShapefileDiscovery：datastore 命名不相撞；.prj 可选，缺少 .shx/.dbf 的图层被剔除
+package com.example.geoserver.server;
+
+import com.example.geoserver.ShapefileFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapefileDiscoveryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void plainPathsKeepReadableNames() {
+        assertEquals("ds", ShapefileDiscovery.datastoreName("ds", ""));
+        assertEquals("ds_city_roads", ShapefileDiscovery.datastoreName("ds", "city/roads"));
+        assertEquals("ds_city_roads", ShapefileDiscovery.datastoreName("ds", "city\\roads"));
+        assertEquals("ds_a-1", ShapefileDiscovery.datastoreName("ds", "a-1/"));
+    }
+
+    @Test
+    void rewrittenSegmentsDoNotCollide() {
+        String nested = ShapefileDiscovery.datastoreName("ds", "a/b");
+        String underscore = ShapefileDiscovery.datastoreName("ds", "a_b");
+        String dot = ShapefileDiscovery.datastoreName("ds", "a.b");
+        assertEquals("ds_a_b", nested);
+        assertTrue(underscore.startsWith("ds_a_b__"), underscore);
+        assertNotEquals(nested, underscore);
+        assertNotEquals(underscore, dot);
+        // 同一路径每次得到同一个名称（增量发布、日志依赖这一点）
+        assertEquals(underscore, ShapefileDiscovery.datastoreName("ds", "a_b"));
+        assertEquals(underscore, ShapefileDiscovery.datastoreName("ds", "a_b/"));
+    }
+
+    @Test
+    void prjIsOptional() throws Exception {
+        double[][] box = {{0, 0, 1, 1}};
+        Path a = Files.createDirectories(dir.resolve("a_b"));
+        Path ab = Files.createDirectories(dir.resolve("a/b"));
+        ShapefileFixtures.write(a, "with_prj", 5, box);
+        Files.delete(ShapefileFixtures.write(ab, "no_prj", 5, box).resolveSibling("no_prj.prj"));
+        Files.delete(ShapefileFixtures.write(ab, "no_dbf", 5, box).resolveSibling("no_dbf.dbf"));
+
+        Map<String, List<Path>> groups = new ConcurrentHashMap<>();
+        new ShapefileDiscovery("ws", "ds", 2).discover(dir, g -> groups.put(g.getDatastore(), g.getShapefiles()));
+
+        assertEquals(2, groups.size(), groups.toString());
+        assertEquals(List.of(ab.resolve("no_prj.shp")), groups.get("ds_a_b"));
+        assertEquals(List.of(a.resolve("with_prj.shp")), groups.get(ShapefileDiscovery.datastoreName("ds", "a_b")));
+    }
+}
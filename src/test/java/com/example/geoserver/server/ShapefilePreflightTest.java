@@ -0,0 +1,62 @@
+//ShapefilePreflight：未变化的图层（.qix 最新，或调用方判定已完成）不再扫描
+package com.example.geoserver.server;
+
+import com.example.geoserver.QuadTreeIndex;
+import com.example.geoserver.ShapefileFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShapefilePreflightTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void freshIndexSkipsRescan() throws Exception {
+        ShapefilePreflight preflight = new ShapefilePreflight(settings(true));
+        Path shp = ShapefileFixtures.write(dir, "roads", 5, new double[][] {{0, 0, 1, 1}, {2, 2, 3, 3}});
+        assertEquals(List.of(shp), preflight.check(List.of(shp)));
+        assertTrue(QuadTreeIndex.isFresh(shp));
+
+        // 改坏 .shx 但保留修改时间：索引仍是最新的，不再扫描
+        Path shx = shp.resolveSibling("roads.shx");
+        FileTime before = Files.getLastModifiedTime(shx);
+        byte[] bytes = Files.readAllBytes(shx);
+        Files.write(shx, Arrays.copyOf(bytes, bytes.length + 3));
+        Files.setLastModifiedTime(shx, before);
+        assertEquals(List.of(shp), preflight.check(List.of(shp)));
+
+        // .dbf 比索引新：重新扫描，坏文件被剔除
+        Files.setLastModifiedTime(shp.resolveSibling("roads.dbf"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertEquals(List.of(), preflight.check(List.of(shp)));
+    }
+
+    @Test
+    void callerDecidesWithoutIndex() throws Exception {
+        ShapefilePreflight preflight = new ShapefilePreflight(settings(false));
+        Path shp = ShapefileFixtures.write(dir, "parcels", 5, new double[][] {{0, 0, 1, 1}});
+        Path shx = shp.resolveSibling("parcels.shx");
+        byte[] bytes = Files.readAllBytes(shx);
+        Files.write(shx, Arrays.copyOf(bytes, bytes.length + 3));
+
+        assertEquals(List.of(shp), preflight.check(List.of(shp), p -> true));
+        assertEquals(List.of(), preflight.check(List.of(shp), p -> false));
+        assertEquals(List.of(), preflight.check(List.of(shp)));
+    }
+
+    private static ShapefilePreflight.Settings settings(boolean buildIndex) {
+        ShapefilePreflight.Settings s = ShapefilePreflight.Settings.defaults();
+        s.buildIndex = buildIndex;
+        s.threads = 2;
+        return s;
+    }
+}
@@ -0,0 +1,223 @@
+//HttpUtils：AIMD 的延迟信号按端点区分、上传不计入；sendAsync 同步抛出时归还许可；被放弃的探测请求不会卡住熔断器
+package com.example.geoserver.util;
+
+import com.example.geoserver.RestStub;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpUtilsTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void slowEndpointDoesNotShrinkLimitForFastOnes() {
+        HttpUtils.AdaptiveLimiter limiter = new HttpUtils.AdaptiveLimiter(2, 64, 16, 3.0);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire().join();
+            limiter.release("GET featuretypes", 10 * MS, false);
+        }
+        int before = limiter.getLimit();
+
+        // 第一次出现的慢端点只建立自己的基线，不算尖刺
+        limiter.acquire().join();
+        limiter.release("PUT featuretypes", 2_000 * MS, false);
+        assertTrue(limiter.getLimit() >= before, "limit " + limiter.getLimit() + " < " + before);
+
+        // 对快端点而言 100 ms 是尖刺
+        limiter.acquire().join();
+        limiter.release("GET featuretypes", 100 * MS, false);
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    @Test
+    void uploadsAreNotALatencySignal() {
+        HttpUtils.AdaptiveLimiter limiter = new HttpUtils.AdaptiveLimiter(2, 64, 16, 3.0);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire().join();
+            limiter.release("GET featuretypes", 10 * MS, false);
+        }
+        int before = limiter.getLimit();
+        assertNull(HttpUtils.latencyClass("PUT file.shp"));
+        assertEquals("GET featuretypes", HttpUtils.latencyClass("GET featuretypes"));
+
+        limiter.acquire().join();
+        limiter.release(HttpUtils.latencyClass("PUT file.shp"), TimeUnit.MINUTES.toNanos(20), false);
+
+        assertTrue(limiter.getLimit() >= before);
+        // 上传失败仍然是过载信号
+        limiter.acquire().join();
+        limiter.release(null, TimeUnit.MINUTES.toNanos(20), true);
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    @Test
+    void uploadEndpointName() {
+        HttpRequest upload = HttpRequest.newBuilder(URI.create("http://h/geoserver/rest/workspaces/w/datastores/s/file.shp?configure=all"))
+                .PUT(HttpRequest.BodyPublishers.noBody()).build();
+        assertEquals("PUT file.shp", HttpUtils.endpointOf(upload));
+    }
+
+    @Test
+    void synchronousThrowFromSendAsyncReleasesPermit() {
+        HttpUtils.Settings settings = HttpUtils.Settings.defaults();
+        settings.initialConcurrency = 2;
+        settings.minConcurrency = 1;
+        HttpUtils http = new HttpUtils(new ThrowingClient(), settings);
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://h/geoserver/rest/layers.json")).GET().build();
+
+        for (int i = 0; i < 5; i++) {
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).join());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(0, http.getLimiter().getInFlight());
+        assertEquals(2, http.getLimiter().getLimit());
+        assertThrows(IllegalStateException.class, () -> http.send(req, HttpResponse.BodyHandlers.discarding()));
+        assertEquals(0, http.getLimiter().getInFlight());
+    }
+
+    @Test
+    void interruptedProbeDoesNotWedgeBreaker() throws Exception {
+        try (RestStub stub = new RestStub().on("GET /geoserver/rest/layers.json", 503, "")) {
+            FlakyClient client = new FlakyClient(HttpClient.newHttpClient());
+            HttpUtils http = new HttpUtils(client, breakerSettings());
+            HttpRequest req = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/rest/layers.json")).GET().build();
+
+            assertEquals(503, http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(HttpUtils.CircuitBreaker.State.OPEN, http.getBreaker().getState());
+
+            // 冷却结束后的探测请求被中断：熔断器回到 OPEN 重新冷却
+            client.failNext.set(new InterruptedException("shutdown"));
+            assertThrows(InterruptedException.class, () -> http.send(req, HttpResponse.BodyHandlers.discarding()));
+            assertEquals(HttpUtils.CircuitBreaker.State.OPEN, http.getBreaker().getState());
+            assertEquals(0, http.getLimiter().getInFlight());
+
+            stub.on("GET /geoserver/rest/layers.json", 200, "");
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertEquals(200, http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode()));
+            assertEquals(HttpUtils.CircuitBreaker.State.CLOSED, http.getBreaker().getState());
+        }
+    }
+
+    @Test
+    void probeThatFailsToSendAsyncDoesNotWedgeBreaker() throws Exception {
+        try (RestStub stub = new RestStub().on("GET /geoserver/rest/layers.json", 503, "")) {
+            FlakyClient client = new FlakyClient(HttpClient.newHttpClient());
+            HttpUtils http = new HttpUtils(client, breakerSettings());
+            HttpRequest req = HttpRequest.newBuilder(URI.create(stub.baseUrl() + "/rest/layers.json")).GET().build();
+
+            assertEquals(503, http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).join().statusCode());
+            client.failNext.set(new IllegalStateException("client closed"));
+            assertThrows(CompletionException.class, () -> http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).join());
+            assertEquals(HttpUtils.CircuitBreaker.State.OPEN, http.getBreaker().getState());
+
+            stub.on("GET /geoserver/rest/layers.json", 200, "");
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertEquals(200, http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).join().statusCode()));
+            assertEquals(HttpUtils.CircuitBreaker.State.CLOSED, http.getBreaker().getState());
+        }
+    }
+
+    // 一次失败即打开，冷却很短，不重试
+    private static HttpUtils.Settings breakerSettings() {
+        HttpUtils.Settings settings = HttpUtils.Settings.defaults();
+        settings.breakerFailureThreshold = 1;
+        settings.breakerCooldown = Duration.ofMillis(50);
+        settings.maxRetries = 0;
+        return settings;
+    }
+
+    /** 转发给真实客户端；failNext 非空时下一次发送直接抛出它。 */
+    private static final class FlakyClient extends HttpClient {
+        final AtomicReference<Exception> failNext = new AtomicReference<>();
+        private final HttpClient delegate;
+
+        FlakyClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public Optional<CookieHandler> cookieHandler() { return delegate.cookieHandler(); }
+        @Override public Optional<Duration> connectTimeout() { return delegate.connectTimeout(); }
+        @Override public Redirect followRedirects() { return delegate.followRedirects(); }
+        @Override public Optional<ProxySelector> proxy() { return delegate.proxy(); }
+        @Override public SSLContext sslContext() { return delegate.sslContext(); }
+        @Override public SSLParameters sslParameters() { return delegate.sslParameters(); }
+        @Override public Optional<Authenticator> authenticator() { return delegate.authenticator(); }
+        @Override public Version version() { return delegate.version(); }
+        @Override public Optional<Executor> executor() { return delegate.executor(); }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+            Exception e = failNext.getAndSet(null);
+            if (e instanceof InterruptedException) throw (InterruptedException) e;
+            if (e != null) throw (RuntimeException) e;
+            return delegate.send(request, handler);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+            Exception e = failNext.getAndSet(null);
+            if (e != null) throw (RuntimeException) e;
+            return delegate.sendAsync(request, handler);
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                                HttpResponse.PushPromiseHandler<T> push) {
+            return sendAsync(request, handler);
+        }
+    }
+
+    /** send / sendAsync 都在调用线程上直接抛出。 */
+    private static final class ThrowingClient extends HttpClient {
+        @Override public Optional<CookieHandler> cookieHandler() { return Optional.empty(); }
+        @Override public Optional<Duration> connectTimeout() { return Optional.empty(); }
+        @Override public Redirect followRedirects() { return Redirect.NEVER; }
+        @Override public Optional<ProxySelector> proxy() { return Optional.empty(); }
+        @Override public SSLContext sslContext() { return null; }
+        @Override public SSLParameters sslParameters() { return null; }
+        @Override public Optional<Authenticator> authenticator() { return Optional.empty(); }
+        @Override public Version version() { return Version.HTTP_1_1; }
+        @Override public Optional<Executor> executor() { return Optional.empty(); }
+
+        @Override
+        public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+            throw new IllegalStateException("client closed");
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+            throw new IllegalStateException("client closed");
+        }
+
+        @Override
+        public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                                HttpResponse.PushPromiseHandler<T> push) {
+            throw new IllegalStateException("client closed");
+        }
+    }
+}
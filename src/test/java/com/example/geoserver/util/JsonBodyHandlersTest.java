@@ -0,0 +1,146 @@
+//JsonBodyHandlers：分块到达的响应体、数组透明的路径、非 200 与损坏的 JSON
+package com.example.geoserver.util;
+
+import com.example.geoserver.model.FeatureTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonBodyHandlersTest {
+
+    // 收集 parent|field=value，便于断言路径
+    private static JsonBodyHandlers.Collector<List<String>> recorder() {
+        return new JsonBodyHandlers.Collector<>() {
+            private final List<String> events = new ArrayList<>();
+
+            @Override
+            public void startObject(String path) {
+                events.add("{" + path);
+            }
+
+            @Override
+            public void value(String parent, String field, JsonParser p) throws java.io.IOException {
+                events.add(parent + "|" + field + "=" + p.getText());
+            }
+
+            @Override
+            public List<String> result() {
+                return events;
+            }
+        };
+    }
+
+    @Test
+    void arraysAreTransparentInPaths() {
+        String single = "{\"featureTypes\":{\"featureType\":{\"name\":\"a\"}}}";
+        String many = "{\"featureTypes\":{\"featureType\":[{\"name\":\"a\"},{\"name\":\"b\"}]}}";
+
+        assertEquals(List.of("{", "{featureTypes", "{featureTypes.featureType", "featureTypes.featureType|name=a"),
+                parse(single, 1000));
+        assertEquals(List.of("{", "{featureTypes", "{featureTypes.featureType", "featureTypes.featureType|name=a",
+                        "{featureTypes.featureType", "featureTypes.featureType|name=b"),
+                parse(many, 1000));
+    }
+
+    @Test
+    void scalarsInArraysHaveNoFieldName() {
+        assertEquals(List.of("{", "k|null=1", "k|null=x", "|after=true"), parse("{\"k\":[1,\"x\"],\"after\":true}", 1000));
+    }
+
+    @Test
+    void chunkBoundariesDoNotMatter() {
+        // 多字节字符与数字被切在块边界上
+        String json = "{\"featureType\":{\"name\":\"道路中心线\",\"nativeBoundingBox\":{\"minx\":116.123456,\"miny\":39.5,"
+                + "\"maxx\":117.25,\"maxy\":40.75,\"crs\":{\"@class\":\"projected\",\"$\":\"EPSG:4326\"}},"
+                + "\"latLonBoundingBox\":{\"minx\":1,\"miny\":2,\"maxx\":3,\"maxy\":4},"
+                + "\"attributes\":{\"attribute\":[{\"name\":\"the_geom\",\"binding\":\"org.locationtech.jts.geom.MultiLineString\"},"
+                + "{\"name\":\"ID\",\"binding\":\"java.lang.Long\",\"nillable\":false}]}}}";
+        List<String> whole = parse(json, 1 << 20);
+        for (int chunk = 1; chunk <= 7; chunk++) assertEquals(whole, parse(json, chunk));
+
+        FeatureTypeInfo info = body(200, json, 3, FeatureTypeInfo::collector);
+        assertEquals("道路中心线", info.name);
+        assertEquals(116.123456, info.nativeBoundingBox.minx);
+        assertEquals(40.75, info.nativeBoundingBox.maxy);
+        assertEquals("EPSG:4326", info.nativeBoundingBox.crs);
+        assertEquals(4, info.latLonBoundingBox.maxy);
+        assertEquals(2, info.attributes.size());
+        assertTrue(info.attributes.get(0).nillable);
+        assertEquals(false, info.attributes.get(1).nillable);
+        assertEquals(com.example.geoserver.model.ShapefileInfo.GeometryKind.LINE, info.geometryKind());
+    }
+
+    @Test
+    void nonOkStatusYieldsNullBody() {
+        assertNull(body(404, "No such feature type", 100, JsonBodyHandlersTest::recorder));
+    }
+
+    @Test
+    void malformedJsonFails() {
+        CompletionException e = assertThrows(CompletionException.class, () -> body(200, "{\"a\": [1, }", 4, JsonBodyHandlersTest::recorder));
+        assertTrue(e.getCause() instanceof java.io.IOException, String.valueOf(e.getCause()));
+    }
+
+    private static List<String> parse(String json, int chunk) {
+        return body(200, json, chunk, JsonBodyHandlersTest::recorder);
+    }
+
+    /** 不经过网络，直接把响应体按 chunk 字节分块喂给 BodySubscriber。 */
+    private static <T> T body(int status, String json, int chunk,
+                              java.util.function.Supplier<? extends JsonBodyHandlers.Collector<T>> collector) {
+        HttpResponse.BodySubscriber<T> subscriber = JsonBodyHandlers.ofJson(collector).apply(info(status));
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        long[] requested = {0};
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested[0] = n == Long.MAX_VALUE ? n : requested[0] + n;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (int i = 0; i < bytes.length && !subscriber.getBody().toCompletableFuture().isDone(); i += chunk) {
+            assertTrue(requested[0] > 0, "subscriber must request before each chunk");
+            if (requested[0] != Long.MAX_VALUE) requested[0]--;
+            subscriber.onNext(List.of(ByteBuffer.wrap(bytes, i, Math.min(chunk, bytes.length - i)).slice()));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().join();
+    }
+
+    private static HttpResponse.ResponseInfo info(int status) {
+        return new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return status;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(Map.of(), (a, b) -> true);
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}